@@ -1,6 +1,6 @@
 package fr.wollfie.cottus;
 
-import com.fazecast.jSerialComm.SerialPort;
+import fr.wollfie.cottus.models.animation.recording.MotionRecorder;
 import fr.wollfie.cottus.resources.serial.SerialCommunication;
 import fr.wollfie.cottus.resources.websockets.ArmStateSocket;
 import fr.wollfie.cottus.services.ArmCommunicationService;
@@ -15,7 +15,6 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -40,6 +39,7 @@ public class Core {
     @Inject ArmCommunicationService armCommunicationService;
     
     @Inject ArmStateService armStateService;
+    @Inject MotionRecorder motionRecorder;
     
 // //======================================================================================\\
 // ||                                                                                      ||
@@ -54,24 +54,7 @@ public class Core {
         this.timer.scheduleAtFixedRate(this::update, 0, UPDATE_DELAY, TimeUnit.MILLISECONDS);
         Log.info("The update loop started...");
 
-        if (this.connectSerial) {
-
-            List<SerialPort> ports = communication.getAllPorts();
-            StringBuilder sb = new StringBuilder();
-            sb.append("\nUsing jSerialComm Library Version v")
-                    .append(SerialPort.getVersion());
-            sb.append("\nAvailable Ports:\n");
-            for (int i = 0; i < ports.size(); ++i) {
-                sb.append("   [").append(i).append("] ")
-                        .append(ports.get(i).getSystemPortName())
-                        .append(": ").append(ports.get(i).getDescriptivePortName())
-                        .append(" - ").append(ports.get(i).getPortDescription())
-                        .append("\n");
-            }
-            Log.info(sb.toString());
-            if (!ports.isEmpty()) { communication.connectTo(ports.get(0)); }
-            else { Log.warnf("No available serial ports to connect to..."); }
-        }
+        if (this.connectSerial) { communication.connect(); }
         
         final boolean defaultReady = true;
         this.armStateService.setReady(defaultReady);
@@ -96,6 +79,7 @@ public class Core {
             
             armStateSocket.broadCastArmState();
             armCommunicationService.updateArmState();
+            motionRecorder.record();
         } catch (Exception e) { e.printStackTrace(); }
     }
 
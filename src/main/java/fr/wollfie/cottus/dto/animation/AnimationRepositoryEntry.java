@@ -1,11 +1,13 @@
 package fr.wollfie.cottus.dto.animation;
 
 import com.fasterxml.jackson.annotation.JsonGetter;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
 import fr.wollfie.cottus.repositories.animation.AnimationRepository;
 
 /**
  * An entry in the {@link AnimationRepository},
- * contains the name under which the animation is registered, and the {@link ArmAnimation}
+ * contains the name under which the animation is registered, the {@link ArmAnimation} and the
+ * result of its validation when it was saved
  */
 public interface AnimationRepositoryEntry {
     
@@ -14,4 +16,7 @@ public interface AnimationRepositoryEntry {
     
     /** @return The animation associated to this entry */
     @JsonGetter("animation") ArmAnimation getAnimation();
+    
+    /** @return The result of the validation of the animation when it was saved, or null if it was not validated */
+    @JsonGetter("validation") AnimationValidation getValidation();
 }
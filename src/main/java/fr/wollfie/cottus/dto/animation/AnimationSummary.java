@@ -0,0 +1,21 @@
+package fr.wollfie.cottus.dto.animation;
+
+import fr.wollfie.cottus.repositories.animation.AnimationRepository;
+
+/**
+ * A lightweight view of an entry of the {@link AnimationRepository}, read without decoding its animation
+ * @param id The identifier of the entry, which stays the same when it is saved again, or null for the entries
+ *           saved before they had one
+ * @param cursor The position of the entry in the paged listing, to give back to get the page after it. It is
+ *               opaque : its value depends on where the animations are stored, and is not the id of the entry
+ * @param name The name associated to the animation
+ * @param durationSecs The duration of the animation in seconds, or null if it is unknown
+ * @param primitiveCount The number of primitives the animation is made of, or null if it is unknown
+ */
+public record AnimationSummary(
+        String id,
+        String cursor,
+        String name,
+        Double durationSecs,
+        Integer primitiveCount
+) { }
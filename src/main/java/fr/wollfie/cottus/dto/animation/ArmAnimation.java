@@ -24,6 +24,13 @@ public interface ArmAnimation {
 
     /** @return The duration in seconds of the animation */
     double getDurationSecs();
+
+    /**
+     * Forget the reference captured the last time the animation was played, so that a relative
+     * animation is anchored again to the arm's state the next time it starts. Must be called before
+     * replaying an animation instance
+     */
+    default void resetReference() { }
     
     
     
@@ -58,6 +65,12 @@ public interface ArmAnimation {
             public double getDurationSecs() {
                 return first.getDurationSecs()+second.getDurationSecs();
             }
+
+            @Override
+            public void resetReference() {
+                first.resetReference();
+                second.resetReference();
+            }
         };
     }
     
@@ -0,0 +1,12 @@
+package fr.wollfie.cottus.exception;
+
+import fr.wollfie.cottus.models.animation.track.AnimationTrack;
+
+/** 
+ * Used when a file is not a valid animation track : it has the wrong format, an unsupported
+ * version or a corrupted content. Used by {@link AnimationTrack#open}
+ */
+public class InvalidTrackException extends Exception {
+
+    public InvalidTrackException(String message) { super(message); }
+}
@@ -2,15 +2,24 @@ package fr.wollfie.cottus.models.animation;
 
 import fr.wollfie.cottus.dto.animation.ArmAnimation;
 import fr.wollfie.cottus.exception.AngleOutOfBoundsException;
-import fr.wollfie.cottus.exception.NoSolutionException;
+import fr.wollfie.cottus.models.animation.lookahead.LookaheadIKPipeline;
+import fr.wollfie.cottus.models.arm.positioning.specification.AngleSpecification;
 import fr.wollfie.cottus.services.ArmStateService;
 import fr.wollfie.cottus.services.arm_controller.ArmAnimatorControllerService;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Handles the animation of the arm when it is active
+ * Handles the animation of the arm when it is active. The frames are solved ahead of time
+ * by a {@link LookaheadIKPipeline}, the update loop only applies them.
  */
 @ApplicationScoped
 public class AnimationController implements ArmAnimatorControllerService {
@@ -18,46 +27,109 @@ public class AnimationController implements ArmAnimatorControllerService {
     @Inject
     ArmStateService armStateService;
     
+    @ConfigProperty(name = "cottus.config.animation.timestep-ms") long timestepMs;
+    @ConfigProperty(name = "cottus.config.animation.catch-up-policy") PlaybackClock.CatchUpPolicy catchUpPolicy;
+    @ConfigProperty(name = "cottus.config.animation.max-catch-up-frames") int maxCatchUpFrames;
+    @ConfigProperty(name = "cottus.config.animation.lookahead-frames") int lookaheadFrames;
+
     private boolean active = false;
     @Override public void setActive(boolean active) { this.active = active; }
     
-    /** Current animation playing, or null if no animation is playing */
-    private ArmAnimation current;
+    /** Frames of the playlist currently playing, or null if no animation is playing. Only replaced
+     * under the lock of the controller, the update loop reads it without locking */
+    private volatile LookaheadIKPipeline current;
+    private AnimationPlaylist playlist;
     
-    private long timeStarted = System.currentTimeMillis();
+    private PlaybackClock clock;
+    private ExecutorService lookaheadExecutor;
+    private double[] frameAngles;
+
+    private volatile long framesEvaluated = 0;
+    private volatile long framesDropped = 0;
+    private volatile long framesMissed = 0;
+
+    @PostConstruct
+    void init() {
+        this.clock = new PlaybackClock(TimeUnit.MILLISECONDS.toNanos(timestepMs), catchUpPolicy, maxCatchUpFrames);
+        this.lookaheadExecutor = Executors.newSingleThreadExecutor(Executors.defaultThreadFactory());
+        this.frameAngles = new double[armStateService.getArmState().getNbOfNonVirtualJoints()];
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        if (this.current != null) { this.current.cancel(); }
+        this.lookaheadExecutor.shutdownNow();
+    }
     
     @Override
     public void update() {
         if (!this.active) { this.clearAnimation(); }
-        if (this.current == null) { return; }
-
-        double dt = (System.currentTimeMillis() - timeStarted) / 1000.0;
-
-        // Animation is over
-        if (this.current.getDurationSecs() <  dt) { this.clearAnimation(); return; }
+        LookaheadIKPipeline current = this.current;
+        if (current == null) { return; }
 
-        try {
-            armStateService.moveGiven(this.current.evaluateAt(dt));
-        } catch (AngleOutOfBoundsException | NoSolutionException e) { /* Drop frame and continue */ }
+        int nbFramesDue = this.clock.tick();
+        for (int i = 0; i < nbFramesDue; i++) {
+            switch (current.poll(this.clock.nextFrame(), this.frameAngles)) {
+                // Animation is over
+                case END -> { this.clearAnimation(); return; }
+                case READY -> {
+                    try {
+                        armStateService.moveGiven(new AngleSpecification(Arrays.stream(frameAngles).boxed().toList()));
+                        this.framesEvaluated++;
+                    } catch (AngleOutOfBoundsException e) { this.framesDropped++; /* Drop frame and continue */ }
+                }
+                case FAILED -> this.framesDropped++;
+                case NOT_READY -> this.framesMissed++;
+            }
+        }
     }
 
     @Override
     public boolean isPlayingAnimation() { return current != null; }
 
     @Override
-    public boolean playAnimation(ArmAnimation animation) {
+    public boolean playAnimation(ArmAnimation animation) { return this.playPlaylist(AnimationPlaylist.of(animation)); }
+
+    @Override
+    public synchronized boolean playPlaylist(AnimationPlaylist playlist) {
         if (this.current != null) { return false; }
         
         this.armStateService.setReady(false);
         this.active = true;
-        this.current = animation;
-        this.timeStarted = System.currentTimeMillis();
+        this.framesEvaluated = 0;
+        this.framesDropped = 0;
+        this.framesMissed = 0;
+        this.playlist = playlist;
+        LookaheadIKPipeline pipeline = new LookaheadIKPipeline(
+                playlist, armStateService.getArmState(),
+                this.clock.getTimestepSecs(), lookaheadFrames,
+                lookaheadExecutor
+        );
+        // The clock must be restarted before the update loop can see the pipeline
+        this.clock.restart();
+        this.current = pipeline;
         return true;
     }
     
+    @Override
+    public synchronized boolean queueAnimation(ArmAnimation animation) {
+        if (this.playlist == null) { return this.playAnimation(animation); }
+        return this.playlist.append(animation);
+    }
+
+    @Override
+    public PlaybackStatistics getPlaybackStatistics() {
+        return new PlaybackStatistics(
+                this.framesEvaluated, this.framesDropped, this.framesMissed,
+                this.clock.getLateTicks(), this.clock.getMaxLatenessNs() / 1e6
+        );
+    }
+
     /** Stops the animation from playing and reset the arm's state back to default */
-    private void clearAnimation() {
+    private synchronized void clearAnimation() {
+        if (this.current != null) { this.current.cancel(); }
         this.current = null;
+        this.playlist = null;
         this.active = false;
         this.armStateService.setReady(true);
     }
@@ -0,0 +1,76 @@
+package fr.wollfie.cottus.models.animation;
+
+import fr.wollfie.cottus.dto.animation.ArmAnimation;
+import fr.wollfie.cottus.utils.Preconditions;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>
+ *     An ordered list of animations played back to back. The whole list is played
+ *     {@code repeatCount} times, or indefinitely if the playlist loops.
+ * </p>
+ * <p>
+ *     Animations can be appended while the playlist plays, they are then played after the
+ *     animations already in the list, and are part of the following repetitions.
+ * </p>
+ */
+public class AnimationPlaylist {
+
+    private final List<ArmAnimation> entries = new CopyOnWriteArrayList<>();
+    private final boolean loop;
+    private final int repeatCount;
+
+    /** Index of the next entry to play in the current cycle */
+    private int nextIndex = 0;
+    private int cyclesPlayed = 0;
+    /** Set once the playlist has been exhausted, nothing can be appended anymore */
+    private boolean closed = false;
+
+    /**
+     * @param entries The animations to play, in order
+     * @param repeatCount The number of times the whole list is played, at least 1
+     * @param loop If true, the list is played until the playback is stopped, ignoring {@code repeatCount}
+     */
+    public AnimationPlaylist(List<? extends ArmAnimation> entries, int repeatCount, boolean loop) {
+        Preconditions.checkArgument(!entries.isEmpty());
+        Preconditions.checkArgument(repeatCount >= 1);
+        // A looping playlist of empty animations would never produce a frame
+        Preconditions.checkArgument(!loop || entries.stream().mapToDouble(ArmAnimation::getDurationSecs).sum() > 0);
+        this.entries.addAll(entries);
+        this.repeatCount = repeatCount;
+        this.loop = loop;
+    }
+
+    /** @return A playlist that plays the given animation once */
+    public static AnimationPlaylist of(ArmAnimation animation) {
+        return new AnimationPlaylist(List.of(animation), 1, false);
+    }
+
+    /**
+     * Append an animation at the end of the playlist
+     * @param animation The animation to append
+     * @return True if the animation was appended, false if the playlist was already exhausted
+     */
+    public synchronized boolean append(ArmAnimation animation) {
+        if (closed) { return false; }
+        this.entries.add(animation);
+        return true;
+    }
+
+    /**
+     * @return The next animation to play, anchored again to the arm's state, or null if the playlist is
+     * over. Must only be called by the thread that plays the playlist
+     */
+    public synchronized ArmAnimation next() {
+        if (nextIndex >= entries.size()) {
+            this.cyclesPlayed++;
+            if (!loop && cyclesPlayed >= repeatCount) { this.closed = true; return null; }
+            this.nextIndex = 0;
+        }
+        ArmAnimation animation = entries.get(nextIndex++);
+        animation.resetReference();
+        return animation;
+    }
+}
@@ -0,0 +1,124 @@
+package fr.wollfie.cottus.models.animation;
+
+import fr.wollfie.cottus.utils.Preconditions;
+
+/**
+ * <p>
+ *     Monotonic fixed-timestep clock used to play animations. The elapsed time is measured with
+ *     {@link System#nanoTime()}, so it is immune to wall-clock jumps, and accumulated until it can be
+ *     consumed as whole frames of {@link PlaybackClock#getTimestepNs()} nanoseconds.
+ * </p>
+ * <p>
+ *     When the update loop runs late, more than one frame is due on the same tick. The
+ *     {@link CatchUpPolicy} then decides whether every missed frame is evaluated or only the latest one.
+ * </p>
+ */
+public class PlaybackClock {
+
+    /** What to do with the frames that are due when a tick arrives late */
+    public enum CatchUpPolicy {
+        /** Evaluate every missed frame, up to the maximum number of frames per tick */
+        CATCH_UP,
+        /** Only evaluate the latest due frame, the missed ones are skipped */
+        SKIP,
+    }
+
+    private final long timestepNs;
+    private final CatchUpPolicy policy;
+    private final int maxFramesPerTick;
+
+    private long lastTickNs;
+    private long accumulatorNs;
+    /** True until the first tick after a restart */
+    private boolean firstTick;
+    /** Index of the next frame to evaluate, frame {@code i} is at {@code i * timestep} in the animation */
+    private long nextFrame;
+
+    // Read from other threads for statistics
+    private volatile long lateTicks;
+    private volatile long maxLatenessNs;
+
+    /**
+     * @param timestepNs The duration of a frame in nanoseconds
+     * @param policy The policy to apply when multiple frames are due on the same tick
+     * @param maxFramesPerTick Maximum number of frames returned by a single {@link PlaybackClock#tick()},
+     *                         the remaining due time is discarded to avoid a spiral of death
+     */
+    public PlaybackClock(long timestepNs, CatchUpPolicy policy, int maxFramesPerTick) {
+        Preconditions.checkArgument(timestepNs > 0);
+        Preconditions.checkArgument(maxFramesPerTick >= 1);
+        Preconditions.checkNotNull(policy);
+        this.timestepNs = timestepNs;
+        this.policy = policy;
+        this.maxFramesPerTick = maxFramesPerTick;
+        this.restart();
+    }
+
+    /** @return The duration of one frame in nanoseconds */
+    public long getTimestepNs() { return timestepNs; }
+
+    /** @return The duration of one frame in seconds */
+    public double getTimestepSecs() { return timestepNs / 1e9; }
+
+    /** @return The number of ticks that had more than one frame due since the last restart */
+    public long getLateTicks() { return lateTicks; }
+
+    /** @return The maximum lateness of a tick in nanoseconds since the last restart, i.e., the time
+     * elapsed since the first frame it returns was due */
+    public long getMaxLatenessNs() { return maxLatenessNs; }
+
+    /** Restart the clock from frame 0, the first frame is due on the next tick */
+    public void restart() {
+        this.lastTickNs = System.nanoTime();
+        // Frame 0 is due right away
+        this.accumulatorNs = timestepNs;
+        this.firstTick = true;
+        this.nextFrame = 0;
+        this.lateTicks = 0;
+        this.maxLatenessNs = 0;
+    }
+
+    /**
+     * Accumulate the time elapsed since the previous tick and return the number of frames that
+     * must be evaluated now. The frames themselves are obtained with {@link PlaybackClock#nextFrame()}
+     * @return The number of frames due, between {@code 0} and {@code maxFramesPerTick}
+     */
+    public int tick() {
+        long now = System.nanoTime();
+        this.accumulatorNs += now - lastTickNs;
+        this.lastTickNs = now;
+
+        long due = accumulatorNs / timestepNs;
+        if (due > 1) {
+            this.lateTicks++;
+            // The accumulator holds one frame more than the time elapsed since the next frame was due
+            this.maxLatenessNs = Math.max(maxLatenessNs, accumulatorNs - timestepNs);
+        }
+        if (due == 0) { return 0; }
+
+        this.accumulatorNs -= due * timestepNs;
+        if (firstTick) {
+            this.firstTick = false;
+            // The next frames are due half a frame ahead of the ticks, so that the scheduling jitter of
+            // the update loop doesn't make the frames due per tick alternate between 0 and 2
+            this.accumulatorNs = Math.max(accumulatorNs, timestepNs / 2);
+        }
+        return switch (policy) {
+            case CATCH_UP -> {
+                // Frames that cannot be caught up are skipped rather than queued for the next ticks
+                if (due > maxFramesPerTick) { this.nextFrame += due - maxFramesPerTick; }
+                yield (int) Math.min(due, maxFramesPerTick);
+            }
+            case SKIP -> {
+                this.nextFrame += due - 1;
+                yield 1;
+            }
+        };
+    }
+
+    /** @return The index of the next frame due, and advance the clock of one frame */
+    public long nextFrame() { return nextFrame++; }
+
+    /** @return The timestamp in seconds of the frame with the given index */
+    public double timestampOf(long frame) { return frame * timestepNs / 1e9; }
+}
@@ -0,0 +1,17 @@
+package fr.wollfie.cottus.models.animation;
+
+/**
+ * Counters of the playback of the current (or last) animation
+ * @param framesEvaluated The number of frames that were evaluated and applied to the arm
+ * @param framesDropped The number of frames dropped because no valid solution was found for them
+ * @param framesMissed The number of frames dropped because they were not solved ahead in time
+ * @param lateTicks The number of update ticks that had more than one frame due
+ * @param maxLatenessMs The maximum lateness of an update tick in milliseconds
+ */
+public record PlaybackStatistics(
+        long framesEvaluated,
+        long framesDropped,
+        long framesMissed,
+        long lateTicks,
+        double maxLatenessMs
+) { }
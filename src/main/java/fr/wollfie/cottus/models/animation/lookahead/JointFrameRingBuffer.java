@@ -0,0 +1,116 @@
+package fr.wollfie.cottus.models.animation.lookahead;
+
+import fr.wollfie.cottus.utils.Preconditions;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Bounded lock-free ring buffer of joint angle frames, for a single producer and a single consumer.
+ *     All the slots are allocated once, the producer writes the angles directly into the slot it
+ *     claims and publishes it, the consumer reads the slot in place and releases it.
+ * </p>
+ * <p>
+ *     Each slot carries the index of the frame it holds and a status, so that the consumer can
+ *     tell a solved frame from a frame for which no solution was found, or from the end of the animation.
+ * </p>
+ */
+public class JointFrameRingBuffer {
+
+    /** The frame was solved, its angles can be applied to the arm */
+    public static final int SOLVED = 0;
+    /** No valid solution was found for the frame, it must be dropped */
+    public static final int FAILED = 1;
+    /** There are no more frames to play */
+    public static final int END = 2;
+
+    private final int mask;
+    private final long[] frames;
+    private final int[] statuses;
+    private final double[][] angles;
+
+    /** Index of the next slot to read, only written by the consumer */
+    private final AtomicLong head = new AtomicLong();
+    /** Index of the next slot to write, only written by the producer */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity The number of frames the buffer can hold, rounded up to the next power of two
+     * @param nbJoints The number of angles in a frame
+     */
+    public JointFrameRingBuffer(int capacity, int nbJoints) {
+        Preconditions.checkArgument(capacity >= 1);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) { size <<= 1; }
+
+        this.mask = size - 1;
+        this.frames = new long[size];
+        this.statuses = new int[size];
+        this.angles = new double[size][nbJoints];
+    }
+
+    /** @return The number of frames the buffer can hold */
+    public int capacity() { return mask + 1; }
+
+    /** @return The number of frames currently published and not yet released */
+    public int size() { return (int) (tail.get() - head.get()); }
+
+// //======================================================================================\\
+// ||                                                                                      ||
+// ||                                       PRODUCER                                       ||
+// ||                                                                                      ||
+// \\======================================================================================//
+
+    /** @return True if the producer can claim a slot */
+    public boolean hasRoom() { return tail.get() - head.get() < capacity(); }
+
+    /** @return The angles array of the slot to write next. Only valid if {@link JointFrameRingBuffer#hasRoom()} */
+    public double[] claimAngles() { return angles[(int) (tail.get() & mask)]; }
+
+    /**
+     * Copy the given angles into the next slot, without publishing it
+     * @param values The angles to write, of size the number of joints
+     */
+    public void writeAngles(List<Double> values) {
+        double[] slot = claimAngles();
+        for (int i = 0; i < slot.length; i++) { slot[i] = values.get(i); }
+    }
+
+    /**
+     * Make the claimed slot visible to the consumer
+     * @param frame The index of the frame held by the slot
+     * @param status One of {@link JointFrameRingBuffer#SOLVED}, {@link JointFrameRingBuffer#FAILED}
+     *               or {@link JointFrameRingBuffer#END}
+     */
+    public void publish(long frame, int status) {
+        long t = tail.get();
+        int i = (int) (t & mask);
+        frames[i] = frame;
+        statuses[i] = status;
+        // The release store orders the slot's writes before its publication
+        tail.lazySet(t + 1);
+    }
+
+// //======================================================================================\\
+// ||                                                                                      ||
+// ||                                       CONSUMER                                       ||
+// ||                                                                                      ||
+// \\======================================================================================//
+
+    /** @return True if there is no published frame to read */
+    public boolean isEmpty() { return head.get() == tail.get(); }
+
+    /** @return The index of the frame at the head of the buffer. Only valid if the buffer is not empty */
+    public long peekFrame() { return frames[(int) (head.get() & mask)]; }
+
+    /** @return The status of the frame at the head of the buffer. Only valid if the buffer is not empty */
+    public int peekStatus() { return statuses[(int) (head.get() & mask)]; }
+
+    /** @return The angles of the frame at the head of the buffer, read in place. Only valid until
+     * the frame is released */
+    public double[] peekAngles() { return angles[(int) (head.get() & mask)]; }
+
+    /** Release the frame at the head of the buffer, giving its slot back to the producer */
+    public void release() { head.lazySet(head.get() + 1); }
+}
@@ -0,0 +1,145 @@
+package fr.wollfie.cottus.models.animation.lookahead;
+
+import fr.wollfie.cottus.dto.CottusArm;
+import fr.wollfie.cottus.dto.animation.ArmAnimation;
+import fr.wollfie.cottus.exception.AngleOutOfBoundsException;
+import fr.wollfie.cottus.exception.NoSolutionException;
+import fr.wollfie.cottus.models.animation.AnimationPlaylist;
+import fr.wollfie.cottus.models.arm.cottus_arm.DrivenCottusArm;
+import io.quarkus.logging.Log;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ *     Solves the inverse kinematics of an animation some frames ahead of its playback. A producer
+ *     task evaluates the frames in order on a copy of the arm, each frame being warm-started with the
+ *     solution of the previous one, and writes the joint angles into a {@link JointFrameRingBuffer}.
+ * </p>
+ * <p>
+ *     The frames come from an {@link AnimationPlaylist}: when an animation ends, the next one starts on
+ *     the very next frame, and is already being solved while the previous one still plays.
+ * </p>
+ * <p>
+ *     The update loop only has to dequeue the frame it needs with {@link LookaheadIKPipeline#poll(long, double[])},
+ *     so the latency of the IK is taken off the critical path and its hiccups are absorbed by the depth
+ *     of the buffer.
+ * </p>
+ */
+public class LookaheadIKPipeline {
+
+    /** The state of a frame requested by the consumer */
+    public enum FrameState {
+        /** The frame was solved and its angles were copied */
+        READY,
+        /** No valid solution exists for the frame */
+        FAILED,
+        /** The producer has not solved the frame yet */
+        NOT_READY,
+        /** The animation is over */
+        END,
+    }
+
+    private static final long PRODUCER_PARK_NS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AnimationPlaylist playlist;
+    private final CottusArm arm;
+    private final double timestepSecs;
+    private final JointFrameRingBuffer buffer;
+
+    private volatile boolean cancelled = false;
+    /** Set if the producer stopped before the end of the animation */
+    private volatile boolean crashed = false;
+
+    /**
+     * Creates the pipeline and starts solving the frames of the playlist on the given executor
+     * @param playlist The animations to solve
+     * @param armState The state of the arm when the playlist starts. It is copied, and the copy is
+     *                 moved along the animations to warm-start each frame
+     * @param timestepSecs The duration of a frame, frame {@code i} is at {@code i * timestepSecs}
+     * @param depth The maximum number of frames solved ahead of the playback
+     * @param executor The executor running the producer task
+     */
+    public LookaheadIKPipeline(
+            AnimationPlaylist playlist, CottusArm armState,
+            double timestepSecs, int depth,
+            ExecutorService executor
+    ) {
+        this.playlist = playlist;
+        this.arm = new DrivenCottusArm(armState);
+        this.timestepSecs = timestepSecs;
+        this.buffer = new JointFrameRingBuffer(depth, arm.getNbOfNonVirtualJoints());
+
+        executor.execute(this::produce);
+    }
+
+    /** Stops the producer, the frames already solved are discarded */
+    public void cancel() { this.cancelled = true; }
+
+    /** @return The number of frames solved ahead and not yet consumed */
+    public int getBufferedFrames() { return buffer.size(); }
+
+    /**
+     * Dequeue the given frame. The frames before it that were not consumed are discarded.
+     * @param frame The index of the frame to play
+     * @param out The array in which the angles are copied if the frame is {@link FrameState#READY}
+     * @return The state of the frame
+     */
+    public FrameState poll(long frame, double[] out) {
+        while (!buffer.isEmpty() && buffer.peekFrame() < frame && buffer.peekStatus() != JointFrameRingBuffer.END) {
+            buffer.release();
+        }
+        if (buffer.isEmpty()) { return crashed ? FrameState.END : FrameState.NOT_READY; }
+        if (buffer.peekFrame() > frame) { return FrameState.NOT_READY; }
+
+        switch (buffer.peekStatus()) {
+            case JointFrameRingBuffer.END: return FrameState.END;
+            case JointFrameRingBuffer.FAILED: buffer.release(); return FrameState.FAILED;
+            default: {
+                System.arraycopy(buffer.peekAngles(), 0, out, 0, out.length);
+                buffer.release();
+                return FrameState.READY;
+            }
+        }
+    }
+
+    /** Producer loop, solves the frames in order until the playlist is over or the pipeline is cancelled */
+    private void produce() {
+        ArmAnimation animation = playlist.next();
+        // Timestamp, on the frames' timeline, at which the current animation started
+        double animationStart = 0;
+        try {
+            for (long frame = 0; !cancelled; frame++) {
+                while (!buffer.hasRoom()) {
+                    if (cancelled) { return; }
+                    LockSupport.parkNanos(PRODUCER_PARK_NS);
+                }
+
+                double timestamp = frame * timestepSecs;
+                // Switch to the next animations of the playlist on the first frame past the current one's end
+                while (animation != null && animationStart + animation.getDurationSecs() < timestamp) {
+                    animationStart += animation.getDurationSecs();
+                    animation = playlist.next();
+                }
+                // Playlist is over
+                if (animation == null) { buffer.publish(frame, JointFrameRingBuffer.END); return; }
+
+                try {
+                    List<Double> angles = animation.evaluateAt(timestamp - animationStart).getAnglesFor(arm);
+                    // Checks the bounds and warm-starts the next frame
+                    arm.setAngles(angles);
+                    buffer.writeAngles(angles);
+                    buffer.publish(frame, JointFrameRingBuffer.SOLVED);
+                } catch (NoSolutionException | AngleOutOfBoundsException e) {
+                    buffer.publish(frame, JointFrameRingBuffer.FAILED);
+                }
+            }
+        } catch (Exception e) {
+            Log.error("The lookahead IK pipeline stopped unexpectedly", e);
+            this.crashed = true;
+        }
+    }
+}
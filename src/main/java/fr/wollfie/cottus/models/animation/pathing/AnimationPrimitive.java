@@ -12,8 +12,11 @@ import fr.wollfie.cottus.dto.animation.ArmAnimation;
 @JsonSubTypes({
         @JsonSubTypes.Type(value = BezierToAnimation.class, name = "Bezier"),
         @JsonSubTypes.Type(value = ComposedAnimation.class, name = "Composed"),
+        @JsonSubTypes.Type(value = JointSpaceAnimation.class, name = "Joints"),
         @JsonSubTypes.Type(value = LineToAnimation.class, name = "Line"),
+        @JsonSubTypes.Type(value = RetimedAnimation.class, name = "Retimed"),
         @JsonSubTypes.Type(value = SemiCircleToAnimation.class, name = "Semicircle"),
+        @JsonSubTypes.Type(value = TrackAnimation.class, name = "Track"),
         @JsonSubTypes.Type(value = WaitAnimation.class, name = "Wait"),
 })
 public interface AnimationPrimitive extends ArmAnimation { }
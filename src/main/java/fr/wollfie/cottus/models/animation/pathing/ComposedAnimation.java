@@ -49,6 +49,9 @@ public class ComposedAnimation implements AnimationPrimitive {
         return animationAndTimestamp.getItem1().evaluateAt(secFromStart - animationAndTimestamp.getItem2());
     }
 
+    @Override
+    public void resetReference() { this.animations.forEach(AnimationPrimitive::resetReference); }
+
     @Override
     public double getDurationSecs() {
         return this.animations.stream()
@@ -57,6 +57,9 @@ public abstract class EndEffectorAnimation implements ArmAnimation {
         }
     }
 
+    @Override
+    public void resetReference() { this.firstFrame = null; }
+
     /**
      * Gives a relative position and orientation of the end effector compared to the first frame 
      * of the animation
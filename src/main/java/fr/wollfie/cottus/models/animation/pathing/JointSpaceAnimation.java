@@ -0,0 +1,67 @@
+package fr.wollfie.cottus.models.animation.pathing;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.wollfie.cottus.dto.specification.ArmSpecification;
+import fr.wollfie.cottus.models.arm.positioning.specification.AngleSpecification;
+import fr.wollfie.cottus.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An animation given directly in joint space, by keyframes of the angles of the joints. The angles
+ * are linearly interpolated between the keyframes, no inverse kinematics is involved. Typically
+ * created from a recording of the arm
+ */
+public class JointSpaceAnimation implements AnimationPrimitive {
+
+    /** Timestamps of the keyframes, increasing and starting at 0 */
+    @JsonProperty("timestamps") private final double[] timestamps;
+    @JsonGetter("timestamps") public double[] getTimestamps() { return timestamps; }
+
+    /** Angles in radians of the non-virtual joints at each keyframe */
+    @JsonProperty("angles") private final double[][] angles;
+    @JsonGetter("angles") public double[][] getAngles() { return angles; }
+
+    public JointSpaceAnimation(
+            @JsonProperty("timestamps") double[] timestamps,
+            @JsonProperty("angles") double[][] angles
+    ) {
+        Preconditions.checkArgument(timestamps.length >= 1 && timestamps.length == angles.length);
+        for (int i = 1; i < timestamps.length; i++) {
+            Preconditions.checkArgument(timestamps[i] >= timestamps[i - 1]);
+            Preconditions.checkArgument(angles[i].length == angles[0].length);
+        }
+        this.timestamps = timestamps;
+        this.angles = angles;
+    }
+
+    @Override
+    public ArmSpecification evaluateAt(double secFromStart) {
+        int n = timestamps.length;
+        if (secFromStart <= timestamps[0]) { return this.keyframe(0, 1, 0); }
+        if (secFromStart >= timestamps[n - 1]) { return this.keyframe(n - 1, n - 1, 0); }
+
+        int i = Arrays.binarySearch(timestamps, secFromStart);
+        if (i >= 0) { return this.keyframe(i, i, 0); }
+        // Insertion point, the keyframe before is at i-1
+        i = -i - 1;
+        double span = timestamps[i] - timestamps[i - 1];
+        return this.keyframe(i - 1, i, span == 0 ? 0 : (secFromStart - timestamps[i - 1]) / span);
+    }
+
+    /** @return The angles interpolated between two keyframes, {@code alpha} being the ratio of the second one */
+    private AngleSpecification keyframe(int from, int to, double alpha) {
+        to = Math.min(to, timestamps.length - 1);
+        List<Double> frame = new ArrayList<>(angles[from].length);
+        for (int j = 0; j < angles[from].length; j++) {
+            frame.add(angles[from][j] + alpha * (angles[to][j] - angles[from][j]));
+        }
+        return new AngleSpecification(frame);
+    }
+
+    @Override
+    public double getDurationSecs() { return timestamps[timestamps.length - 1]; }
+}
@@ -0,0 +1,79 @@
+package fr.wollfie.cottus.models.animation.pathing;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.wollfie.cottus.dto.specification.ArmSpecification;
+import fr.wollfie.cottus.models.animation.timing.TimeOptimalParameterization;
+import fr.wollfie.cottus.utils.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * An animation that plays another animation with a different timing. The timing is given by
+ * knots mapping a timestamp of this animation to a timestamp of the original one, and is linearly
+ * interpolated between the knots. Typically computed by {@link TimeOptimalParameterization}
+ */
+public class RetimedAnimation implements AnimationPrimitive {
+
+    @JsonProperty("animation") private final AnimationPrimitive animation;
+    @JsonGetter("animation") public AnimationPrimitive getAnimation() { return animation; }
+
+    /** Timestamps of the knots in the original animation */
+    @JsonProperty("originalTimes") private final double[] originalTimes;
+    @JsonGetter("originalTimes") public double[] getOriginalTimes() { return originalTimes; }
+
+    /** Timestamps of the knots in this animation, increasing and starting at 0 */
+    @JsonProperty("retimedTimes") private final double[] retimedTimes;
+    @JsonGetter("retimedTimes") public double[] getRetimedTimes() { return retimedTimes; }
+
+    public RetimedAnimation(
+            @JsonProperty("animation") AnimationPrimitive animation,
+            @JsonProperty("originalTimes") double[] originalTimes,
+            @JsonProperty("retimedTimes") double[] retimedTimes
+    ) {
+        Preconditions.checkArgument(originalTimes.length == retimedTimes.length && originalTimes.length >= 1);
+        this.animation = animation;
+        this.originalTimes = originalTimes;
+        this.retimedTimes = retimedTimes;
+    }
+
+    /** @return The timestamp in the original animation corresponding to the given timestamp of this animation */
+    private double toOriginalTime(double secFromStart) {
+        int n = retimedTimes.length;
+        if (secFromStart <= retimedTimes[0]) { return originalTimes[0]; }
+        if (secFromStart >= retimedTimes[n - 1]) { return originalTimes[n - 1]; }
+
+        int i = Arrays.binarySearch(retimedTimes, secFromStart);
+        if (i >= 0) { return originalTimes[i]; }
+        // Insertion point, the knot before is at i-1
+        i = -i - 1;
+        double span = retimedTimes[i] - retimedTimes[i - 1];
+        double alpha = span == 0 ? 0 : (secFromStart - retimedTimes[i - 1]) / span;
+        return originalTimes[i - 1] + alpha * (originalTimes[i] - originalTimes[i - 1]);
+    }
+
+    /** @return The first timestamp of this animation corresponding to the given timestamp of the original animation */
+    public double toRetimedTime(double originalTime) {
+        int n = originalTimes.length;
+        if (originalTime <= originalTimes[0]) { return retimedTimes[0]; }
+        for (int i = 1; i < n; i++) {
+            if (originalTime <= originalTimes[i]) {
+                double span = originalTimes[i] - originalTimes[i - 1];
+                double alpha = span == 0 ? 0 : (originalTime - originalTimes[i - 1]) / span;
+                return retimedTimes[i - 1] + alpha * (retimedTimes[i] - retimedTimes[i - 1]);
+            }
+        }
+        return retimedTimes[n - 1];
+    }
+
+    @Override
+    public ArmSpecification evaluateAt(double secFromStart) {
+        return this.animation.evaluateAt(this.toOriginalTime(secFromStart));
+    }
+
+    @Override
+    public double getDurationSecs() { return retimedTimes[retimedTimes.length - 1]; }
+
+    @Override
+    public void resetReference() { this.animation.resetReference(); }
+}
@@ -0,0 +1,65 @@
+package fr.wollfie.cottus.models.animation.pathing;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.wollfie.cottus.dto.specification.ArmSpecification;
+import fr.wollfie.cottus.exception.InvalidTrackException;
+import fr.wollfie.cottus.models.animation.track.AnimationTrack;
+import fr.wollfie.cottus.models.animation.track.AnimationTracks;
+import fr.wollfie.cottus.models.arm.positioning.specification.AngleSpecification;
+import fr.wollfie.cottus.utils.Preconditions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An animation played from a binary {@link AnimationTrack} of joint angles. Only the name of the track
+ * is serialized, the track is found in the directory of the tracks, see {@link AnimationTracks}, and
+ * memory-mapped the first time the animation is played
+ */
+public class TrackAnimation implements AnimationPrimitive {
+
+    /** The name of the track, relative to the directory of the tracks and without its extension */
+    @JsonProperty("name") private final String name;
+    @JsonGetter("name") public String getName() { return name; }
+
+    private volatile AnimationTrack track;
+
+    /** @throws IllegalArgumentException If the name is absolute or leads out of the directory of the tracks */
+    public TrackAnimation(
+            @JsonProperty("name") String name
+    ) {
+        Preconditions.checkArgument(AnimationTracks.isValidName(name));
+        this.name = name;
+    }
+
+    /** @return The track, opened on first use */
+    private AnimationTrack track() {
+        AnimationTrack track = this.track;
+        if (track != null) { return track; }
+        synchronized (this) {
+            if (this.track == null) {
+                try { this.track = AnimationTrack.open(AnimationTracks.resolve(name)); }
+                catch (IOException | InvalidTrackException e) {
+                    throw new IllegalStateException("Cannot open the animation track " + name, e);
+                }
+            }
+            return this.track;
+        }
+    }
+
+    @Override
+    public ArmSpecification evaluateAt(double secFromStart) {
+        AnimationTrack track = this.track();
+        double[] angles = new double[track.getNbJoints()];
+        track.interpolate(secFromStart, angles);
+
+        List<Double> frame = new ArrayList<>(angles.length);
+        for (double angle : angles) { frame.add(angle); }
+        return new AngleSpecification(frame);
+    }
+
+    @Override
+    public double getDurationSecs() { return this.track().getDurationSecs(); }
+}
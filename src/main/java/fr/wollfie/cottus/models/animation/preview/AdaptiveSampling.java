@@ -0,0 +1,174 @@
+package fr.wollfie.cottus.models.animation.preview;
+
+import fr.wollfie.cottus.dto.CottusArm;
+import fr.wollfie.cottus.dto.animation.AnimationPreview;
+import fr.wollfie.cottus.dto.animation.AnimationPreviewPoint;
+import fr.wollfie.cottus.dto.animation.ArmAnimation;
+import fr.wollfie.cottus.exception.AngleOutOfBoundsException;
+import fr.wollfie.cottus.exception.NoSolutionException;
+import fr.wollfie.cottus.models.arm.positioning.kinematics.inverse.KinematicsModule;
+import fr.wollfie.cottus.utils.Preconditions;
+import fr.wollfie.cottus.utils.maths.Vector;
+import fr.wollfie.cottus.utils.maths.Vector3D;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ *     Error-driven sampling of an animation. Instead of solving frames at a fixed rate, the animation
+ *     is first solved at a few coarse knots, then each segment between two solved samples is split in
+ *     half only while :
+ * </p>
+ * <ul>
+ *     <li>The end effector at the middle of the segment is further than the tolerance from the
+ *     chord joining the two samples, or</li>
+ *     <li>A joint moves by more than the tolerance between the two samples</li>
+ * </ul>
+ * <p>
+ *     Straight and slow parts of the animation are then covered by few points while tight turns
+ *     are refined, for far fewer solves of the inverse kinematics than a uniform sampling of the
+ *     same fidelity.
+ * </p>
+ * <p>
+ *     The coarse knots are solved in order, and include the first frame of each animation composing
+ *     the animation, so that relative animations are anchored as they would be when playing. Each
+ *     middle frame is warm-started from the solution at the start of its segment.
+ * </p>
+ */
+public final class AdaptiveSampling {
+
+    /** The tolerances of the sampling, and the bounds of the length of the segments */
+    public record Tolerance(
+            double chordErrorMm,
+            double jointDeltaRad,
+            double minSegmentSecs,
+            double maxSegmentSecs
+    ) {
+        public Tolerance {
+            Preconditions.checkArgument(chordErrorMm > 0);
+            Preconditions.checkArgument(jointDeltaRad > 0);
+            Preconditions.checkArgument(minSegmentSecs > 0);
+            Preconditions.checkArgument(maxSegmentSecs >= minSegmentSecs);
+        }
+    }
+
+    /** A solved frame of the animation */
+    private record Sample(double timestamp, double[] angles, Vector3D position, Vector3D direction) { }
+
+    private AdaptiveSampling() { }
+
+    /**
+     * Sample the animation until the tolerance is met
+     * @param animation The animation
+     * @param arm A copy of the arm in the state it has when the animation starts, it is moved by the sampling
+     * @param tolerance The tolerance of the sampling
+     * @return The preview, whose points are ordered but not evenly spaced in time
+     */
+    public static AnimationPreview sample(ArmAnimation animation, CottusArm arm, Tolerance tolerance) {
+        double duration = animation.getDurationSecs();
+        List<AnimationPreviewPoint> points = new ArrayList<>();
+
+        Sample previous = null;
+        for (double knot : coarseKnots(animation, duration, tolerance)) {
+            if (previous != null) { moveTo(arm, previous); }
+            Sample sample = solve(animation, arm, knot);
+            if (sample == null) { continue; }
+
+            if (previous != null) { refine(animation, arm, previous, sample, tolerance, points); }
+            points.add(toPoint(sample));
+            previous = sample;
+        }
+        return new AnimationPreviewImpl(points, duration);
+    }
+
+    /**
+     * @return The timestamps that are always sampled : the start and end of the animation, the start of
+     * each animation composing it preceded by the shortest segment, and enough knots in between so that no
+     * segment is longer than the maximum
+     */
+    private static TreeSet<Double> coarseKnots(ArmAnimation animation, double duration, Tolerance tolerance) {
+        TreeSet<Double> boundaries = new TreeSet<>();
+        boundaries.add(0.0);
+        boundaries.add(duration);
+        for (double start : AnimationChunks.leafStartTimes(animation, 0)) {
+            if (start <= 0 || start >= duration) { continue; }
+            boundaries.add(Math.max(0, start - tolerance.minSegmentSecs()));
+            boundaries.add(start);
+        }
+
+        TreeSet<Double> knots = new TreeSet<>(boundaries);
+        Double from = boundaries.first();
+        for (Double to = boundaries.higher(from); to != null; from = to, to = boundaries.higher(to)) {
+            int nbSegments = (int) Math.ceil((to - from) / tolerance.maxSegmentSecs());
+            for (int i = 1; i < nbSegments; i++) { knots.add(from + i * (to - from) / nbSegments); }
+        }
+        return knots;
+    }
+
+    /** Adds the samples strictly between the two given ones that are needed to meet the tolerance, in order */
+    private static void refine(
+            ArmAnimation animation, CottusArm arm,
+            Sample from, Sample to,
+            Tolerance tolerance, List<AnimationPreviewPoint> points
+    ) {
+        if (to.timestamp() - from.timestamp() < 2 * tolerance.minSegmentSecs()) { return; }
+
+        double middleTime = (from.timestamp() + to.timestamp()) / 2;
+        moveTo(arm, from);
+        Sample middle = solve(animation, arm, middleTime);
+        if (middle == null) { return; }
+
+        if (chordError(from, middle, to) <= tolerance.chordErrorMm()
+                && maxJointDelta(from, to) <= tolerance.jointDeltaRad()) { return; }
+
+        refine(animation, arm, from, middle, tolerance, points);
+        points.add(toPoint(middle));
+        refine(animation, arm, middle, to, tolerance, points);
+    }
+
+    /** @return The distance in millimeters from the middle sample to the chord joining the two others */
+    private static double chordError(Sample from, Sample middle, Sample to) {
+        double ratio = (middle.timestamp() - from.timestamp()) / (to.timestamp() - from.timestamp());
+        return middle.position().distanceTo(to.position().interpolate(from.position(), ratio));
+    }
+
+    /** @return The largest movement in radians of a joint between the two samples */
+    private static double maxJointDelta(Sample from, Sample to) {
+        double max = 0;
+        for (int i = 0; i < from.angles().length; i++) {
+            max = Math.max(max, Math.abs(to.angles()[i] - from.angles()[i]));
+        }
+        return max;
+    }
+
+    /** @return The solved frame, or null if it has no solution */
+    private static Sample solve(ArmAnimation animation, CottusArm arm, double timestamp) {
+        try {
+            List<Double> angles = animation.evaluateAt(timestamp).getAnglesFor(arm);
+
+            Vector posRot = KinematicsModule.forwardSolve( arm.dhTable(), Vector.fromList(angles), true );
+            Vector3D position = Vector3D.of(posRot.get(0), posRot.get(1), posRot.get(2));
+            Vector3D direction = Vector3D.of(posRot.get(3), posRot.get(4), posRot.get(5));
+
+            arm.setAngles(angles);
+            return new Sample(
+                    timestamp, angles.stream().mapToDouble(Double::doubleValue).toArray(),
+                    position, direction
+            );
+        } catch (NoSolutionException | AngleOutOfBoundsException e) { return null; /* Silenced */ }
+    }
+
+    private static AnimationPreviewPoint toPoint(Sample sample) {
+        return new AnimationPreviewPointImpl(sample.position(), sample.direction(), sample.timestamp());
+    }
+
+    /** Move the arm back to an already solved sample, to warm-start the next solve from it */
+    private static void moveTo(CottusArm arm, Sample sample) {
+        List<Double> angles = new ArrayList<>(sample.angles().length);
+        for (double angle : sample.angles()) { angles.add(angle); }
+        try { arm.setAngles(angles); }
+        catch (AngleOutOfBoundsException e) { /* Cannot happen, the arm already had these angles */ }
+    }
+}
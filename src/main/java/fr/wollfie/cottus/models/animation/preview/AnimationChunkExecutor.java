@@ -0,0 +1,50 @@
+package fr.wollfie.cottus.models.animation.preview;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Threads solving the {@link AnimationChunks} of the previews, bakes and validations. The work is bound
+ * by the CPU, so all of them share the same pool rather than each having one thread per processor
+ */
+@ApplicationScoped
+public class AnimationChunkExecutor {
+
+    @ConfigProperty(name = "cottus.config.preview.parallelism") int parallelism;
+    @ConfigProperty(name = "cottus.config.preview.min-chunk-frames") int minChunkFrames;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() { this.executor = Executors.newFixedThreadPool(getParallelism()); }
+
+    @PreDestroy
+    void onDestroy() { this.executor.shutdownNow(); }
+
+    /** @return The number of threads of the pool */
+    public int getParallelism() {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @param nbFrames The number of frames to solve
+     * @return The number of chunks to split the frames in, so that each thread solves at least the minimum
+     * number of frames of a chunk
+     */
+    public int nbChunksFor(int nbFrames) {
+        return Math.max(1, Math.min(nbFrames / minChunkFrames, getParallelism()));
+    }
+
+    /**
+     * @param chunkTask The task solving a chunk
+     * @return The result of the task, once it has run on the pool
+     */
+    public <T> Future<T> submit(Callable<T> chunkTask) { return executor.submit(chunkTask); }
+}
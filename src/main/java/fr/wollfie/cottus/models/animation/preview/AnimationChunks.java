@@ -0,0 +1,105 @@
+package fr.wollfie.cottus.models.animation.preview;
+
+import fr.wollfie.cottus.dto.CottusArm;
+import fr.wollfie.cottus.dto.animation.ArmAnimation;
+import fr.wollfie.cottus.exception.AngleOutOfBoundsException;
+import fr.wollfie.cottus.exception.NoSolutionException;
+import fr.wollfie.cottus.models.animation.pathing.ComposedAnimation;
+import fr.wollfie.cottus.models.animation.pathing.RetimedAnimation;
+import fr.wollfie.cottus.models.arm.cottus_arm.DrivenCottusArm;
+import fr.wollfie.cottus.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ *     Partition of the frames of an animation in contiguous chunks that can be solved in parallel.
+ *     Solving the frames one after the other warm-starts each frame with the solution of the previous
+ *     one, and anchors the relative animations to the arm's state when they start. To keep both when
+ *     solving chunks in parallel, the chunks are prepared by a sequential priming pass which solves :
+ * </p>
+ * <ul>
+ *     <li>The frame before each chunk, whose solution seeds the copy of the arm given to the chunk</li>
+ *     <li>The first frame of each animation composing the animation, and the frame before it if any, so
+ *     that relative animations are anchored as they would be when solving all the frames in order</li>
+ * </ul>
+ * <p>
+ *     Once primed, the animation is only read by the chunks, which can then be solved concurrently.
+ * </p>
+ */
+public final class AnimationChunks {
+
+    /**
+     * A range of frames to solve with their own copy of the arm
+     * @param from The index of the first frame of the chunk
+     * @param to The index after the last frame of the chunk
+     * @param arm A copy of the arm, in the state it has before solving the first frame of the chunk
+     */
+    public record Chunk(int from, int to, CottusArm arm) { }
+
+    private AnimationChunks() { }
+
+    /**
+     * Prime the animation and split its frames in chunks
+     * @param animation The animation
+     * @param armState The state of the arm when the animation starts, it is copied
+     * @param nbFrames The number of frames, frame {@code i} being at {@code i * dt}
+     * @param dt The time between two frames
+     * @param nbChunks The number of chunks to split the frames into
+     * @return The chunks, in order
+     */
+    public static List<Chunk> prepare(ArmAnimation animation, CottusArm armState, int nbFrames, double dt, int nbChunks) {
+        Preconditions.checkArgument(nbChunks >= 1);
+        nbChunks = Math.max(1, Math.min(nbChunks, nbFrames));
+        int chunkSize = (nbFrames + nbChunks - 1) / nbChunks;
+
+        TreeSet<Integer> primingFrames = new TreeSet<>();
+        TreeSet<Integer> seedFrames = new TreeSet<>();
+        for (int from = chunkSize; from < nbFrames; from += chunkSize) { seedFrames.add(from - 1); }
+        primingFrames.addAll(seedFrames);
+        // The first frame anchors the first animation, from the state the arm has when the animation starts
+        primingFrames.add(0);
+        for (double start : leafStartTimes(animation, 0)) {
+            int first = (int) Math.ceil(start / dt);
+            if (first >= nbFrames) { continue; }
+            if (first > 0) { primingFrames.add(first - 1); }
+            primingFrames.add(first);
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        CottusArm arm = new DrivenCottusArm(armState);
+        chunks.add(new Chunk(0, Math.min(chunkSize, nbFrames), new DrivenCottusArm(arm)));
+
+        for (int frame : primingFrames) {
+            try {
+                List<Double> angles = animation.evaluateAt(frame * dt).getAnglesFor(arm);
+                arm.setAngles(angles);
+            } catch (NoSolutionException | AngleOutOfBoundsException e) { /* Keep the previous state */ }
+
+            if (seedFrames.contains(frame)) {
+                int from = frame + 1;
+                chunks.add(new Chunk(from, Math.min(from + chunkSize, nbFrames), new DrivenCottusArm(arm)));
+            }
+        }
+        return chunks;
+    }
+
+    /** @return The timestamps at which each of the animations composing the given one starts */
+    static List<Double> leafStartTimes(ArmAnimation animation, double offset) {
+        List<Double> starts = new ArrayList<>();
+        if (animation instanceof ComposedAnimation composed) {
+            double start = offset;
+            for (ArmAnimation child : composed.getAnimations()) {
+                starts.addAll(leafStartTimes(child, start));
+                start += child.getDurationSecs();
+            }
+        } else if (animation instanceof RetimedAnimation retimed) {
+            for (double start : leafStartTimes(retimed.getAnimation(), 0)) {
+                starts.add(offset + retimed.toRetimedTime(start));
+            }
+        } else { starts.add(offset); }
+        return starts;
+    }
+}
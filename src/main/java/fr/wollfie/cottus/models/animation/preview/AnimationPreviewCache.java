@@ -0,0 +1,186 @@
+package fr.wollfie.cottus.models.animation.preview;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fr.wollfie.cottus.dto.CottusArm;
+import fr.wollfie.cottus.dto.animation.AnimationPreview;
+import fr.wollfie.cottus.exception.NoSolutionException;
+import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.arm.positioning.kinematics.DHTable;
+import fr.wollfie.cottus.services.ArmStateService;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>
+ *     Content-addressed cache of the results of the {@link AnimationSampler}. An entry is keyed by
+ *     a hash of everything the result depends on : the canonical definition of the animation, the
+ *     sampling rate, the geometry of the arm and the pose the arm starts from, as every end effector
+ *     animation is resolved relative to it. Editing any of them produces a new key, so entries
+ *     never have to be invalidated.
+ * </p>
+ * <p>
+ *     The cache is bounded by the estimated memory weight of its entries, the least recently
+ *     used ones are evicted first.
+ * </p>
+ */
+@ApplicationScoped
+public class AnimationPreviewCache {
+
+    /** Estimated size of a cached preview point : the point, its two vectors and its reference */
+    private static final long POINT_WEIGHT_BYTES = 120;
+    /** Estimated size of an entry without its value : the key, the map node and the value's header */
+    private static final long ENTRY_WEIGHT_BYTES = 256;
+
+    @Inject AnimationSampler animationSampler;
+    @Inject ArmStateService armStateService;
+    @Inject ObjectMapper defaultObjectMapper;
+
+    @ConfigProperty(name = "cottus.config.preview.cache-max-bytes") long maxWeightBytes;
+
+    /** Serializes the animations with a stable order of properties, so that equal definitions hash the same */
+    private ObjectMapper canonicalMapper;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weightBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    private record Entry(Object value, long weightBytes) { }
+
+    /** A computation of the sampler whose result can be cached */
+    @FunctionalInterface
+    private interface Loader<T> { T load() throws NoSolutionException; }
+
+    @PostConstruct
+    void init() {
+        this.canonicalMapper = defaultObjectMapper.copy()
+                .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+                .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    }
+
+    /**
+     * @return The preview of the animation, see {@link AnimationSampler#sample}. It is only
+     * sampled if no identical request was cached
+     */
+    public AnimationPreview getPreview(AnimationPrimitive animation, int nbPointsPerSec) throws NoSolutionException {
+        String key = this.keyOf("preview", animation, nbPointsPerSec);
+        return this.getOrLoad(key, () -> {
+            AnimationPreview preview = animationSampler.sample(animation, nbPointsPerSec);
+            return new AnimationPreviewImpl(List.copyOf(preview.points()), preview.duration());
+        }, preview -> ENTRY_WEIGHT_BYTES + preview.points().size() * POINT_WEIGHT_BYTES);
+    }
+
+    /**
+     * @return The adaptive preview of the animation, see {@link AnimationSampler#sampleAdaptive}. It is only
+     * sampled if no identical request was cached
+     */
+    public AnimationPreview getAdaptivePreview(AnimationPrimitive animation, double chordErrorMm, double jointDeltaRad)
+            throws NoSolutionException {
+        String key = this.keyOf("adaptive-preview", animation, 0, new double[]{ chordErrorMm, jointDeltaRad });
+        return this.getOrLoad(key, () -> {
+            AnimationPreview preview = animationSampler.sampleAdaptive(animation, chordErrorMm, jointDeltaRad);
+            return new AnimationPreviewImpl(List.copyOf(preview.points()), preview.duration());
+        }, preview -> ENTRY_WEIGHT_BYTES + preview.points().size() * POINT_WEIGHT_BYTES);
+    }
+
+    /**
+     * @return The minimum time of the animation, see {@link AnimationSampler#getMinTimeSec}. It is only
+     * computed if no identical request was cached with the same limits of the motors
+     */
+    public double getMinTimeSec(AnimationPrimitive animation, int nbPointsPerSec) throws NoSolutionException {
+        String key = this.keyOf("min-time", animation, nbPointsPerSec,
+                animationSampler.getMaxVelocities(), animationSampler.getMaxAccelerations());
+        return this.getOrLoad(key, () -> animationSampler.getMinTimeSec(animation, nbPointsPerSec),
+                minTime -> ENTRY_WEIGHT_BYTES);
+    }
+
+    /** @return The statistics of the cache since the application started */
+    public synchronized PreviewCacheStatistics getStatistics() {
+        return new PreviewCacheStatistics(hits, misses, evictions, entries.size(), weightBytes, maxWeightBytes);
+    }
+
+    /** Remove all the entries from the cache */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.weightBytes = 0;
+    }
+
+// //======================================================================================\\
+// ||                                                                                      ||
+// ||                                       CACHE                                          ||
+// ||                                                                                      ||
+// \\======================================================================================//
+
+    @SuppressWarnings("unchecked")
+    private <T> T getOrLoad(String key, Loader<T> loader, ToLongFunction<T> weigher)
+            throws NoSolutionException {
+        synchronized (this) {
+            Entry entry = this.entries.get(key);
+            if (entry != null) { this.hits++; return (T) entry.value(); }
+            this.misses++;
+        }
+        // Computed outside the lock, two identical requests may both compute the result, which is harmless
+        T value = loader.load();
+        long weight = weigher.applyAsLong(value);
+        if (weight > maxWeightBytes) { return value; }
+
+        synchronized (this) {
+            Entry previous = this.entries.put(key, new Entry(value, weight));
+            if (previous != null) { this.weightBytes -= previous.weightBytes(); }
+            this.weightBytes += weight;
+
+            Iterator<Entry> leastRecentlyUsed = this.entries.values().iterator();
+            while (this.weightBytes > maxWeightBytes && leastRecentlyUsed.hasNext()) {
+                this.weightBytes -= leastRecentlyUsed.next().weightBytes();
+                leastRecentlyUsed.remove();
+                this.evictions++;
+            }
+        }
+        return value;
+    }
+
+    /** @return A hash of the request, of the arm's geometry and of its current pose */
+    private String keyOf(String request, AnimationPrimitive animation, int nbPointsPerSec, double[]... parameters) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getBytes(StandardCharsets.UTF_8));
+            digest.update(canonicalMapper.writeValueAsBytes(animation));
+
+            CottusArm arm = armStateService.getArmState();
+            DHTable table = arm.dhTable();
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Double.BYTES * 5 * table.size());
+            buffer.putInt(nbPointsPerSec);
+            for (int i = 0; i < table.size(); i++) {
+                buffer.putDouble(table.getD(i)).putDouble(table.getA(i))
+                        .putDouble(table.getTheta0(i)).putDouble(table.getAlpha(i))
+                        // Even absolute animations are anchored on the pose the arm starts from
+                        .putDouble(table.getVarTheta(i));
+            }
+            digest.update(buffer.array());
+
+            for (double[] parameter : parameters) {
+                ByteBuffer values = ByteBuffer.allocate(Double.BYTES * parameter.length);
+                for (double value : parameter) { values.putDouble(value); }
+                digest.update(values.array());
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) { throw new RuntimeException(e); }
+    }
+}
@@ -7,6 +7,9 @@ import fr.wollfie.cottus.dto.animation.ArmAnimation;
 import fr.wollfie.cottus.dto.specification.ArmSpecification;
 import fr.wollfie.cottus.exception.AngleOutOfBoundsException;
 import fr.wollfie.cottus.exception.NoSolutionException;
+import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.animation.pathing.RetimedAnimation;
+import fr.wollfie.cottus.models.animation.timing.TimeOptimalParameterization;
 import fr.wollfie.cottus.models.arm.cottus_arm.DrivenCottusArm;
 import fr.wollfie.cottus.models.arm.positioning.kinematics.inverse.KinematicsModule;
 import fr.wollfie.cottus.services.AnimationSamplerService;
@@ -14,11 +17,18 @@ import fr.wollfie.cottus.services.ArmCommunicationService;
 import fr.wollfie.cottus.services.ArmStateService;
 import fr.wollfie.cottus.utils.maths.Vector;
 import fr.wollfie.cottus.utils.maths.Vector3D;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Take different samples in an animation. Can compute the preview for an animation with different points
@@ -29,86 +39,239 @@ public class AnimationSampler implements AnimationSamplerService {
     
     @Inject ArmStateService armStateService;
     @Inject ArmCommunicationService armCommunicationService;
-    
+    @Inject AnimationChunkExecutor chunkExecutor;
+
+    @ConfigProperty(name = "cottus.config.motors.default-speed-rad-per-sec") double defaultMotorSpeed;
+    @ConfigProperty(name = "cottus.config.motors.max-acceleration-rad-per-sec2") double maxMotorAcceleration;
+    @ConfigProperty(name = "cottus.config.preview.adaptive.min-segment-secs") double minSegmentSecs;
+    @ConfigProperty(name = "cottus.config.preview.adaptive.max-segment-secs") double maxSegmentSecs;
+
     /**
      * Creates a set of sampled points from the animation, representing the 
-     * end effector's position and direction
+     * end effector's position and direction. The frames are split in {@link AnimationChunks}
+     * which are sampled in parallel
      * @param animation The animation to sample
      * @param nbPointsPerSec The number of points to create
      * @return The sampled animation to preview
      */
     public AnimationPreview sample(ArmAnimation animation, int nbPointsPerSec) throws NoSolutionException {
         double duration = animation.getDurationSecs();
-        DrivenCottusArm arm = new DrivenCottusArm(armStateService.getArmState());
-        
-        List<AnimationPreviewPoint> samples = new ArrayList<>();
 
-        double timestamp;
         int nbPoints = (int) (animation.getDurationSecs() * nbPointsPerSec);
         double dt = animation.getDurationSecs() / nbPoints;
-        
-        for (int i = 0; i < nbPoints; i++) {
-            try {
-                timestamp = i * dt;
-                ArmSpecification specification = animation.evaluateAt(timestamp);
 
-                List<Double> angles = specification.getAnglesFor(arm);
+        List<AnimationChunks.Chunk> chunks = AnimationChunks.prepare(
+                animation, armStateService.getArmState(), nbPoints, dt, chunkExecutor.nbChunksFor(nbPoints)
+        );
 
-                Vector posRot = KinematicsModule.forwardSolve( arm.dhTable(), Vector.fromList(angles), true );
-                Vector3D position = Vector3D.of(posRot.get(0), posRot.get(1), posRot.get(2));
-                Vector3D direction = Vector3D.of(posRot.get(3), posRot.get(4), posRot.get(5));
+        List<Future<List<AnimationPreviewPoint>>> futures = new ArrayList<>();
+        for (AnimationChunks.Chunk chunk : chunks) {
+            futures.add(chunkExecutor.submit(() -> sampleChunk(animation, chunk, dt)));
+        }
 
-                samples.add(new AnimationPreviewPointImpl(
-                        position, direction, timestamp
-                ));
-                
-                arm.setAngles(angles);
-            } catch (NoSolutionException | AngleOutOfBoundsException e) { /* Silenced */ }
+        List<AnimationPreviewPoint> samples = new ArrayList<>(nbPoints);
+        try {
+            for (Future<List<AnimationPreviewPoint>> future : futures) { samples.addAll(future.get()); }
+        } catch (InterruptedException | ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw new RuntimeException(e);
         }
-        
         return new AnimationPreviewImpl(samples, duration);
     }
 
+    /** @return The sampled points of the frames of the chunk, solved in order starting from the chunk's arm */
+    private static List<AnimationPreviewPoint> sampleChunk(ArmAnimation animation, AnimationChunks.Chunk chunk, double dt) {
+        CottusArm arm = chunk.arm();
+        List<AnimationPreviewPoint> samples = new ArrayList<>(chunk.to() - chunk.from());
+
+        for (int i = chunk.from(); i < chunk.to(); i++) {
+            AnimationPreviewPoint point = samplePoint(animation, arm, i * dt);
+            if (point != null) { samples.add(point); }
+        }
+        return samples;
+    }
+
+    /**
+     * Creates a set of sampled points from the animation, only as dense as needed for the preview
+     * to stay within the given tolerances of the animation. See {@link AdaptiveSampling}
+     * @param animation The animation to sample
+     * @param chordErrorMm The maximum distance in millimeters between the end effector and the
+     *                     segments joining the sampled points
+     * @param jointDeltaRad The maximum movement in radians of a joint between two sampled points
+     * @return The sampled animation to preview, whose points are not evenly spaced in time
+     */
+    public AnimationPreview sampleAdaptive(ArmAnimation animation, double chordErrorMm, double jointDeltaRad) {
+        return AdaptiveSampling.sample(
+                animation, new DrivenCottusArm(armStateService.getArmState()),
+                new AdaptiveSampling.Tolerance(chordErrorMm, jointDeltaRad, minSegmentSecs, maxSegmentSecs)
+        );
+    }
+
+    /**
+     * Lazily samples the animation, one frame at a time and in order. A frame is only solved
+     * when the next point is requested, so that the sampling stops as soon as the iteration does
+     * @param animation The animation to sample
+     * @param nbPointsPerSec The number of points per second of animation
+     * @return An iterator over the sampled points
+     */
+    public Iterator<AnimationPreviewPoint> iterate(ArmAnimation animation, int nbPointsPerSec) {
+        int nbPoints = (int) (animation.getDurationSecs() * nbPointsPerSec);
+        double dt = animation.getDurationSecs() / nbPoints;
+        CottusArm arm = new DrivenCottusArm(armStateService.getArmState());
+
+        return new Iterator<>() {
+            private int frame = 0;
+            private AnimationPreviewPoint next = null;
+
+            @Override
+            public boolean hasNext() {
+                // Skip the frames that have no solution
+                while (next == null && frame < nbPoints) { next = samplePoint(animation, arm, frame++ * dt); }
+                return next != null;
+            }
+
+            @Override
+            public AnimationPreviewPoint next() {
+                if (!hasNext()) { throw new NoSuchElementException(); }
+                AnimationPreviewPoint point = next;
+                next = null;
+                return point;
+            }
+        };
+    }
+
+    /**
+     * Solves a single frame and moves the arm to it, so that it is warm-started for the next frame
+     * @return The sampled point, or null if the frame has no solution
+     */
+    private static AnimationPreviewPoint samplePoint(ArmAnimation animation, CottusArm arm, double timestamp) {
+        try {
+            ArmSpecification specification = animation.evaluateAt(timestamp);
+
+            List<Double> angles = specification.getAnglesFor(arm);
+
+            Vector posRot = KinematicsModule.forwardSolve( arm.dhTable(), Vector.fromList(angles), true );
+            Vector3D position = Vector3D.of(posRot.get(0), posRot.get(1), posRot.get(2));
+            Vector3D direction = Vector3D.of(posRot.get(3), posRot.get(4), posRot.get(5));
+
+            arm.setAngles(angles);
+            return new AnimationPreviewPointImpl(position, direction, timestamp);
+        } catch (NoSolutionException | AngleOutOfBoundsException e) { return null; /* Silenced */ }
+    }
+
     /**
      * <p>
-     *     Calculate a lower bound for the time the arm will take to go through all the sampled points
-     *     of the specified animation, given the configured speed for the stepper motors.
+     *     Calculate the minimum time the arm will take to go through all the sampled points
+     *     of the specified animation, given the maximum velocity and acceleration of each motor.
+     *     See {@link TimeOptimalParameterization}
      * </p>
      * <p>
-     *     The bigger the amount of sample points in the animation, the more accurate the lower 
-     *     bound will be to reality
+     *     The bigger the amount of sample points in the animation, the more accurate the 
+     *     time will be to reality
      * </p>
      * @param animation The animation
      * @param nbPointsPerSec Number of sample points
-     * @return The lower bound for the time in seconds the arm will take to go through
+     * @return The minimum time in seconds the arm will take to go through
      * all the animation's points.
      */
     public double getMinTimeSec(ArmAnimation animation, int nbPointsPerSec) throws NoSolutionException {
-        // TODO MAYBE TAKE INTO ACCOUNT ACCELERATION TOO
-        double motorsRadPerSec = armCommunicationService.getMotorSpeed();
-        CottusArm arm = armStateService.getArmState();
+        JointPath path = this.sampleJointPath(animation, nbPointsPerSec);
+        double[] timestamps = TimeOptimalParameterization.computeTimestamps(
+                path.angles(), path.timestamps(), this.getMaxVelocities(), this.getMaxAccelerations()
+        );
+        return timestamps[timestamps.length - 1];
+    }
 
-        int nbPoints = (int) (animation.getDurationSecs() * nbPointsPerSec);
-        double dt = animation.getDurationSecs() / nbPoints;
-        double sumSec = 0;
-        
-        Vector aCurr = Vector.fromList( animation.evaluateAt( 0 ).getAnglesFor(arm) );
-        Vector aNext, aDiff;
-        double aDiffMax, tDiffMax;
-        for (int i = 1; i < nbPoints-1; i++) {
+    /**
+     * Retime the animation so that it plays as fast as the motors allow, given the maximum velocity
+     * and acceleration of each motor. See {@link TimeOptimalParameterization}
+     * @param animation The animation
+     * @param nbPointsPerSec Number of sample points, which are the knots of the new timing
+     * @return The retimed animation
+     */
+    public RetimedAnimation retime(AnimationPrimitive animation, int nbPointsPerSec) throws NoSolutionException {
+        JointPath path = this.sampleJointPath(animation, nbPointsPerSec);
+        double[] timestamps = TimeOptimalParameterization.computeTimestamps(
+                path.angles(), path.timestamps(), this.getMaxVelocities(), this.getMaxAccelerations()
+        );
+        return new RetimedAnimation(animation, path.timestamps(), timestamps);
+    }
+
+    /**
+     * Solve the frames of the animation at evenly spaced times, each frame being solved starting from the
+     * previous one. The frames without solution keep the angles of the previous frame
+     * @param animation The animation
+     * @param rateHz The number of frames per second
+     * @return The angles of the non-virtual joints at each frame
+     * @throws NoSolutionException If the first frame has no solution
+     */
+    public double[][] bake(ArmAnimation animation, double rateHz) throws NoSolutionException {
+        DrivenCottusArm arm = new DrivenCottusArm(armStateService.getArmState());
+        int nbFrames = (int) Math.floor(animation.getDurationSecs() * rateHz) + 1;
 
+        double[][] frames = new double[nbFrames][];
+        for (int i = 0; i < nbFrames; i++) {
             try {
-                aNext = Vector.fromList( animation.evaluateAt( (i+1) * dt ).getAnglesFor(arm) );
-                aDiff = aNext.minus(aCurr);
+                List<Double> frame = animation.evaluateAt(i / rateHz).getAnglesFor(arm);
+                arm.setAngles(frame);
+                frames[i] = frame.stream().mapToDouble(Double::doubleValue).toArray();
+            } catch (NoSolutionException | AngleOutOfBoundsException e) {
+                if (i == 0) { throw new NoSolutionException("The first frame of the animation is unreachable"); }
+                frames[i] = frames[i - 1];
+            }
+        }
+        return frames;
+    }
 
-                aDiffMax = aDiff.toList().stream().max(Double::compareTo).orElse(Double.MAX_VALUE);
-                tDiffMax = aDiffMax / motorsRadPerSec;
-                sumSec += tDiffMax;
+    /** The angles of the joints along an animation, and the timestamp of each sample */
+    private record JointPath(double[][] angles, double[] timestamps) { }
+
+    /**
+     * Sample the animation in joint space, each frame being solved starting from the previous one
+     * @throws NoSolutionException If less than two frames of the animation could be solved
+     */
+    private JointPath sampleJointPath(ArmAnimation animation, int nbPointsPerSec) throws NoSolutionException {
+        DrivenCottusArm arm = new DrivenCottusArm(armStateService.getArmState());
 
-                aCurr = aNext;
-            } catch (NoSolutionException e) { /* Silenced */ }
+        int nbPoints = Math.max(2, (int) (animation.getDurationSecs() * nbPointsPerSec) + 1);
+        double dt = animation.getDurationSecs() / (nbPoints - 1);
 
+        List<double[]> angles = new ArrayList<>();
+        List<Double> timestamps = new ArrayList<>();
+        for (int i = 0; i < nbPoints; i++) {
+            try {
+                List<Double> frame = animation.evaluateAt(i * dt).getAnglesFor(arm);
+                arm.setAngles(frame);
+                angles.add(frame.stream().mapToDouble(Double::doubleValue).toArray());
+                timestamps.add(i * dt);
+            } catch (NoSolutionException | AngleOutOfBoundsException e) { /* Silenced */ }
         }
-        return sumSec;
+        if (angles.size() < 2) { throw new NoSolutionException("The animation has no reachable points"); }
+
+        return new JointPath(
+                angles.toArray(double[][]::new),
+                timestamps.stream().mapToDouble(Double::doubleValue).toArray()
+        );
+    }
+
+    /** 
+     * @return The maximum velocity of each motor in radians per second. If the arduino doesn't report one speed 
+     * per joint, e.g. its firmware drives a different number of motors, the common speed is used for all of them 
+     */
+    double[] getMaxVelocities() {
+        int nbJoints = armStateService.getArmState().getNbOfNonVirtualJoints();
+        List<Double> speeds = armCommunicationService.getMotorSpeeds();
+        if (speeds.size() != nbJoints) { speeds = Collections.nCopies(nbJoints, armCommunicationService.getMotorSpeed()); }
+        return speeds.stream()
+                // The arduino has not reported its speed yet
+                .mapToDouble(speed -> speed > 0 ? speed : defaultMotorSpeed)
+                .toArray();
+    }
+
+    /** @return The maximum acceleration of each motor in radians per second squared */
+    double[] getMaxAccelerations() {
+        double[] accelerations = new double[armStateService.getArmState().getNbOfNonVirtualJoints()];
+        Arrays.fill(accelerations, maxMotorAcceleration);
+        return accelerations;
     }
 }
@@ -0,0 +1,19 @@
+package fr.wollfie.cottus.models.animation.preview;
+
+/**
+ * Statistics of the {@link AnimationPreviewCache}
+ * @param hits Number of requests answered from the cache
+ * @param misses Number of requests that had to be computed
+ * @param evictions Number of entries removed to make room for new ones
+ * @param entries Number of entries currently cached
+ * @param weightBytes Estimated memory used by the entries
+ * @param maxWeightBytes Estimated memory the entries may use at most
+ */
+public record PreviewCacheStatistics(
+        long hits,
+        long misses,
+        long evictions,
+        int entries,
+        long weightBytes,
+        long maxWeightBytes
+) { }
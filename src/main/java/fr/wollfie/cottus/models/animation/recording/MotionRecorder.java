@@ -0,0 +1,130 @@
+package fr.wollfie.cottus.models.animation.recording;
+
+import fr.wollfie.cottus.models.arm.positioning.kinematics.DHTable;
+import fr.wollfie.cottus.services.ArmStateService;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ *     Records the angles of the joints of the simulated and of the driven arm, at the rate of the
+ *     update loop. The samples are written in a ring of preallocated primitive arrays, so recording
+ *     doesn't allocate : once full, the oldest samples are overwritten.
+ * </p>
+ * <p>
+ *     Only the update loop writes samples, with {@link MotionRecorder#record()}. Any other thread may
+ *     take a {@link MotionRecorder#snapshot()} of the recording at any time, without blocking the loop.
+ * </p>
+ */
+@ApplicationScoped
+public class MotionRecorder {
+
+    @Inject ArmStateService armStateService;
+
+    @ConfigProperty(name = "cottus.config.recording.capacity-samples") int capacity;
+
+    /** Indices in the DH table of the non-virtual joints */
+    private int[] joints;
+    private long[] timestampsNs;
+    private double[] simulatedAngles;
+    private double[] drivenAngles;
+
+    /** Number of samples written since the recorder was created, sample {@code i} is in slot {@code i % capacity}.
+     * It is never reset, so that a snapshot can always tell which of the samples it copied were overwritten */
+    private final AtomicLong written = new AtomicLong();
+    /** Index of the first sample of the current recording, set by the update loop before publishing that sample */
+    private volatile long firstSample;
+    private long startNs;
+
+    private volatile boolean recording = false;
+    /** Set by the other threads to have the update loop clear the ring before its next sample */
+    private volatile boolean restartRequested = false;
+
+    @PostConstruct
+    void init() {
+        DHTable table = armStateService.getArmState().dhTable();
+        this.joints = IntStream.range(0, table.size()).filter(i -> !table.isVirtual(i)).toArray();
+        this.timestampsNs = new long[capacity];
+        this.simulatedAngles = new double[capacity * joints.length];
+        this.drivenAngles = new double[capacity * joints.length];
+    }
+
+    /** @return True if the recorder is currently recording */
+    public boolean isRecording() { return recording; }
+
+    /** @return The maximum number of samples kept, the oldest are overwritten first */
+    public int getCapacity() { return capacity; }
+
+    /** Start a new recording, discarding the previous one */
+    public void start() {
+        this.restartRequested = true;
+        this.recording = true;
+    }
+
+    /** Stop the recording, it can still be read until the next one starts */
+    public void stop() { this.recording = false; }
+
+    /** Record the current angles of both arms. Must only be called by the update loop */
+    public void record() {
+        if (!recording) { return; }
+        long now = System.nanoTime();
+        long sample = written.get();
+        if (restartRequested) {
+            this.restartRequested = false;
+            this.startNs = now;
+            this.firstSample = sample;
+        }
+
+        // The previous sample must be published before this one starts overwriting a slot
+        VarHandle.releaseFence();
+        int slot = (int) (sample % capacity);
+        DHTable simulated = armStateService.getArmState().dhTable();
+        DHTable driven = armStateService.getDrivenArmState().dhTable();
+
+        timestampsNs[slot] = now - startNs;
+        int offset = slot * joints.length;
+        for (int j = 0; j < joints.length; j++) {
+            simulatedAngles[offset + j] = simulated.getVarTheta(joints[j]);
+            drivenAngles[offset + j] = driven.getVarTheta(joints[j]);
+        }
+        // Publishes the sample to the readers
+        written.setRelease(sample + 1);
+    }
+
+    /** @return A copy of the samples currently in the ring, the oldest first */
+    public MotionRecording snapshot() {
+        while (true) {
+            long first = firstSample;
+            long end = written.getAcquire();
+            long from = Math.max(first, end - capacity);
+            int n = (int) Math.max(0, end - from);
+
+            long[] timestamps = new long[n];
+            double[][] simulated = new double[n][joints.length];
+            double[][] driven = new double[n][joints.length];
+            for (int i = 0; i < n; i++) {
+                int slot = (int) ((from + i) % capacity);
+                timestamps[i] = timestampsNs[slot];
+                System.arraycopy(simulatedAngles, slot * joints.length, simulated[i], 0, joints.length);
+                System.arraycopy(drivenAngles, slot * joints.length, driven[i], 0, joints.length);
+            }
+
+            // The copy must be done before the writer's progress is read again
+            VarHandle.acquireFence();
+            // A new recording started while the samples were copied
+            if (firstSample != first) { continue; }
+
+            // The samples overwritten by the update loop while they were copied are discarded, including
+            // the one it may be writing right now
+            long firstValid = Math.max(from, written.get() + 1 - capacity);
+            int skipped = (int) Math.min(n, Math.max(0, firstValid - from));
+            return new MotionRecording(timestamps, simulated, driven).dropFirst(skipped);
+        }
+    }
+}
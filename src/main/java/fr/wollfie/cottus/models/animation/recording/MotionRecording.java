@@ -0,0 +1,101 @@
+package fr.wollfie.cottus.models.animation.recording;
+
+import fr.wollfie.cottus.models.animation.pathing.JointSpaceAnimation;
+import fr.wollfie.cottus.utils.Preconditions;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The samples of a {@link MotionRecorder}, in order
+ * @param timestampsNs The monotonic timestamp of each sample, in nanoseconds since the recording started
+ * @param simulatedAngles The angles of the non-virtual joints of the simulated arm at each sample
+ * @param drivenAngles The angles of the non-virtual joints of the driven arm at each sample
+ */
+public record MotionRecording(
+        long[] timestampsNs,
+        double[][] simulatedAngles,
+        double[][] drivenAngles
+) {
+
+    /** Which of the arms to read the angles from */
+    public enum Source { SIMULATED, DRIVEN }
+
+    /** @return The number of samples */
+    public int size() { return timestampsNs.length; }
+
+    /** @return The duration between the first and the last sample in seconds */
+    public double getDurationSecs() {
+        return size() < 2 ? 0 : (timestampsNs[size() - 1] - timestampsNs[0]) / 1e9;
+    }
+
+    /** @return The same recording without its first samples */
+    MotionRecording dropFirst(int n) {
+        if (n == 0) { return this; }
+        return new MotionRecording(
+                Arrays.copyOfRange(timestampsNs, n, size()),
+                Arrays.copyOfRange(simulatedAngles, n, size()),
+                Arrays.copyOfRange(drivenAngles, n, size())
+        );
+    }
+
+    /**
+     * @param source The arm whose angles are replayed
+     * @return An animation replaying the angles of the arm, starting at the first sample
+     */
+    public JointSpaceAnimation toAnimation(Source source) {
+        Preconditions.checkArgument(size() >= 1);
+        double[] timestamps = new double[size()];
+        for (int i = 0; i < size(); i++) { timestamps[i] = (timestampsNs[i] - timestampsNs[0]) / 1e9; }
+        return new JointSpaceAnimation(timestamps, this.anglesOf(source));
+    }
+
+    /**
+     * @param source The arm whose angles are resampled
+     * @param rateHz The number of samples per second of the result
+     * @return The angles of the arm at evenly spaced times, linearly interpolated between the recorded samples
+     */
+    public double[][] resample(Source source, double rateHz) {
+        Preconditions.checkArgument(size() >= 1 && rateHz > 0);
+        double[][] angles = this.anglesOf(source);
+        int n = (int) Math.floor(this.getDurationSecs() * rateHz) + 1;
+        double[][] samples = new double[n][];
+
+        int i = 0;
+        for (int k = 0; k < n; k++) {
+            long timestamp = timestampsNs[0] + Math.round(k * 1e9 / rateHz);
+            while (i < size() - 2 && timestampsNs[i + 1] < timestamp) { i++; }
+            int next = Math.min(i + 1, size() - 1);
+            long span = timestampsNs[next] - timestampsNs[i];
+            double alpha = span == 0 ? 0 : Math.max(0, Math.min(1, (timestamp - timestampsNs[i]) / (double) span));
+
+            samples[k] = new double[angles[i].length];
+            for (int j = 0; j < angles[i].length; j++) {
+                samples[k][j] = angles[i][j] + alpha * (angles[next][j] - angles[i][j]);
+            }
+        }
+        return samples;
+    }
+
+    /** @return The recording as comma separated values, one sample per line, starting with its timestamp in seconds */
+    public String toCsv(Source source) {
+        double[][] angles = this.anglesOf(source);
+        StringBuilder sb = new StringBuilder();
+        sb.append("timestamp");
+        if (size() > 0) { for (int j = 0; j < angles[0].length; j++) { sb.append(",a").append(j); } }
+        sb.append("\n");
+        for (int i = 0; i < size(); i++) {
+            sb.append(String.format(Locale.ROOT, "%.6f", timestampsNs[i] / 1e9));
+            for (double angle : angles[i]) { sb.append(String.format(Locale.ROOT, ",%.6f", angle)); }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    private double[][] anglesOf(Source source) {
+        return switch (source) {
+            case SIMULATED -> simulatedAngles;
+            case DRIVEN -> drivenAngles;
+        };
+    }
+}
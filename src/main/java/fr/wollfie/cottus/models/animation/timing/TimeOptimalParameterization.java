@@ -0,0 +1,145 @@
+package fr.wollfie.cottus.models.animation.timing;
+
+import fr.wollfie.cottus.utils.Preconditions;
+
+import static java.lang.Math.*;
+
+/**
+ * <p>
+ *     Computes the minimum-time timing of a path sampled in joint space, given the maximum velocity
+ *     and acceleration of each joint. This is a discrete variant of the Time-Optimal Path Parameterization
+ *     (TOPP) : the path is parametrized by the index {@code s} of its samples, and the algorithm finds the
+ *     highest feasible {@code u = (ds/dt)^2} at each sample.
+ * </p>
+ * <ol>
+ *     <li>The velocity limits, and the acceleration limits at constant {@code ds/dt}, give a maximum
+ *     {@code u} at each sample</li>
+ *     <li>A forward pass accelerates as much as the joints allow, starting from rest</li>
+ *     <li>A backward pass decelerates as much as the joints allow, ending at rest</li>
+ * </ol>
+ * <p>
+ *     Segments along which no joint moves (e.g., a {@code WaitAnimation}) keep their original duration,
+ *     and the arm is brought to rest at their bounds.
+ * </p>
+ * @see <a href="https://arxiv.org/abs/1312.6533">Q.-C. Pham, "A general, fast, and robust implementation
+ * of the time-optimal path parameterization algorithm"</a>
+ */
+public final class TimeOptimalParameterization {
+
+    /** Below this joint displacement in radians, a joint is considered not moving */
+    private static final double STATIONARY_EPSILON = 1e-9;
+
+    private TimeOptimalParameterization() { }
+
+    /**
+     * @param path The samples of the path in joint space, {@code path[i][j]} being the angle of joint {@code j}
+     *             at sample {@code i}
+     * @param originalTimes The timestamp of each sample in the original animation
+     * @param maxVelocities The maximum velocity of each joint in radians per second
+     * @param maxAccelerations The maximum acceleration of each joint in radians per second squared
+     * @return The timestamp of each sample for the minimum-time feasible timing, starting at 0
+     */
+    public static double[] computeTimestamps(
+            double[][] path, double[] originalTimes,
+            double[] maxVelocities, double[] maxAccelerations
+    ) {
+        int n = path.length;
+        Preconditions.checkArgument(n == originalTimes.length);
+        double[] timestamps = new double[n];
+        if (n < 2) { return timestamps; }
+
+        int nbJoints = path[0].length;
+        Preconditions.checkArgument(maxVelocities.length == nbJoints && maxAccelerations.length == nbJoints);
+
+        boolean[] stationary = new boolean[n - 1];
+        for (int i = 0; i < n - 1; i++) { stationary[i] = isStationary(path[i], path[i + 1]); }
+
+        // First and second derivatives of the path relative to the sample index, one-sided
+        // at the bounds of the path and of the stationary segments
+        double[][] d1 = new double[n][nbJoints];
+        double[][] d2 = new double[n][nbJoints];
+        for (int i = 0; i < n; i++) {
+            int prev = (i > 0 && !stationary[i - 1]) ? i - 1 : i;
+            int next = (i < n - 1 && !stationary[i]) ? i + 1 : i;
+            if (prev == next) { continue; }
+            for (int j = 0; j < nbJoints; j++) {
+                d1[i][j] = (path[next][j] - path[prev][j]) / (next - prev);
+                d2[i][j] = (prev == i || next == i) ? 0 : path[next][j] - 2 * path[i][j] + path[prev][j];
+            }
+        }
+
+        // Maximum velocity curve
+        double[] u = new double[n];
+        for (int i = 0; i < n; i++) {
+            u[i] = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < nbJoints; j++) {
+                double v = abs(d1[i][j]), a = abs(d2[i][j]);
+                if (v > STATIONARY_EPSILON) { u[i] = min(u[i], pow(maxVelocities[j] / v, 2)); }
+                if (a > STATIONARY_EPSILON) { u[i] = min(u[i], maxAccelerations[j] / a); }
+            }
+        }
+        // Start, end and waits at rest
+        u[0] = 0;
+        u[n - 1] = 0;
+        for (int i = 0; i < n - 1; i++) { if (stationary[i]) { u[i] = 0; u[i + 1] = 0; } }
+
+        // Forward pass, accelerate as much as possible
+        for (int i = 0; i < n - 1; i++) {
+            if (stationary[i]) { continue; }
+            double reachable = max(0, u[i] + 2 * accelerationBounds(d1[i], d2[i], u[i], maxAccelerations)[1]);
+            u[i + 1] = min(u[i + 1], reachable);
+        }
+        // Backward pass, decelerate as much as possible
+        for (int i = n - 1; i > 0; i--) {
+            if (stationary[i - 1]) { continue; }
+            double reachable = max(0, u[i] - 2 * accelerationBounds(d1[i], d2[i], u[i], maxAccelerations)[0]);
+            u[i - 1] = min(u[i - 1], reachable);
+        }
+
+        for (int i = 0; i < n - 1; i++) {
+            double dt;
+            if (stationary[i]) { dt = originalTimes[i + 1] - originalTimes[i]; }
+            else if (u[i] + u[i + 1] > 0) { dt = 2.0 / (sqrt(u[i]) + sqrt(u[i + 1])); }
+            else { dt = restToRestTime(path[i], path[i + 1], maxVelocities, maxAccelerations); }
+            timestamps[i + 1] = timestamps[i] + dt;
+        }
+        return timestamps;
+    }
+
+    /** @return The bounds {@code [min, max]} of the path acceleration {@code d^2s/dt^2} at a sample, given 
+     * the path velocity {@code u = (ds/dt)^2} */
+    private static double[] accelerationBounds(double[] d1, double[] d2, double u, double[] maxAccelerations) {
+        double lower = Double.NEGATIVE_INFINITY, upper = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < d1.length; j++) {
+            if (abs(d1[j]) <= STATIONARY_EPSILON) { continue; }
+            // q'' = d2 * u + d1 * s'' must be in [-a, a]
+            double a = (-maxAccelerations[j] - d2[j] * u) / d1[j];
+            double b = (maxAccelerations[j] - d2[j] * u) / d1[j];
+            lower = max(lower, min(a, b));
+            upper = min(upper, max(a, b));
+        }
+        return new double[] { lower, upper };
+    }
+
+    /** @return The time to go from one sample to the other, starting and ending at rest */
+    private static double restToRestTime(double[] from, double[] to, double[] maxVelocities, double[] maxAccelerations) {
+        double time = 0;
+        for (int j = 0; j < from.length; j++) {
+            double distance = abs(to[j] - from[j]);
+            double accelerationTime = maxVelocities[j] / maxAccelerations[j];
+            // Triangular profile if the maximum velocity is never reached, trapezoidal otherwise
+            double jointTime = distance < maxVelocities[j] * accelerationTime
+                    ? 2 * sqrt(distance / maxAccelerations[j])
+                    : distance / maxVelocities[j] + accelerationTime;
+            time = max(time, jointTime);
+        }
+        return time;
+    }
+
+    private static boolean isStationary(double[] from, double[] to) {
+        for (int j = 0; j < from.length; j++) {
+            if (abs(to[j] - from[j]) > STATIONARY_EPSILON) { return false; }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,123 @@
+package fr.wollfie.cottus.models.animation.track;
+
+import fr.wollfie.cottus.exception.InvalidTrackException;
+import fr.wollfie.cottus.utils.Preconditions;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static fr.wollfie.cottus.models.animation.track.AnimationTrackFormat.*;
+
+/**
+ * An animation track read straight from a memory-mapped file, see {@link AnimationTrackFormat} for
+ * its layout. Opening a track only maps it, the samples stay in the file and are decoded when read,
+ * so even long tracks take almost no heap. Reading doesn't modify the state of the track, so it can
+ * be read from multiple threads
+ */
+public final class AnimationTrack {
+
+    private final MappedByteBuffer buffer;
+    private final int nbJoints;
+    private final double sampleRateHz;
+    private final double quantumRad;
+    private final int blockSize;
+    private final int nbSamples;
+    private final int blockBytes;
+
+    private AnimationTrack(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.nbJoints = buffer.getShort(NB_JOINTS_OFFSET);
+        this.sampleRateHz = buffer.getFloat(SAMPLE_RATE_OFFSET);
+        this.quantumRad = buffer.getFloat(QUANTUM_OFFSET);
+        this.blockSize = buffer.getInt(BLOCK_SIZE_OFFSET);
+        this.nbSamples = buffer.getInt(NB_SAMPLES_OFFSET);
+        this.blockBytes = AnimationTrackFormat.blockBytes(nbJoints, blockSize);
+    }
+
+    /**
+     * Map the track in memory and check its header and checksum
+     * @param path The file of the track
+     * @return The track
+     * @throws InvalidTrackException If the file is not a valid track
+     */
+    public static AnimationTrack open(Path path) throws IOException, InvalidTrackException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) { throw new InvalidTrackException("The file is too short to be a track"); }
+            // The mapping stays valid once the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC) { throw new InvalidTrackException("The file is not a track"); }
+        if (buffer.getShort(VERSION_OFFSET) != VERSION) { throw new InvalidTrackException("Unsupported track version"); }
+
+        AnimationTrack track = new AnimationTrack(buffer);
+        if (track.nbJoints < 1 || track.blockSize < 1 || track.nbSamples < 1 || !(track.sampleRateHz > 0)
+                || buffer.capacity() != HEADER_BYTES + (long) nbBlocks(track.nbSamples, track.blockSize) * track.blockBytes) {
+            throw new InvalidTrackException("The header of the track is inconsistent");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(HEADER_BYTES, buffer.capacity() - HEADER_BYTES));
+        if ((int) crc.getValue() != buffer.getInt(CRC_OFFSET)) { throw new InvalidTrackException("The track is corrupted"); }
+        return track;
+    }
+
+    /** @return The number of joints of each sample */
+    public int getNbJoints() { return nbJoints; }
+
+    /** @return The number of samples per second */
+    public double getSampleRateHz() { return sampleRateHz; }
+
+    /** @return The number of samples */
+    public int getNbSamples() { return nbSamples; }
+
+    /** @return The duration of the track in seconds, from its first sample to its last */
+    public double getDurationSecs() { return (nbSamples - 1) / sampleRateHz; }
+
+    /**
+     * Read the angles of a sample
+     * @param sample The index of the sample
+     * @param out The array receiving the angle of each joint in radians
+     */
+    public void read(int sample, double[] out) {
+        Preconditions.checkArgument(sample >= 0 && sample < nbSamples);
+        Preconditions.checkArgument(out.length == nbJoints);
+        for (int j = 0; j < nbJoints; j++) { out[j] = this.quantizedAt(sample, j) * quantumRad; }
+    }
+
+    /**
+     * Read the angles at the given time, linearly interpolated between the samples around it
+     * @param secFromStart The time in seconds since the start of the track, clamped to the track
+     * @param out The array receiving the angle of each joint in radians
+     */
+    public void interpolate(double secFromStart, double[] out) {
+        Preconditions.checkArgument(out.length == nbJoints);
+        double position = Math.max(0, Math.min(nbSamples - 1, secFromStart * sampleRateHz));
+        int sample = (int) Math.floor(position);
+        int next = Math.min(sample + 1, nbSamples - 1);
+        double alpha = position - sample;
+
+        for (int j = 0; j < nbJoints; j++) {
+            int from = this.quantizedAt(sample, j);
+            int to = next == sample ? from : this.quantizedAt(next, j);
+            out[j] = (from + alpha * (to - from)) * quantumRad;
+        }
+    }
+
+    /** @return The quantized angle of the joint at the given sample */
+    private int quantizedAt(int sample, int joint) {
+        int base = HEADER_BYTES + (sample / blockSize) * blockBytes;
+        int within = sample % blockSize;
+
+        int quantized = buffer.getInt(base + joint * Integer.BYTES);
+        int deltas = base + nbJoints * Integer.BYTES;
+        for (int k = 0; k < within; k++) {
+            quantized += buffer.getShort(deltas + (k * nbJoints + joint) * Short.BYTES);
+        }
+        return quantized;
+    }
+}
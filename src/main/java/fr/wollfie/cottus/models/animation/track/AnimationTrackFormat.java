@@ -0,0 +1,51 @@
+package fr.wollfie.cottus.models.animation.track;
+
+/**
+ * <p>
+ *     Layout of the binary animation tracks, all values are big-endian :
+ * </p>
+ * <pre>
+ *     Header, {@value HEADER_BYTES} bytes
+ *         int32   magic, "CTRK"
+ *         int16   version
+ *         int16   number of joints J
+ *         float32 sample rate in Hz
+ *         float32 quantum in radians, the resolution of the angles
+ *         int32   number of samples per block B
+ *         int32   number of samples N
+ *         int32   CRC32 of the blocks
+ *         int32   reserved
+ *     Blocks, ceil(N / B) times
+ *         int32 * J           quantized angles of the first sample of the block
+ *         int16 * J * (B - 1) quantized difference of each following sample with the previous one
+ * </pre>
+ * <p>
+ *     Every block has the same size, the last one being padded with zeros, so that the block
+ *     holding a sample is found in constant time. Decoding a sample then takes at most B steps.
+ * </p>
+ */
+final class AnimationTrackFormat {
+
+    static final int MAGIC = 0x4354524B;
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int NB_JOINTS_OFFSET = 6;
+    static final int SAMPLE_RATE_OFFSET = 8;
+    static final int QUANTUM_OFFSET = 12;
+    static final int BLOCK_SIZE_OFFSET = 16;
+    static final int NB_SAMPLES_OFFSET = 20;
+    static final int CRC_OFFSET = 24;
+
+    private AnimationTrackFormat() { }
+
+    /** @return The size in bytes of a block */
+    static int blockBytes(int nbJoints, int blockSize) {
+        return nbJoints * Integer.BYTES + nbJoints * (blockSize - 1) * Short.BYTES;
+    }
+
+    /** @return The number of blocks needed to hold the samples */
+    static int nbBlocks(int nbSamples, int blockSize) { return (nbSamples + blockSize - 1) / blockSize; }
+}
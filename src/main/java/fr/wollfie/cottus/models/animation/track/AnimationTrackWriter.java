@@ -0,0 +1,93 @@
+package fr.wollfie.cottus.models.animation.track;
+
+import fr.wollfie.cottus.utils.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static fr.wollfie.cottus.models.animation.track.AnimationTrackFormat.*;
+
+/** Writes animation tracks, see {@link AnimationTrackFormat} for their layout */
+public final class AnimationTrackWriter {
+
+    /** Resolution of the angles stored in a track, in radians */
+    public static final double DEFAULT_QUANTUM_RAD = 1e-4;
+    /** Number of samples between two absolute keyframes of a track */
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private AnimationTrackWriter() { }
+
+    /** Write the track with the default quantum and block size, see {@link AnimationTrackWriter#write(Path, double, double, int, double[][])} */
+    public static void write(Path path, double sampleRateHz, double[][] samples) throws IOException {
+        write(path, sampleRateHz, DEFAULT_QUANTUM_RAD, DEFAULT_BLOCK_SIZE, samples);
+    }
+
+    /**
+     * Write a track to the given file. The track is first written next to it then moved in place,
+     * so that a track being read is never seen half written
+     * @param path The file to write
+     * @param sampleRateHz The number of samples per second
+     * @param quantumRad The resolution of the angles in radians
+     * @param blockSize The number of samples per block
+     * @param samples The angles of the joints at each sample, evenly spaced in time
+     * @throws IllegalArgumentException If a joint moves by more than {@code 32767} quanta between two samples
+     */
+    public static void write(
+            Path path, double sampleRateHz, double quantumRad, int blockSize, double[][] samples
+    ) throws IOException {
+        Preconditions.checkArgument(sampleRateHz > 0 && quantumRad > 0 && blockSize >= 1);
+        Preconditions.checkArgument(samples.length >= 1);
+        int nbJoints = samples[0].length;
+        // Quantized with the resolution the reader will see in the header
+        double quantum = (float) quantumRad;
+        int nbBlocks = nbBlocks(samples.length, blockSize);
+        int blockBytes = blockBytes(nbJoints, blockSize);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + nbBlocks * blockBytes);
+        int[] previous = new int[nbJoints];
+        for (int i = 0; i < samples.length; i++) {
+            Preconditions.checkArgument(samples[i].length == nbJoints);
+            int block = i / blockSize;
+            int within = i % blockSize;
+            int base = HEADER_BYTES + block * blockBytes;
+
+            for (int j = 0; j < nbJoints; j++) {
+                int quantized = Math.toIntExact(Math.round(samples[i][j] / quantum));
+                if (within == 0) { buffer.putInt(base + j * Integer.BYTES, quantized); }
+                else {
+                    int delta = quantized - previous[j];
+                    if (delta < Short.MIN_VALUE || delta > Short.MAX_VALUE) { throw new IllegalArgumentException(String.format(
+                            "Joint %d moves too fast at sample %d for the resolution of the track", j, i)); }
+                    buffer.putShort(base + nbJoints * Integer.BYTES + ((within - 1) * nbJoints + j) * Short.BYTES, (short) delta);
+                }
+                previous[j] = quantized;
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, buffer.capacity() - HEADER_BYTES);
+
+        buffer.putInt(MAGIC_OFFSET, MAGIC)
+                .putShort(VERSION_OFFSET, VERSION)
+                .putShort(NB_JOINTS_OFFSET, (short) nbJoints)
+                .putFloat(SAMPLE_RATE_OFFSET, (float) sampleRateHz)
+                .putFloat(QUANTUM_OFFSET, (float) quantumRad)
+                .putInt(BLOCK_SIZE_OFFSET, blockSize)
+                .putInt(NB_SAMPLES_OFFSET, samples.length)
+                .putInt(CRC_OFFSET, (int) crc.getValue());
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) { channel.write(buffer); }
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,67 @@
+package fr.wollfie.cottus.models.animation.track;
+
+import fr.wollfie.cottus.models.animation.pathing.TrackAnimation;
+import fr.wollfie.cottus.utils.Preconditions;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** The directory in which the binary animation tracks are stored */
+@ApplicationScoped
+public class AnimationTracks {
+
+    private static final String DIRECTORY_PROPERTY = "cottus.config.tracks.directory";
+    private static final String EXTENSION = ".ctrk";
+
+    @ConfigProperty(name = DIRECTORY_PROPERTY) String directory;
+
+    /**
+     * Write a track in the directory, replacing the track with the same name if there is one
+     * @param name The name of the track, made of letters, digits, dashes and underscores
+     * @param sampleRateHz The number of samples per second
+     * @param samples The angles of the joints at each sample
+     * @return An animation playing the track
+     */
+    public TrackAnimation write(String name, double sampleRateHz, double[][] samples) throws IOException {
+        Preconditions.checkArgument(name != null && name.matches("[\\w-]+"));
+        Path path = resolve(Path.of(directory), name);
+        Files.createDirectories(path.getParent());
+
+        AnimationTrackWriter.write(path, sampleRateHz, samples);
+        return new TrackAnimation(name);
+    }
+
+    /**
+     * @param name The name of a track, relative to the directory of the tracks and without its extension
+     * @return True if the name is relative and stays in the directory of the tracks
+     */
+    public static boolean isValidName(String name) {
+        if (name == null || name.isBlank()) { return false; }
+        try {
+            Path path = Path.of(name);
+            return !path.isAbsolute() && path.getRoot() == null && !path.normalize().startsWith("..");
+        } catch (IllegalArgumentException e) { return false; }
+    }
+
+    /**
+     * @param name The name of a track, relative to the directory of the tracks and without its extension
+     * @return The path of the track in the configured directory of the tracks
+     * @throws IllegalArgumentException If the name leads out of the directory of the tracks
+     */
+    public static Path resolve(String name) {
+        return resolve(Path.of(ConfigProvider.getConfig().getValue(DIRECTORY_PROPERTY, String.class)), name);
+    }
+
+    private static Path resolve(Path directory, String name) {
+        Preconditions.checkArgument(isValidName(name));
+        Path root = directory.toAbsolutePath().normalize();
+        Path path = root.resolve(name + EXTENSION).normalize();
+        // The name was checked, this also rejects what normalizing the resolved path could reveal
+        Preconditions.checkArgument(path.startsWith(root) && !path.equals(root));
+        return path;
+    }
+}
@@ -0,0 +1,25 @@
+package fr.wollfie.cottus.models.animation.validation;
+
+import java.util.List;
+
+/**
+ * The result of the validation of an animation by the {@link AnimationValidator}
+ * @param valid True if every checked frame of the animation is reachable
+ * @param complete True if every frame was checked, false if the validation stopped at the first failure
+ * @param rateHz The number of frames checked per second of animation
+ * @param invalidSegments The time ranges of the animation whose frames are unreachable, in order
+ */
+public record AnimationValidation(
+        boolean valid,
+        boolean complete,
+        double rateHz,
+        List<Segment> invalidSegments
+) {
+
+    /**
+     * A time range of the animation
+     * @param fromSecs The timestamp of the first frame of the range
+     * @param toSecs The timestamp of the last frame of the range
+     */
+    public record Segment(double fromSecs, double toSecs) { }
+}
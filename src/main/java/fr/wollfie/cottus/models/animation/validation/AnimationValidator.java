@@ -0,0 +1,92 @@
+package fr.wollfie.cottus.models.animation.validation;
+
+import fr.wollfie.cottus.dto.CottusArm;
+import fr.wollfie.cottus.dto.animation.ArmAnimation;
+import fr.wollfie.cottus.exception.AngleOutOfBoundsException;
+import fr.wollfie.cottus.exception.NoSolutionException;
+import fr.wollfie.cottus.models.animation.preview.AnimationChunkExecutor;
+import fr.wollfie.cottus.models.animation.preview.AnimationChunks;
+import fr.wollfie.cottus.services.ArmStateService;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks that the frames of an animation are reachable by the arm, starting from its current state. The
+ * frames are solved in parallel {@link AnimationChunks}, and the validation can stop as soon as one
+ * of the chunks finds an unreachable frame
+ */
+@ApplicationScoped
+public class AnimationValidator {
+
+    @Inject ArmStateService armStateService;
+    @Inject AnimationChunkExecutor chunkExecutor;
+
+    @ConfigProperty(name = "cottus.config.validation.rate-hz") double rateHz;
+
+    /**
+     * Validate the animation
+     * @param animation The animation
+     * @param stopAtFirstFailure If true, the validation stops as soon as an unreachable frame is found, otherwise
+     *                           all the unreachable segments of the animation are found
+     * @return The result of the validation
+     */
+    public AnimationValidation validate(ArmAnimation animation, boolean stopAtFirstFailure) {
+        int nbFrames = (int) Math.floor(animation.getDurationSecs() * rateHz) + 1;
+        double dt = 1 / rateHz;
+
+        List<AnimationChunks.Chunk> chunks = AnimationChunks.prepare(
+                animation, armStateService.getArmState(), nbFrames, dt, chunkExecutor.nbChunksFor(nbFrames)
+        );
+
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<Future<List<Integer>>> futures = new ArrayList<>();
+        for (AnimationChunks.Chunk chunk : chunks) {
+            futures.add(chunkExecutor.submit(() -> invalidFrames(animation, chunk, dt, stopAtFirstFailure, failed)));
+        }
+
+        List<Integer> invalidFrames = new ArrayList<>();
+        try {
+            for (Future<List<Integer>> future : futures) { invalidFrames.addAll(future.get()); }
+        } catch (InterruptedException | ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw new RuntimeException(e);
+        }
+
+        // Merge the consecutive invalid frames in segments
+        List<AnimationValidation.Segment> segments = new ArrayList<>();
+        for (int i = 0; i < invalidFrames.size(); ) {
+            int from = invalidFrames.get(i);
+            int to = from;
+            while (++i < invalidFrames.size() && invalidFrames.get(i) == to + 1) { to++; }
+            segments.add(new AnimationValidation.Segment(from * dt, to * dt));
+        }
+        return new AnimationValidation(segments.isEmpty(), !(stopAtFirstFailure && failed.get()), rateHz, segments);
+    }
+
+    /** @return The indices of the unreachable frames of the chunk, in order */
+    private static List<Integer> invalidFrames(
+            ArmAnimation animation, AnimationChunks.Chunk chunk, double dt,
+            boolean stopAtFirstFailure, AtomicBoolean failed
+    ) {
+        CottusArm arm = chunk.arm();
+        List<Integer> invalidFrames = new ArrayList<>();
+        for (int i = chunk.from(); i < chunk.to(); i++) {
+            if (stopAtFirstFailure && failed.get()) { break; }
+            try {
+                List<Double> angles = animation.evaluateAt(i * dt).getAnglesFor(arm);
+                arm.setAngles(angles);
+            } catch (NoSolutionException | AngleOutOfBoundsException e) {
+                invalidFrames.add(i);
+                failed.set(true);
+            }
+        }
+        return invalidFrames;
+    }
+}
@@ -30,7 +30,6 @@ public class KinematicsModule {
     public KinematicsModule() {  }
     
     private static final IKAlgorithm IK_ALGORITHM = IKAlgorithm.ANALYTICAL_IK;
-    private static IKFuture currentIKSolve;
     
     /**
      * Provided with the angles of the joints of the arm, returns the position and rotation of 
@@ -65,8 +64,10 @@ public class KinematicsModule {
         // Otherwise the specification is absolute
         } else { absoluteEndEffectorSpecification = (AbsoluteEndEffectorSpecification) endEffectorSpecification; }
         
-        // Need this weird stuff because of lambda's difficulty to deal with checked expression
-        currentIKSolve = new IKFuture();
+        // Need this weird stuff because of lambda's difficulty to deal with checked expression.
+        // The future is local so that concurrent solves (playback, previews, manual control) don't
+        // complete each other's future
+        IKFuture currentIKSolve = new IKFuture();
         CompletableFuture.runAsync(() -> {
             IKSolver solver = switch (IK_ALGORITHM) {
                 case PARALLEL_EVOLUTIONARY_IK -> new EvolutionaryIK();
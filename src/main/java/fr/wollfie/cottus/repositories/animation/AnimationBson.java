@@ -0,0 +1,284 @@
+package fr.wollfie.cottus.repositories.animation;
+
+import fr.wollfie.cottus.models.animation.pathing.*;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
+import fr.wollfie.cottus.utils.maths.Vector3D;
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ *     Streams the {@link AnimationPrimitive}s and their {@link AnimationValidation} as native BSON documents,
+ *     straight through a {@link BsonWriter} and a {@link BsonReader}. A primitive is a document holding
+ *     its properties, with the same names as in JSON, and a {@code type} discriminator, e.g. :
+ * </p>
+ * <pre>
+ *     { type: "Composed", animations: [
+ *         { type: "Line", relative: true, position: { x: 0, y: 0, z: 100 }, timeSec: 2 },
+ *         { type: "Wait", timeSec: 1 }
+ *     ] }
+ * </pre>
+ */
+final class AnimationBson {
+
+    private AnimationBson() { }
+
+// //======================================================================================\\
+// ||                                                                                      ||
+// ||                                       WRITE                                          ||
+// ||                                                                                      ||
+// \\======================================================================================//
+
+    /** Write the primitive as a document, its name must have been written already */
+    static void writePrimitive(BsonWriter writer, AnimationPrimitive primitive) {
+        writer.writeStartDocument();
+        if (primitive instanceof BezierToAnimation bezier) {
+            writer.writeString("type", "Bezier");
+            writer.writeBoolean("relative", bezier.isRelative());
+            writeVector(writer, "endPosition", bezier.getEndPosition());
+            writer.writeDouble("timeSec", bezier.getTimeSec());
+            writer.writeStartArray("anchorPoints");
+            for (Vector3D anchor : bezier.getAnchorPoints()) { writeVector(writer, null, anchor); }
+            writer.writeEndArray();
+        } else if (primitive instanceof ComposedAnimation composed) {
+            writer.writeString("type", "Composed");
+            writer.writeStartArray("animations");
+            for (AnimationPrimitive child : composed.getAnimations()) { writePrimitive(writer, child); }
+            writer.writeEndArray();
+        } else if (primitive instanceof JointSpaceAnimation joints) {
+            writer.writeString("type", "Joints");
+            writeDoubles(writer, "timestamps", joints.getTimestamps());
+            writer.writeStartArray("angles");
+            for (double[] frame : joints.getAngles()) { writeDoubles(writer, null, frame); }
+            writer.writeEndArray();
+        } else if (primitive instanceof LineToAnimation line) {
+            writer.writeString("type", "Line");
+            writer.writeBoolean("relative", line.isRelative());
+            writeVector(writer, "position", line.getPosition());
+            writer.writeDouble("timeSec", line.getTimeSec());
+        } else if (primitive instanceof RetimedAnimation retimed) {
+            writer.writeString("type", "Retimed");
+            writer.writeName("animation");
+            writePrimitive(writer, retimed.getAnimation());
+            writeDoubles(writer, "originalTimes", retimed.getOriginalTimes());
+            writeDoubles(writer, "retimedTimes", retimed.getRetimedTimes());
+        } else if (primitive instanceof SemiCircleToAnimation semiCircle) {
+            writer.writeString("type", "Semicircle");
+            writer.writeBoolean("relative", semiCircle.isRelative());
+            writeVector(writer, "endPosition", semiCircle.getEndPosition());
+            writer.writeDouble("timeSec", semiCircle.getTimeSec());
+            writer.writeDouble("angleDeg", semiCircle.getAngleDeg());
+            writeVector(writer, "circleDirection", semiCircle.getCircleDirection());
+        } else if (primitive instanceof TrackAnimation track) {
+            writer.writeString("type", "Track");
+            writer.writeString("name", track.getName());
+        } else if (primitive instanceof WaitAnimation wait) {
+            writer.writeString("type", "Wait");
+            writer.writeDouble("timeSec", wait.getTimeSec());
+        } else { throw new IllegalArgumentException("Unknown animation primitive " + primitive.getClass()); }
+        writer.writeEndDocument();
+    }
+
+    /** Write the validation as a document, its name must have been written already */
+    static void writeValidation(BsonWriter writer, AnimationValidation validation) {
+        writer.writeStartDocument();
+        writer.writeBoolean("valid", validation.valid());
+        writer.writeBoolean("complete", validation.complete());
+        writer.writeDouble("rateHz", validation.rateHz());
+        writer.writeStartArray("invalidSegments");
+        for (AnimationValidation.Segment segment : validation.invalidSegments()) {
+            writer.writeStartDocument();
+            writer.writeDouble("fromSecs", segment.fromSecs());
+            writer.writeDouble("toSecs", segment.toSecs());
+            writer.writeEndDocument();
+        }
+        writer.writeEndArray();
+        writer.writeEndDocument();
+    }
+
+    /** Write a vector, as an element of an array if the name is null */
+    private static void writeVector(BsonWriter writer, String name, Vector3D vector) {
+        if (name == null) { writer.writeStartDocument(); }
+        else { writer.writeStartDocument(name); }
+        writer.writeDouble("x", vector.x);
+        writer.writeDouble("y", vector.y);
+        writer.writeDouble("z", vector.z);
+        writer.writeEndDocument();
+    }
+
+    /** Write an array of numbers, as an element of an array if the name is null */
+    private static void writeDoubles(BsonWriter writer, String name, double[] values) {
+        if (name == null) { writer.writeStartArray(); }
+        else { writer.writeStartArray(name); }
+        for (double value : values) { writer.writeDouble(value); }
+        writer.writeEndArray();
+    }
+
+    /** @return The number of primitives the animation is made of, not counting those only composing others */
+    static int countPrimitives(AnimationPrimitive primitive) {
+        if (primitive instanceof ComposedAnimation composed) {
+            return composed.getAnimations().stream().mapToInt(AnimationBson::countPrimitives).sum();
+        }
+        if (primitive instanceof RetimedAnimation retimed) { return countPrimitives(retimed.getAnimation()); }
+        return 1;
+    }
+
+// //======================================================================================\\
+// ||                                                                                      ||
+// ||                                       READ                                           ||
+// ||                                                                                      ||
+// \\======================================================================================//
+
+    /** The properties of a primitive, read in any order before the primitive is built */
+    private static final class Fields {
+        String type;
+        boolean relative;
+        double timeSec;
+        double angleDeg;
+        Vector3D position;
+        Vector3D endPosition;
+        Vector3D circleDirection;
+        List<Vector3D> anchorPoints = List.of();
+        AnimationPrimitive animation;
+        List<AnimationPrimitive> animations = List.of();
+        double[] timestamps;
+        double[] originalTimes;
+        double[] retimedTimes;
+        double[][] angles;
+        String name;
+    }
+
+    /** Read a primitive from the current document */
+    static AnimationPrimitive readPrimitive(BsonReader reader) {
+        Fields fields = new Fields();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "type" -> fields.type = reader.readString();
+                case "relative" -> fields.relative = reader.readBoolean();
+                case "timeSec" -> fields.timeSec = readNumber(reader);
+                case "angleDeg" -> fields.angleDeg = readNumber(reader);
+                case "position" -> fields.position = readVector(reader);
+                case "endPosition" -> fields.endPosition = readVector(reader);
+                case "circleDirection" -> fields.circleDirection = readVector(reader);
+                case "anchorPoints" -> {
+                    List<Vector3D> anchors = new ArrayList<>();
+                    reader.readStartArray();
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) { anchors.add(readVector(reader)); }
+                    reader.readEndArray();
+                    fields.anchorPoints = anchors;
+                }
+                case "animation" -> fields.animation = readPrimitive(reader);
+                case "animations" -> {
+                    List<AnimationPrimitive> animations = new ArrayList<>();
+                    reader.readStartArray();
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) { animations.add(readPrimitive(reader)); }
+                    reader.readEndArray();
+                    fields.animations = animations;
+                }
+                case "timestamps" -> fields.timestamps = readDoubles(reader);
+                case "originalTimes" -> fields.originalTimes = readDoubles(reader);
+                case "retimedTimes" -> fields.retimedTimes = readDoubles(reader);
+                case "angles" -> {
+                    List<double[]> frames = new ArrayList<>();
+                    reader.readStartArray();
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) { frames.add(readDoubles(reader)); }
+                    reader.readEndArray();
+                    fields.angles = frames.toArray(double[][]::new);
+                }
+                case "name" -> fields.name = reader.readString();
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        if (fields.type == null) { throw new BsonInvalidOperationException("The animation primitive has no type"); }
+        return switch (fields.type) {
+            case "Bezier" -> new BezierToAnimation(fields.relative, fields.endPosition, fields.timeSec,
+                    fields.anchorPoints.toArray(Vector3D[]::new));
+            case "Composed" -> new ComposedAnimation(fields.animations);
+            case "Joints" -> new JointSpaceAnimation(fields.timestamps, fields.angles);
+            case "Line" -> new LineToAnimation(fields.relative, fields.position, fields.timeSec);
+            case "Retimed" -> new RetimedAnimation(fields.animation, fields.originalTimes, fields.retimedTimes);
+            case "Semicircle" -> new SemiCircleToAnimation(fields.relative, fields.endPosition, fields.timeSec,
+                    fields.angleDeg, fields.circleDirection);
+            case "Track" -> new TrackAnimation(fields.name);
+            case "Wait" -> new WaitAnimation(fields.timeSec);
+            default -> throw new BsonInvalidOperationException("Unknown animation primitive type " + fields.type);
+        };
+    }
+
+    /** Read a validation from the current document */
+    static AnimationValidation readValidation(BsonReader reader) {
+        boolean valid = false;
+        boolean complete = false;
+        double rateHz = 0;
+        List<AnimationValidation.Segment> segments = new ArrayList<>();
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "valid" -> valid = reader.readBoolean();
+                case "complete" -> complete = reader.readBoolean();
+                case "rateHz" -> rateHz = readNumber(reader);
+                case "invalidSegments" -> {
+                    reader.readStartArray();
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                        double from = 0, to = 0;
+                        reader.readStartDocument();
+                        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                            switch (reader.readName()) {
+                                case "fromSecs" -> from = readNumber(reader);
+                                case "toSecs" -> to = readNumber(reader);
+                                default -> reader.skipValue();
+                            }
+                        }
+                        reader.readEndDocument();
+                        segments.add(new AnimationValidation.Segment(from, to));
+                    }
+                    reader.readEndArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new AnimationValidation(valid, complete, rateHz, segments);
+    }
+
+    private static Vector3D readVector(BsonReader reader) {
+        double x = 0, y = 0, z = 0;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "x" -> x = readNumber(reader);
+                case "y" -> y = readNumber(reader);
+                case "z" -> z = readNumber(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return Vector3D.of(x, y, z);
+    }
+
+    private static double[] readDoubles(BsonReader reader) {
+        List<Double> values = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) { values.add(readNumber(reader)); }
+        reader.readEndArray();
+        return values.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /** @return The current number, which may have been stored as an integer when edited by hand */
+    private static double readNumber(BsonReader reader) {
+        return switch (reader.getCurrentBsonType()) {
+            case INT32 -> reader.readInt32();
+            case INT64 -> reader.readInt64();
+            default -> reader.readDouble();
+        };
+    }
+}
@@ -2,17 +2,15 @@ package fr.wollfie.cottus.repositories.animation;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mongodb.MongoClientSettings;
 import fr.wollfie.cottus.dto.animation.AnimationRepositoryEntry;
 import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
 import io.quarkus.logging.Log;
 import org.bson.*;
-import org.bson.codecs.Codec;
 import org.bson.codecs.CollectibleCodec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
 
-import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import java.util.List;
@@ -21,24 +19,30 @@ import java.util.UUID;
 @ApplicationScoped
 public class AnimationCodec implements CollectibleCodec<AnimationRepositoryEntryImpl> {
 
-    @Inject ObjectMapper defaultObjectMapper;
-
-    private Codec<Document> documentCodec;
+    /** Fields stored next to the animation, so that it can be listed without decoding it */
+    static final String DURATION_FIELD = "duration";
+    static final String PRIMITIVE_COUNT_FIELD = "primitiveCount";
 
-    @PostConstruct
-    void init() {
-        this.documentCodec = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
-    }
+    @Inject ObjectMapper defaultObjectMapper;
 
     @Override
     public void encode(BsonWriter writer, AnimationRepositoryEntryImpl animation, EncoderContext encoderContext) {
-        Document doc = new Document();
-        doc.put("name", animation.getName());
-        try {
-            String value = defaultObjectMapper.writeValueAsString(animation.getAnimation());
-            doc.put("animation", value);
-        } catch (JsonProcessingException e) { throw new RuntimeException(e); }
-        documentCodec.encode(writer, doc, encoderContext);
+        writer.writeStartDocument();
+        if (animation.getId() != null) { writer.writeString("id", animation.getId()); }
+        writer.writeString("name", animation.getName());
+        try { writer.writeDouble(DURATION_FIELD, animation.getAnimation().getDurationSecs()); }
+        catch (IllegalStateException e) {
+            // The track of the animation is unreadable, its duration is unknown
+            Log.warnf("Cannot read the duration of the animation %s : %s", animation.getName(), e.getMessage());
+        }
+        writer.writeInt32(PRIMITIVE_COUNT_FIELD, AnimationBson.countPrimitives(animation.getAnimation()));
+        writer.writeName("animation");
+        AnimationBson.writePrimitive(writer, animation.getAnimation());
+        if (animation.getValidation() != null) {
+            writer.writeName("validation");
+            AnimationBson.writeValidation(writer, animation.getValidation());
+        }
+        writer.writeEndDocument();
     }
 
     @Override
@@ -66,22 +70,35 @@ public class AnimationCodec implements CollectibleCodec<AnimationRepositoryEntry
 
     @Override
     public AnimationRepositoryEntryImpl decode(BsonReader reader, DecoderContext decoderContext) {
-        Document document = documentCodec.decode(reader, decoderContext);
+        String id = null;
+        String name = null;
+        AnimationPrimitive animationPrimitive = null;
+        AnimationValidation validation = null;
 
-        AnimationRepositoryEntryImpl animation;
-        
-        try {
-            AnimationPrimitive animationPrimitive = this.defaultObjectMapper.readValue(document.getString("animation"), AnimationPrimitive.class);
-            
-            animation = new AnimationRepositoryEntryImpl(
-                    document.getString("name"),
-                    animationPrimitive
-            );
-            if (document.getString("id") != null) {
-                animation.setId(document.getString("id"));
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "id" -> id = reader.readString();
+                case "name" -> name = reader.readString();
+                // Entries saved before the animations were stored as documents hold them as JSON strings
+                case "animation" -> animationPrimitive = reader.getCurrentBsonType() == BsonType.STRING
+                        ? this.fromJson(reader.readString(), AnimationPrimitive.class)
+                        : AnimationBson.readPrimitive(reader);
+                case "validation" -> validation = reader.getCurrentBsonType() == BsonType.STRING
+                        ? this.fromJson(reader.readString(), AnimationValidation.class)
+                        : AnimationBson.readValidation(reader);
+                default -> reader.skipValue();
             }
-        } catch (JsonProcessingException e) { throw new RuntimeException(e); }
+        }
+        reader.readEndDocument();
 
+        AnimationRepositoryEntryImpl animation = new AnimationRepositoryEntryImpl(name, animationPrimitive, validation);
+        if (id != null) { animation.setId(id); }
         return animation;
     }
+
+    private <T> T fromJson(String json, Class<T> type) {
+        try { return this.defaultObjectMapper.readValue(json, type); }
+        catch (JsonProcessingException e) { throw new RuntimeException(e); }
+    }
 }
@@ -1,9 +1,12 @@
 package fr.wollfie.cottus.repositories.animation;
 
 import fr.wollfie.cottus.dto.animation.AnimationRepositoryEntry;
+import fr.wollfie.cottus.dto.animation.AnimationSummary;
 import fr.wollfie.cottus.dto.animation.ArmAnimation;
 import fr.wollfie.cottus.exception.AnimationNotFoundException;
 import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
+import io.smallrye.mutiny.Multi;
 
 import java.util.List;
 
@@ -15,11 +18,22 @@ public interface AnimationRepository {
     /** @return The list of all saved animations in the repository */
     List<AnimationRepositoryEntry> listAllAnimations();
 
+    /**
+     * Stream a page of the summaries of the saved animations, in a stable order. The animations themselves
+     * are not read. The next page is obtained by giving the cursor of the last summary of the page
+     * @param afterCursor The cursor after which the page starts, or null for the first page
+     * @param limit The maximum number of summaries in the page
+     * @return The summaries of the page, in order
+     * @throws IllegalArgumentException If the cursor is not a valid cursor of this repository
+     */
+    Multi<AnimationSummary> listSummaries(String afterCursor, int limit);
+
     /**
      * Saves the animation in the repository so that it can be found later
      * @param animationName The name under which to save this animation
      * @param animation The animation 
+     * @param validation The result of the validation of the animation, or null if it was not validated
      * @return True if the save was successful
      */
-    boolean save(String animationName, AnimationPrimitive animation);
+    boolean save(String animationName, AnimationPrimitive animation, AnimationValidation validation);
 }
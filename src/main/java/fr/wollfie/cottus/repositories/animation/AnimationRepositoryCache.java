@@ -0,0 +1,104 @@
+package fr.wollfie.cottus.repositories.animation;
+
+import fr.wollfie.cottus.dto.animation.AnimationRepositoryEntry;
+import fr.wollfie.cottus.exception.AnimationNotFoundException;
+import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.io.BasicOutputBuffer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * <p>
+ *     In-memory cache of the entries of the {@link AnimationRepository}, keyed by name. It is filled by the
+ *     {@link CachingAnimationRepository} when an entry is read, and invalidated when an entry is saved.
+ *     At most {@code cottus.config.repository.cache-size} entries are kept, the least recently used are
+ *     evicted first.
+ * </p>
+ * <p>
+ *     Animations keep the reference of their first frame while they are played, so they cannot be shared. The
+ *     animations are cached encoded in BSON, and each read decodes an animation of its own, which saves the
+ *     round trip to the database but not the decoding.
+ * </p>
+ */
+@ApplicationScoped
+public class AnimationRepositoryCache {
+
+    @Inject AnimationRepository animationRepository;
+
+    @ConfigProperty(name = "cottus.config.repository.cache-size") int maxSize;
+    @ConfigProperty(name = "cottus.config.repository.warm-up") Optional<List<String>> warmUpNames;
+
+    /** An entry whose animation is encoded */
+    private record CachedEntry(String id, String name, byte[] animation, AnimationValidation validation) { }
+
+    private final Map<String, CachedEntry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedEntry> eldest) { return size() > maxSize; }
+    };
+    /** Incremented on each invalidation, so that an entry read before it is not cached after it */
+    private long generation = 0;
+
+    /** Load the animations listed in the configuration, so that they are in the cache when first played */
+    void onStart(@Observes StartupEvent event) {
+        for (String name : warmUpNames.orElse(List.of())) {
+            try { animationRepository.getAnimationByName(name); }
+            catch (AnimationNotFoundException e) { Log.warnf("Cannot warm up the animation %s, it doesn't exist", name); }
+            catch (RuntimeException e) { Log.warnf("Cannot warm up the animation %s : %s", name, e.getMessage()); }
+        }
+    }
+
+    /** @return A copy of the cached entry with the given name, or null if it is not cached */
+    public AnimationRepositoryEntry get(String name) {
+        CachedEntry cached;
+        synchronized (this) { cached = entries.get(name); }
+        if (cached == null) { return null; }
+
+        AnimationPrimitive animation;
+        try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(cached.animation()))) {
+            animation = AnimationBson.readPrimitive(reader);
+        }
+        AnimationRepositoryEntryImpl entry = new AnimationRepositoryEntryImpl(cached.name(), animation, cached.validation());
+        entry.setId(cached.id());
+        return entry;
+    }
+
+    /** @return The current generation of the cache, to give to {@link AnimationRepositoryCache#put} */
+    public synchronized long getGeneration() { return generation; }
+
+    /**
+     * Cache the entry under its name
+     * @param entry The entry
+     * @param generation The generation of the cache before the entry was read from the repository. If an
+     *                   entry was invalidated since, the given entry may be outdated and is not cached
+     */
+    public void put(AnimationRepositoryEntry entry, long generation) {
+        if (!(entry.getAnimation() instanceof AnimationPrimitive animation)) { return; }
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) { AnimationBson.writePrimitive(writer, animation); }
+        String id = entry instanceof AnimationRepositoryEntryImpl impl ? impl.getId() : null;
+        CachedEntry cached = new CachedEntry(id, entry.getName(), buffer.toByteArray(), entry.getValidation());
+
+        synchronized (this) {
+            if (generation == this.generation) { entries.put(entry.getName(), cached); }
+        }
+    }
+
+    /** Remove the entry with the given name from the cache */
+    public synchronized void invalidate(String name) {
+        entries.remove(name);
+        this.generation++;
+    }
+}
@@ -3,6 +3,7 @@ package fr.wollfie.cottus.repositories.animation;
 import fr.wollfie.cottus.dto.animation.AnimationRepositoryEntry;
 import fr.wollfie.cottus.dto.animation.ArmAnimation;
 import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
 import io.quarkus.mongodb.panache.PanacheMongoEntity;
 import io.quarkus.mongodb.panache.common.MongoEntity;
 
@@ -18,17 +19,21 @@ public final class AnimationRepositoryEntryImpl extends PanacheMongoEntity imple
 
     private final String name;
     private final AnimationPrimitive animation;
+    private final AnimationValidation validation;
 
     public AnimationRepositoryEntryImpl(
             String name,
-            AnimationPrimitive animation
+            AnimationPrimitive animation,
+            AnimationValidation validation
     ) {
         this.name = name;
         this.animation = animation;
+        this.validation = validation;
     }
 
     @Override  public String getName() { return name; }
     @Override  public AnimationPrimitive getAnimation() { return animation; }
+    @Override  public AnimationValidation getValidation() { return validation; }
 
     @Override
     public boolean equals(Object obj) {
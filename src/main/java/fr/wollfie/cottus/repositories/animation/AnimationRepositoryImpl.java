@@ -1,18 +1,41 @@
 package fr.wollfie.cottus.repositories.animation;
 
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
 import fr.wollfie.cottus.dto.animation.AnimationRepositoryEntry;
+import fr.wollfie.cottus.dto.animation.AnimationSummary;
 import fr.wollfie.cottus.dto.animation.ArmAnimation;
 import fr.wollfie.cottus.exception.AnimationNotFoundException;
 import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
+import io.quarkus.arc.properties.UnlessBuildProperty;
 import io.quarkus.logging.Log;
 import io.quarkus.mongodb.panache.PanacheMongoRepository;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.codecs.EncoderContext;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 import java.util.List;
+import java.util.UUID;
 
 @ApplicationScoped
+@UnlessBuildProperty(name = "cottus.config.repository.type", stringValue = "file", enableIfMissing = true)
 public class AnimationRepositoryImpl implements AnimationRepository, PanacheMongoRepository<AnimationRepositoryEntryImpl> {
    
+    @Inject AnimationCodec animationCodec;
+
     @Override
     public AnimationRepositoryEntryImpl getAnimationByName(String animationName) throws AnimationNotFoundException {
         AnimationRepositoryEntryImpl res = find("name", animationName).firstResult();
@@ -25,9 +48,86 @@ public class AnimationRepositoryImpl implements AnimationRepository, PanacheMong
         return listAll().stream().map(e -> (AnimationRepositoryEntry)e).toList();
     }
 
+    /** Only the summary fields are sent by the database, the animations are never decoded */
+    static final Bson SUMMARY_FIELDS = Projections.include("id", "name", AnimationCodec.DURATION_FIELD, AnimationCodec.PRIMITIVE_COUNT_FIELD);
+    /** The order of the summaries, see {@link AnimationRepositoryImpl#toSummary(BsonDocument)} for the cursor */
+    static final Bson SUMMARY_ORDER = Sorts.ascending("_id");
+
+    /**
+     * @param afterCursor The cursor of the last summary of the previous page, or null for the first page
+     * @return The filter of the documents of the page
+     * @throws IllegalArgumentException If the cursor is not the cursor of a summary
+     */
+    static Bson summariesAfter(String afterCursor) {
+        return afterCursor == null ? new BsonDocument() : Filters.gt("_id", new ObjectId(afterCursor));
+    }
+
+    @Override
+    public Multi<AnimationSummary> listSummaries(String afterCursor, int limit) {
+        FindIterable<BsonDocument> summaries = mongoCollection().withDocumentClass(BsonDocument.class)
+                .find(summariesAfter(afterCursor))
+                .projection(SUMMARY_FIELDS)
+                .sort(SUMMARY_ORDER)
+                .limit(limit);
+
+        // The documents are streamed as the cursor reads them, the cursor is closed once the stream
+        // completes or is cancelled. Reading the cursor blocks, so it runs on a worker thread
+        return Multi.createFrom().resource(summaries::cursor, cursor -> Multi.createFrom().iterable(() -> cursor))
+                .withFinalizer(MongoCursor::close)
+                .map(AnimationRepositoryImpl::toSummary)
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    /**
+     * @return The summary of the document. Its cursor is the {@code _id} of the document rather than its
+     * {@code id} field, which the entries saved before it existed don't have
+     */
+    static AnimationSummary toSummary(BsonDocument document) {
+        BsonValue cursor = document.get("_id");
+        BsonValue id = document.get("id");
+        BsonValue duration = document.get(AnimationCodec.DURATION_FIELD);
+        BsonValue primitiveCount = document.get(AnimationCodec.PRIMITIVE_COUNT_FIELD);
+        return new AnimationSummary(
+                id != null && id.isString() ? id.asString().getValue() : null,
+                cursor.isObjectId() ? cursor.asObjectId().getValue().toHexString() : cursor.toString(),
+                document.getString("name").getValue(),
+                // Entries saved before the summary fields existed have none
+                duration != null && duration.isNumber() ? duration.asNumber().doubleValue() : null,
+                primitiveCount != null && primitiveCount.isNumber() ? primitiveCount.asNumber().intValue() : null
+        );
+    }
+
+    /** Fields only written when they are known, removed when the entry is saved again without them */
+    private static final List<String> OPTIONAL_FIELDS = List.of(AnimationCodec.DURATION_FIELD, "validation");
+    /** Saving a name that has no document yet creates it */
+    static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    /** @return The filter of the document of the entry with the given name */
+    static Bson byName(String animationName) { return Filters.eq("name", animationName); }
+
+    /**
+     * @return The update replacing the fields of the document of the entry with those of the given one. Its id
+     * is only set when the document is created, so that it stays the same when the entry is saved again
+     */
+    static Bson saveUpdate(AnimationCodec codec, AnimationRepositoryEntryImpl entry) {
+        BsonDocument fields = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(fields), entry, EncoderContext.builder().build());
+
+        BsonDocument update = new BsonDocument("$set", fields)
+                .append("$setOnInsert", new BsonDocument("id", new BsonString(UUID.randomUUID().toString())));
+        BsonDocument unset = new BsonDocument();
+        for (String field : OPTIONAL_FIELDS) {
+            if (!fields.containsKey(field)) { unset.append(field, new BsonString("")); }
+        }
+        if (!unset.isEmpty()) { update.append("$unset", unset); }
+        return update;
+    }
+
     @Override
-    public boolean save(String animationName, AnimationPrimitive animation) {
-        persistOrUpdate(new AnimationRepositoryEntryImpl(animationName, animation));
+    public boolean save(String animationName, AnimationPrimitive animation, AnimationValidation validation) {
+        AnimationRepositoryEntryImpl entry = new AnimationRepositoryEntryImpl(animationName, animation, validation);
+        // Saving an existing name replaces its entry rather than adding another one
+        mongoCollection().updateOne(byName(animationName), saveUpdate(animationCodec, entry), UPSERT);
         return true;
     }
 }
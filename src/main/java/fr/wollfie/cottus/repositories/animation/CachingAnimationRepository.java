@@ -0,0 +1,52 @@
+package fr.wollfie.cottus.repositories.animation;
+
+import fr.wollfie.cottus.dto.animation.AnimationRepositoryEntry;
+import fr.wollfie.cottus.dto.animation.AnimationSummary;
+import fr.wollfie.cottus.exception.AnimationNotFoundException;
+import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
+import io.smallrye.mutiny.Multi;
+
+import javax.annotation.Priority;
+import javax.decorator.Decorator;
+import javax.decorator.Delegate;
+import javax.enterprise.inject.Any;
+import javax.inject.Inject;
+import java.util.List;
+
+/**
+ * Read-through cache in front of the {@link AnimationRepository}. An entry read by name is only fetched
+ * from the database the first time, the following reads are served by the {@link AnimationRepositoryCache}.
+ * Each read returns an animation of its own
+ */
+@Decorator
+@Priority(10)
+public class CachingAnimationRepository implements AnimationRepository {
+
+    @Inject @Any @Delegate AnimationRepository delegate;
+    @Inject AnimationRepositoryCache cache;
+
+    @Override
+    public AnimationRepositoryEntry getAnimationByName(String animationName) throws AnimationNotFoundException {
+        AnimationRepositoryEntry entry = cache.get(animationName);
+        if (entry != null) { return entry; }
+
+        long generation = cache.getGeneration();
+        entry = delegate.getAnimationByName(animationName);
+        cache.put(entry, generation);
+        return entry;
+    }
+
+    @Override
+    public List<AnimationRepositoryEntry> listAllAnimations() { return delegate.listAllAnimations(); }
+
+    @Override
+    public Multi<AnimationSummary> listSummaries(String afterCursor, int limit) { return delegate.listSummaries(afterCursor, limit); }
+
+    @Override
+    public boolean save(String animationName, AnimationPrimitive animation, AnimationValidation validation) {
+        boolean saved = delegate.save(animationName, animation, validation);
+        cache.invalidate(animationName);
+        return saved;
+    }
+}
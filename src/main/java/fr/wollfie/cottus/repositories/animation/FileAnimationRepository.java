@@ -0,0 +1,354 @@
+package fr.wollfie.cottus.repositories.animation;
+
+import fr.wollfie.cottus.dto.animation.AnimationRepositoryEntry;
+import fr.wollfie.cottus.dto.animation.AnimationSummary;
+import fr.wollfie.cottus.exception.AnimationNotFoundException;
+import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Multi;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonType;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ *     Animation repository stored in a single append-only log file, for the deployments without MongoDB.
+ *     Enabled by setting {@code cottus.config.repository.type} to {@code file} at build time.
+ * </p>
+ * <p>
+ *     Each save appends a record {@code [int32 length][int32 CRC32][BSON entry]}, the entry being encoded
+ *     by the {@link AnimationCodec}. At startup the log is replayed to rebuild the index of the latest record
+ *     of each name, only reading the summary fields of the entries. A last record cut by a crash is detected by
+ *     its length or checksum and truncated, while a corrupted record followed by others fails the replay and
+ *     leaves the log untouched, rather than dropping the valid records after it. The entries are decoded when read, from a memory mapping of the log
+ *     for the records replayed, and from memory for the records saved since. The log is limited to 2 GiB,
+ *     the size of a mapping.
+ * </p>
+ * <p>
+ *     Once the records replaced by newer ones take more room than the live ones, the log is compacted : the
+ *     live records are copied to a new file, synced, then atomically moved over the log, and the move itself
+ *     is synced, so that a crash leaves either the old or the new log, never a partial one.
+ * </p>
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "cottus.config.repository.type", stringValue = "file")
+public class FileAnimationRepository implements AnimationRepository {
+
+    private static final String LOG_FILE = "animations.log";
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final long MAX_LOG_BYTES = Integer.MAX_VALUE;
+
+    @Inject AnimationCodec animationCodec;
+
+    @ConfigProperty(name = "cottus.config.repository.file.directory") String directory;
+    @ConfigProperty(name = "cottus.config.repository.file.compaction-min-bytes") long compactionMinBytes;
+
+    /**
+     * The latest record of an entry in the log
+     * @param checksum The checksum of the encoded entry
+     * @param payload The encoded entry, only read through duplicates as it is shared by the readers
+     * @param summary The summary of the entry
+     */
+    private record IndexEntry(int checksum, ByteBuffer payload, AnimationSummary summary) {
+        int recordBytes() { return RECORD_HEADER_BYTES + payload.remaining(); }
+    }
+
+    private Path logPath;
+    private FileChannel channel;
+    /** End of the valid records of the log, where the next one is appended */
+    private long end;
+    /** Bytes of the records replaced by newer ones */
+    private long garbageBytes;
+
+    private final Map<String, IndexEntry> byName = new HashMap<>();
+    private final NavigableMap<String, IndexEntry> byId = new TreeMap<>();
+
+// //======================================================================================\\
+// ||                                                                                      ||
+// ||                                       LIFECYCLE                                      ||
+// ||                                                                                      ||
+// \\======================================================================================//
+
+    FileAnimationRepository() { }
+
+    /**
+     * A repository outside of CDI, e.g. in the tests. The log in the directory is opened and replayed
+     * @param animationCodec The codec of the entries
+     * @param directory The directory of the log
+     * @param compactionMinBytes The size under which the log is never compacted
+     */
+    public FileAnimationRepository(AnimationCodec animationCodec, String directory, long compactionMinBytes) {
+        this.animationCodec = animationCodec;
+        this.directory = directory;
+        this.compactionMinBytes = compactionMinBytes;
+        this.init();
+    }
+
+    @PostConstruct
+    void init() {
+        try {
+            this.logPath = Path.of(directory).toAbsolutePath().resolve(LOG_FILE);
+            Files.createDirectories(logPath.getParent());
+            this.open();
+            try { this.replay(); }
+            catch (IOException e) { this.channel.close(); throw e; }
+            Log.infof("Loaded %d animations from %s", byName.size(), logPath);
+            this.compactIfNeeded();
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    /** Close the log, the entries already read stay readable */
+    @PreDestroy
+    public synchronized void close() {
+        try { this.channel.close(); }
+        catch (IOException e) { Log.warnf("Cannot close the animation log : %s", e.getMessage()); }
+    }
+
+    private void open() throws IOException {
+        this.channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() > MAX_LOG_BYTES) {
+            this.channel.close();
+            throw new IOException(String.format("The animation log %s is larger than %d bytes", logPath, MAX_LOG_BYTES));
+        }
+    }
+
+    /**
+     * Rebuild the index from the log, truncating the last record if it was cut by a crash
+     * @throws IOException If a record before the last one is corrupted, the log is then left as it is
+     */
+    private void replay() throws IOException {
+        this.byName.clear();
+        this.byId.clear();
+        this.garbageBytes = 0;
+
+        // The size of the log was checked when it was opened, the offsets fit in an int
+        int size = (int) channel.size();
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        int offset = 0;
+        while (size - offset >= RECORD_HEADER_BYTES) {
+            int length = mapped.getInt(offset);
+            int crc = mapped.getInt(offset + Integer.BYTES);
+            // The last record was cut while its payload was written
+            if (length > size - offset - RECORD_HEADER_BYTES) { break; }
+
+            ByteBuffer payload = length > 0 ? mapped.slice(offset + RECORD_HEADER_BYTES, length) : null;
+            if (payload == null || crc != checksum(payload)) {
+                // The last record was cut while its header or its payload was written, some file systems
+                // leave the end of the file zero-filled after a crash
+                boolean last = length > 0 && offset + RECORD_HEADER_BYTES + length == size;
+                if (last || isZeroFilled(mapped, offset + RECORD_HEADER_BYTES, size)) { break; }
+                throw new IOException(String.format(
+                        "The record at offset %d of the animation log %s is corrupted", offset, logPath
+                ));
+            }
+
+            this.index(new IndexEntry(crc, payload, readSummary(payload)));
+            offset += RECORD_HEADER_BYTES + length;
+        }
+
+        if (offset < size) {
+            Log.warnf("Truncating %d bytes of incomplete records at the end of %s", size - offset, logPath);
+            this.channel.truncate(offset);
+            this.channel.force(true);
+        }
+        this.end = offset;
+    }
+
+    /** @return True if the bytes of the buffer in the given range are all zeros */
+    private static boolean isZeroFilled(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) != 0) { return false; }
+        }
+        return true;
+    }
+
+    private void index(IndexEntry entry) {
+        IndexEntry previous = byName.put(entry.summary().name(), entry);
+        if (previous != null) {
+            byId.remove(previous.summary().cursor());
+            this.garbageBytes += previous.recordBytes();
+        }
+        byId.put(entry.summary().cursor(), entry);
+    }
+
+// //======================================================================================\\
+// ||                                                                                      ||
+// ||                                       REPOSITORY                                     ||
+// ||                                                                                      ||
+// \\======================================================================================//
+
+    @Override
+    public AnimationRepositoryEntry getAnimationByName(String animationName) throws AnimationNotFoundException {
+        ByteBuffer payload;
+        synchronized (this) {
+            IndexEntry entry = byName.get(animationName);
+            if (entry == null) { throw new AnimationNotFoundException(); }
+            payload = entry.payload();
+        }
+        // The mapping stays valid after a compaction replaces the log, it can be decoded outside the lock
+        return this.decode(payload);
+    }
+
+    @Override
+    public List<AnimationRepositoryEntry> listAllAnimations() {
+        List<ByteBuffer> payloads;
+        synchronized (this) { payloads = byId.values().stream().map(IndexEntry::payload).toList(); }
+        return payloads.stream().map(this::decode).toList();
+    }
+
+    @Override
+    public Multi<AnimationSummary> listSummaries(String afterCursor, int limit) {
+        List<AnimationSummary> page;
+        synchronized (this) {
+            Collection<IndexEntry> entries = afterCursor == null ? byId.values() : byId.tailMap(afterCursor, false).values();
+            page = entries.stream().limit(limit).map(IndexEntry::summary).toList();
+        }
+        return Multi.createFrom().iterable(page);
+    }
+
+    @Override
+    public synchronized boolean save(String animationName, AnimationPrimitive animation, AnimationValidation validation) {
+        AnimationRepositoryEntryImpl entry = new AnimationRepositoryEntryImpl(animationName, animation, validation);
+        // Saving an existing name replaces its entry
+        IndexEntry previous = byName.get(animationName);
+        entry.setId(previous != null ? previous.summary().cursor() : UUID.randomUUID().toString());
+
+        try {
+            ByteBuffer payload = ByteBuffer.wrap(this.encode(entry)).asReadOnlyBuffer();
+            if (RECORD_HEADER_BYTES + payload.remaining() > MAX_LOG_BYTES - end) {
+                throw new IOException(String.format("The animation log would be larger than %d bytes", MAX_LOG_BYTES));
+            }
+            int crc = checksum(payload);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.remaining());
+            record.putInt(payload.remaining()).putInt(crc).put(payload.duplicate()).flip();
+
+            long offset = this.end;
+            while (record.hasRemaining()) { offset += channel.write(record, offset); }
+            this.channel.force(false);
+
+            // The record is kept in memory, rather than mapping the log again
+            this.end = offset;
+            this.index(new IndexEntry(crc, payload, readSummary(payload)));
+        } catch (IOException e) {
+            Log.errorf("Cannot save the animation %s : %s", animationName, e.getMessage());
+            return false;
+        }
+
+        // The entry is saved, a failed compaction leaves the log as it was
+        try { this.compactIfNeeded(); }
+        catch (IOException e) { Log.warnf("Cannot compact the animation log : %s", e.getMessage()); }
+        return true;
+    }
+
+// //======================================================================================\\
+// ||                                                                                      ||
+// ||                                       COMPACTION                                     ||
+// ||                                                                                      ||
+// \\======================================================================================//
+
+    private void compactIfNeeded() throws IOException {
+        if (end >= compactionMinBytes && garbageBytes > end - garbageBytes) { this.compact(); }
+    }
+
+    /** Rewrite the log with only the latest record of each entry */
+    private synchronized void compact() throws IOException {
+        long before = this.end;
+        Path compacted = logPath.resolveSibling(LOG_FILE + ".compact");
+        try (FileChannel out = FileChannel.open(compacted,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            for (IndexEntry entry : byId.values()) {
+                header.clear();
+                header.putInt(entry.payload().remaining()).putInt(entry.checksum()).flip();
+                ByteBuffer payload = entry.payload().duplicate();
+                while (header.hasRemaining()) { out.write(header); }
+                while (payload.hasRemaining()) { out.write(payload); }
+            }
+            out.force(true);
+        }
+        Files.move(compacted, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(logPath.getParent());
+
+        this.channel.close();
+        this.open();
+        this.replay();
+        Log.infof("Compacted the animation log from %d to %d bytes", before, end);
+    }
+
+    /** Sync the entries of the directory, so that a move in it survives a crash */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) { channel.force(true); }
+        // Some platforms, e.g. Windows, cannot open a directory. Their moves are synced by the file system
+        catch (IOException e) { Log.debugf("Cannot sync the directory %s : %s", directory, e.getMessage()); }
+    }
+
+// //======================================================================================\\
+// ||                                                                                      ||
+// ||                                       ENCODING                                       ||
+// ||                                                                                      ||
+// \\======================================================================================//
+
+    private byte[] encode(AnimationRepositoryEntryImpl entry) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            animationCodec.encode(writer, entry, EncoderContext.builder().build());
+        }
+        return buffer.toByteArray();
+    }
+
+    private AnimationRepositoryEntry decode(ByteBuffer payload) {
+        try (BsonBinaryReader reader = new BsonBinaryReader(payload.duplicate())) {
+            return animationCodec.decode(reader, DecoderContext.builder().build());
+        }
+    }
+
+    /** @return The summary of the encoded entry, skipping over its animation without decoding it */
+    private static AnimationSummary readSummary(ByteBuffer payload) {
+        String id = null;
+        String name = null;
+        Double duration = null;
+        Integer primitiveCount = null;
+        try (BsonBinaryReader reader = new BsonBinaryReader(payload.duplicate())) {
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                switch (reader.readName()) {
+                    case "id" -> id = reader.readString();
+                    case "name" -> name = reader.readString();
+                    case AnimationCodec.DURATION_FIELD -> duration = reader.readDouble();
+                    case AnimationCodec.PRIMITIVE_COUNT_FIELD -> primitiveCount = reader.readInt32();
+                    default -> reader.skipValue();
+                }
+            }
+        }
+        // The id of the entry is its cursor, the index is ordered by id
+        return new AnimationSummary(id, id, name, duration, primitiveCount);
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,48 @@
+package fr.wollfie.cottus.repositories.animation;
+
+import fr.wollfie.cottus.dto.animation.AnimationRepositoryEntry;
+import fr.wollfie.cottus.dto.animation.AnimationSummary;
+import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.unchecked.Unchecked;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Reactive access to the {@link FileAnimationRepository}. Its reads and writes block on the disk, so they
+ * run on a worker thread. It goes through the {@link CachingAnimationRepository} like any other user
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "cottus.config.repository.type", stringValue = "file")
+public class FileReactiveAnimationRepository implements ReactiveAnimationRepository {
+
+    @Inject AnimationRepository animationRepository;
+
+    @Override
+    public Uni<AnimationRepositoryEntry> getAnimationByName(String animationName) {
+        return Uni.createFrom().item(Unchecked.supplier(() -> animationRepository.getAnimationByName(animationName)))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    @Override
+    public Multi<AnimationRepositoryEntry> listAllAnimations() {
+        return Multi.createFrom().items(() -> animationRepository.listAllAnimations().stream())
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    @Override
+    public Multi<AnimationSummary> listSummaries(String afterCursor, int limit) {
+        return animationRepository.listSummaries(afterCursor, limit);
+    }
+
+    @Override
+    public Uni<Boolean> save(String animationName, AnimationPrimitive animation, AnimationValidation validation) {
+        return Uni.createFrom().item(() -> animationRepository.save(animationName, animation, validation))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+}
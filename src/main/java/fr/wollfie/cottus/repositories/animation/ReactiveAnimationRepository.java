@@ -0,0 +1,34 @@
+package fr.wollfie.cottus.repositories.animation;
+
+import fr.wollfie.cottus.dto.animation.AnimationRepositoryEntry;
+import fr.wollfie.cottus.dto.animation.AnimationSummary;
+import fr.wollfie.cottus.exception.AnimationNotFoundException;
+import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Non-blocking access to the saved animations, the same as the {@link AnimationRepository} but without
+ * holding a thread while the database answers. Meant for the REST resources, which run on the event loop
+ */
+public interface ReactiveAnimationRepository {
+
+    /** 
+     * @return The animation that has the given name, or a failure with an {@link AnimationNotFoundException} 
+     * if there is none 
+     */
+    Uni<AnimationRepositoryEntry> getAnimationByName(String animationName);
+
+    /** @return The saved animations, streamed as they are read */
+    Multi<AnimationRepositoryEntry> listAllAnimations();
+
+    /** @see AnimationRepository#listSummaries(String, int) */
+    Multi<AnimationSummary> listSummaries(String afterCursor, int limit);
+
+    /** 
+     * @see AnimationRepository#save(String, AnimationPrimitive, AnimationValidation)
+     * @return True once the save was successful 
+     */
+    Uni<Boolean> save(String animationName, AnimationPrimitive animation, AnimationValidation validation);
+}
@@ -0,0 +1,69 @@
+package fr.wollfie.cottus.repositories.animation;
+
+import fr.wollfie.cottus.dto.animation.AnimationRepositoryEntry;
+import fr.wollfie.cottus.dto.animation.AnimationSummary;
+import fr.wollfie.cottus.exception.AnimationNotFoundException;
+import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
+import io.quarkus.arc.properties.UnlessBuildProperty;
+import io.quarkus.mongodb.FindOptions;
+import io.quarkus.mongodb.panache.reactive.ReactivePanacheMongoRepository;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import org.bson.BsonDocument;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Reactive access to the animations in MongoDB. The entries read by name go through the same
+ * {@link AnimationRepositoryCache} as the blocking {@link AnimationRepository}, so both see the saves of the other
+ */
+@ApplicationScoped
+@UnlessBuildProperty(name = "cottus.config.repository.type", stringValue = "file", enableIfMissing = true)
+public class ReactiveAnimationRepositoryImpl implements ReactiveAnimationRepository, ReactivePanacheMongoRepository<AnimationRepositoryEntryImpl> {
+
+    @Inject AnimationRepositoryCache cache;
+    @Inject AnimationCodec animationCodec;
+
+    @Override
+    public Uni<AnimationRepositoryEntry> getAnimationByName(String animationName) {
+        AnimationRepositoryEntry cached = cache.get(animationName);
+        if (cached != null) { return Uni.createFrom().item(cached); }
+
+        long generation = cache.getGeneration();
+        return find("name", animationName).firstResult()
+                .onItem().ifNull().failWith(AnimationNotFoundException::new)
+                .invoke(entry -> cache.put(entry, generation))
+                .map(entry -> entry);
+    }
+
+    @Override
+    public Multi<AnimationRepositoryEntry> listAllAnimations() {
+        return streamAll().map(entry -> entry);
+    }
+
+    @Override
+    public Multi<AnimationSummary> listSummaries(String afterCursor, int limit) {
+        FindOptions options = new FindOptions()
+                .filter(AnimationRepositoryImpl.summariesAfter(afterCursor))
+                .projection(AnimationRepositoryImpl.SUMMARY_FIELDS)
+                .sort(AnimationRepositoryImpl.SUMMARY_ORDER)
+                .limit(limit);
+        return mongoCollection().withDocumentClass(BsonDocument.class).find(options)
+                .map(AnimationRepositoryImpl::toSummary);
+    }
+
+    @Override
+    public Uni<Boolean> save(String animationName, AnimationPrimitive animation, AnimationValidation validation) {
+        AnimationRepositoryEntryImpl entry = new AnimationRepositoryEntryImpl(animationName, animation, validation);
+        // Saving an existing name replaces its entry rather than adding another one
+        return mongoCollection().updateOne(
+                        AnimationRepositoryImpl.byName(animationName),
+                        AnimationRepositoryImpl.saveUpdate(animationCodec, entry),
+                        AnimationRepositoryImpl.UPSERT
+                )
+                .invoke(() -> cache.invalidate(animationName))
+                .replaceWith(true);
+    }
+}
@@ -1,30 +1,55 @@
 package fr.wollfie.cottus.resources;
 
 import fr.wollfie.cottus.dto.animation.AnimationPreview;
+import fr.wollfie.cottus.dto.animation.AnimationPreviewPoint;
 import fr.wollfie.cottus.dto.animation.AnimationRepositoryEntry;
+import fr.wollfie.cottus.dto.animation.AnimationSummary;
 import fr.wollfie.cottus.dto.animation.ArmAnimation;
 import fr.wollfie.cottus.exception.AnimationNotFoundException;
 import fr.wollfie.cottus.exception.NoSolutionException;
 import fr.wollfie.cottus.models.animation.AnimationController;
+import fr.wollfie.cottus.models.animation.AnimationPlaylist;
+import fr.wollfie.cottus.models.animation.PlaybackStatistics;
 import fr.wollfie.cottus.models.animation.pathing.AnimationPrimitive;
+import fr.wollfie.cottus.models.animation.pathing.TrackAnimation;
+import fr.wollfie.cottus.models.animation.preview.AnimationPreviewCache;
 import fr.wollfie.cottus.models.animation.preview.AnimationSampler;
+import fr.wollfie.cottus.models.animation.preview.PreviewCacheStatistics;
+import fr.wollfie.cottus.models.animation.track.AnimationTracks;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidator;
 import fr.wollfie.cottus.repositories.animation.AnimationRepository;
+import fr.wollfie.cottus.repositories.animation.ReactiveAnimationRepository;
 import fr.wollfie.cottus.services.arm_controller.ArmAnimatorControllerService;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.smallrye.mutiny.unchecked.Unchecked;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 
 import javax.inject.Inject;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Path("/api/arm-animation")
 public class ArmAnimationResource {
     
     @Inject AnimationSampler animationSampler;
+    @Inject AnimationPreviewCache previewCache;
     @Inject AnimationRepository animationRepository;
+    @Inject ReactiveAnimationRepository reactiveAnimationRepository;
     @Inject ArmAnimatorControllerService animationController;
+    @Inject AnimationTracks animationTracks;
+    @Inject AnimationValidator animationValidator;
+    
+    /** Warning of the animations played while their validation found unreachable frames */
+    private static final String UNREACHABLE_WARNING = "199 - \"Some frames were unreachable when the animation was saved\"";
     
     @POST
     @Path("/preview")
@@ -36,12 +61,43 @@ public class ArmAnimationResource {
     ) {
         return Uni.createFrom().item(Unchecked.supplier(() -> {
             
-            try { return animationSampler.sample(animation, nbPoints); } 
+            try { return previewCache.getPreview(animation, nbPoints); } 
             catch (NoSolutionException e) { throw new RuntimeException("The animation has" +
                     " some unreachable points..."); }
         }));
     }
     
+    @POST
+    @Path("/preview-adaptive")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Uni<Response> getAdaptivePreviewFor(
+            @QueryParam("chord_error_mm") @DefaultValue("1.0") double chordErrorMm,
+            @QueryParam("joint_delta_rad") @DefaultValue("0.05") double jointDeltaRad,
+            AnimationPrimitive animation
+    ) {
+        return Uni.createFrom().item(() -> {
+            if (chordErrorMm <= 0 || jointDeltaRad <= 0) { return Response.status(Response.Status.BAD_REQUEST).build(); }
+            try { return Response.ok(previewCache.getAdaptivePreview(animation, chordErrorMm, jointDeltaRad)).build(); }
+            catch (NoSolutionException e) { return Response.status(Response.Status.BAD_REQUEST).build(); }
+        });
+    }
+    
+    @POST
+    @Path("/preview-stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Multi<AnimationPreviewPoint> streamPreviewFor(
+            @QueryParam("nb_points") int nbPoints,
+            AnimationPrimitive animation
+    ) {
+        // Points are only computed when requested by the subscriber, and the sampling stops when the
+        // client disconnects and cancels the subscription. The IK blocks, so it runs on a worker thread
+        return Multi.createFrom().<AnimationPreviewPoint>iterable(() -> animationSampler.iterate(animation, nbPoints))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+    
     @POST
     @Path("/min-time")
     @Produces(MediaType.TEXT_PLAIN)
@@ -52,24 +108,107 @@ public class ArmAnimationResource {
     ) {
         return Uni.createFrom().item(Unchecked.supplier(() -> {
 
-            try { return animationSampler.getMinTimeSec(animation, nbPoints); }
+            try { return previewCache.getMinTimeSec(animation, nbPoints); }
             catch (NoSolutionException e) { return -1.0; /* Silenced */ }
         }));
     }
     
+    @GET
+    @Path("/preview-cache-stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<PreviewCacheStatistics> getPreviewCacheStatistics() {
+        return Uni.createFrom().item(previewCache::getStatistics);
+    }
+    
+    @POST
+    @Path("/retime")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Uni<Response> retime(
+            @QueryParam("nb_points") int nbPoints,
+            AnimationPrimitive animation
+    ) {
+        return Uni.createFrom().item(() -> {
+            try { return Response.ok(animationSampler.retime(animation, nbPoints)).build(); }
+            catch (NoSolutionException e) { return Response.status(Response.Status.BAD_REQUEST).build(); }
+        });
+    }
+    
+    @POST
+    @Path("/bake")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> bake(
+            @QueryParam("name") String animationName,
+            @QueryParam("target") String targetName,
+            @QueryParam("rate_hz") @DefaultValue("30") double rateHz
+    ) {
+        return Uni.createFrom().item(() -> {
+            if (targetName == null || rateHz <= 0) { return Response.status(Response.Status.BAD_REQUEST).build(); }
+            try {
+                AnimationRepositoryEntry entry = animationRepository.getAnimationByName(animationName);
+                // Baking stops at the first unreachable frame, so it isn't even started when the validation found one
+                if (isKnownInvalid(entry)) { return Response.status(Response.Status.CONFLICT).entity(entry.getValidation()).build(); }
+                double[][] frames = animationSampler.bake(entry.getAnimation(), rateHz);
+                TrackAnimation track = animationTracks.write(targetName, rateHz, frames);
+                boolean saved = animationRepository.save(targetName, track, animationValidator.validate(track, false));
+                return Response.ok(saved).build();
+            } catch (AnimationNotFoundException | NoSolutionException | IllegalArgumentException e) {
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            } catch (IOException e) { return Response.serverError().build(); }
+        });
+    }
+    
     @GET
     @Path("/list-all")
     @Produces(MediaType.APPLICATION_JSON)
     public Multi<AnimationRepositoryEntry> listAll() {
-        return Multi.createFrom().iterable(this.animationRepository.listAllAnimations());
+        return this.reactiveAnimationRepository.listAllAnimations();
+    }
+    
+    @POST
+    @Path("/validate")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Uni<AnimationValidation> validate(
+            @QueryParam("all_failures") @DefaultValue("false") boolean allFailures,
+            AnimationPrimitive animation
+    ) {
+        return Uni.createFrom().item(() -> animationValidator.validate(animation, !allFailures));
+    }
+    
+    @GET
+    @Path("/list")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Multi<AnimationSummary> list(
+            @QueryParam("after") String afterCursor,
+            @QueryParam("limit") @DefaultValue("50") int limit
+    ) {
+        if (limit < 1 || limit > 500) { throw new BadRequestException(); }
+        try { return this.reactiveAnimationRepository.listSummaries(afterCursor, limit); }
+        catch (IllegalArgumentException e) { throw new BadRequestException(); }
     }
     
     @POST
     @Path("/save")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
-    public Uni<Boolean> save(@QueryParam("name") String animationName, AnimationPrimitive animation) {
-        return Uni.createFrom().item(animationRepository.save(animationName, animation));
+    public Uni<Response> save(
+            @QueryParam("name") String animationName,
+            @QueryParam("all_failures") @DefaultValue("false") boolean allFailures,
+            @QueryParam("strict") @DefaultValue("false") boolean strict,
+            AnimationPrimitive animation
+    ) {
+        // The animation is validated once when saved, rather than every time it is played. The validation
+        // keeps its thread busy, so it runs on a worker thread, then the database is written without blocking
+        return Uni.createFrom().item(() -> animationValidator.validate(animation, !allFailures))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .chain(validation -> {
+                    if (strict && !validation.valid()) { 
+                        return Uni.createFrom().item(Response.status(Response.Status.CONFLICT).entity(validation).build()); 
+                    }
+                    return reactiveAnimationRepository.save(animationName, animation, validation)
+                            .map(saved -> Response.ok(saved).build());
+                });
     }
     
     @POST
@@ -77,14 +216,78 @@ public class ArmAnimationResource {
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
     public Uni<Response> play(@QueryParam("name") String animationName) {
-        return Uni.createFrom().item(() -> {
-            try {
-                AnimationRepositoryEntry entry = animationRepository.getAnimationByName(animationName);
-                boolean isAnimationAlreadyPlaying = animationController.playAnimation(entry.getAnimation());
-                
-                
-            } catch (AnimationNotFoundException e) { return Response.status(Response.Status.BAD_REQUEST).build(); }
-            return Response.ok().build();
-        });
+        return reactiveAnimationRepository.getAnimationByName(animationName)
+                .map(entry -> {
+                    boolean isAnimationAlreadyPlaying = animationController.playAnimation(entry.getAnimation());
+                    Response.ResponseBuilder response = Response.ok();
+                    // Known to have unreachable frames, which are dropped while playing
+                    if (isKnownInvalid(entry)) { response.header("Warning", UNREACHABLE_WARNING).entity(entry.getValidation()); }
+                    return response.build();
+                })
+                .onFailure(AnimationNotFoundException.class)
+                .recoverWithItem(() -> Response.status(Response.Status.BAD_REQUEST).build());
+    }
+
+    @POST
+    @Path("/playlist")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Uni<Response> playPlaylist(
+            @QueryParam("repeat") @DefaultValue("1") int repeatCount,
+            @QueryParam("loop") @DefaultValue("false") boolean loop,
+            List<String> animationNames
+    ) {
+        if (animationNames == null || animationNames.isEmpty() || repeatCount < 1) {
+            return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST).build());
+        }
+        // All the animations are fetched before the playlist starts, so that
+        // switching from one to the next doesn't wait on the repository
+        return Multi.createFrom().iterable(animationNames)
+                .onItem().transformToUniAndConcatenate(reactiveAnimationRepository::getAnimationByName)
+                .collect().asList()
+                .map(entries -> {
+                    List<ArmAnimation> animations = new ArrayList<>();
+                    Map<String, AnimationValidation> invalid = new LinkedHashMap<>();
+                    for (AnimationRepositoryEntry entry : entries) {
+                        animations.add(entry.getAnimation());
+                        if (isKnownInvalid(entry)) { invalid.put(entry.getName(), entry.getValidation()); }
+                    }
+                    boolean started = animationController.playPlaylist(new AnimationPlaylist(animations, repeatCount, loop));
+                    if (!started) { return Response.status(Response.Status.CONFLICT).build(); }
+
+                    Response.ResponseBuilder response = Response.ok();
+                    if (!invalid.isEmpty()) { response.header("Warning", UNREACHABLE_WARNING).entity(invalid); }
+                    return response.build();
+                })
+                // A looping playlist must last, otherwise it would never produce a frame
+                .onFailure(e -> e instanceof AnimationNotFoundException || e instanceof IllegalArgumentException)
+                .recoverWithItem(() -> Response.status(Response.Status.BAD_REQUEST).build());
+    }
+
+    @POST
+    @Path("/queue")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> queue(@QueryParam("name") String animationName) {
+        return reactiveAnimationRepository.getAnimationByName(animationName)
+                .map(entry -> animationController.queueAnimation(entry.getAnimation())
+                        ? Response.ok().build() 
+                        : Response.status(Response.Status.CONFLICT).build())
+                .onFailure(AnimationNotFoundException.class)
+                .recoverWithItem(() -> Response.status(Response.Status.BAD_REQUEST).build());
+    }
+
+    @GET
+    @Path("/playback-stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<PlaybackStatistics> getPlaybackStatistics() {
+        return Uni.createFrom().item(animationController::getPlaybackStatistics);
+    }
+
+    /**
+     * @return True if the validation of the entry found unreachable frames. The animation is played anyway, with
+     * a warning : the validation is stale for relative animations, which depend on the pose the arm starts from
+     */
+    private static boolean isKnownInvalid(AnimationRepositoryEntry entry) {
+        return entry.getValidation() != null && !entry.getValidation().valid();
     }
 }
@@ -0,0 +1,108 @@
+package fr.wollfie.cottus.resources;
+
+import fr.wollfie.cottus.models.animation.recording.MotionRecorder;
+import fr.wollfie.cottus.models.animation.recording.MotionRecording;
+import fr.wollfie.cottus.models.animation.pathing.JointSpaceAnimation;
+import fr.wollfie.cottus.models.animation.pathing.TrackAnimation;
+import fr.wollfie.cottus.models.animation.track.AnimationTracks;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidator;
+import fr.wollfie.cottus.repositories.animation.AnimationRepository;
+import io.smallrye.mutiny.Uni;
+
+import javax.inject.Inject;
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+
+@Path("/api/recording")
+public class MotionRecordingResource {
+
+    @Inject MotionRecorder motionRecorder;
+    @Inject AnimationRepository animationRepository;
+    @Inject AnimationTracks animationTracks;
+    @Inject AnimationValidator animationValidator;
+
+    /** The state of the recorder */
+    public record RecordingStatus(boolean recording, int samples, int capacity, double durationSecs) { }
+
+    @POST
+    @Path("/start")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> start() {
+        return Uni.createFrom().item(() -> {
+            motionRecorder.start();
+            return Response.ok().build();
+        });
+    }
+
+    @POST
+    @Path("/stop")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> stop() {
+        return Uni.createFrom().item(() -> {
+            motionRecorder.stop();
+            return Response.ok().build();
+        });
+    }
+
+    @GET
+    @Path("/status")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<RecordingStatus> getStatus() {
+        return Uni.createFrom().item(() -> {
+            MotionRecording recording = motionRecorder.snapshot();
+            return new RecordingStatus(
+                    motionRecorder.isRecording(), recording.size(),
+                    motionRecorder.getCapacity(), recording.getDurationSecs()
+            );
+        });
+    }
+
+    @POST
+    @Path("/save")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> save(
+            @QueryParam("name") String animationName,
+            @QueryParam("source") @DefaultValue("DRIVEN") MotionRecording.Source source
+    ) {
+        return Uni.createFrom().item(() -> {
+            MotionRecording recording = motionRecorder.snapshot();
+            if (animationName == null || recording.size() == 0) { return Response.status(Response.Status.BAD_REQUEST).build(); }
+            
+            JointSpaceAnimation animation = recording.toAnimation(source);
+            boolean saved = animationRepository.save(animationName, animation, animationValidator.validate(animation, false));
+            return Response.ok(saved).build();
+        });
+    }
+
+    @POST
+    @Path("/save-track")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> saveTrack(
+            @QueryParam("name") String animationName,
+            @QueryParam("source") @DefaultValue("DRIVEN") MotionRecording.Source source,
+            @QueryParam("rate_hz") @DefaultValue("30") double rateHz
+    ) {
+        return Uni.createFrom().item(() -> {
+            MotionRecording recording = motionRecorder.snapshot();
+            if (animationName == null || recording.size() == 0 || rateHz <= 0) { 
+                return Response.status(Response.Status.BAD_REQUEST).build(); 
+            }
+            try {
+                double[][] samples = recording.resample(source, rateHz);
+                TrackAnimation track = animationTracks.write(animationName, rateHz, samples);
+                boolean saved = animationRepository.save(animationName, track, animationValidator.validate(track, false));
+                return Response.ok(saved).build();
+            } catch (IllegalArgumentException e) { return Response.status(Response.Status.BAD_REQUEST).build(); }
+            catch (IOException e) { return Response.serverError().build(); }
+        });
+    }
+
+    @GET
+    @Path("/export")
+    @Produces("text/csv")
+    public Uni<String> export(@QueryParam("source") @DefaultValue("DRIVEN") MotionRecording.Source source) {
+        return Uni.createFrom().item(() -> motionRecorder.snapshot().toCsv(source));
+    }
+}
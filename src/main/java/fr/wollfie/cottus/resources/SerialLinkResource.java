@@ -0,0 +1,95 @@
+package fr.wollfie.cottus.resources;
+
+import fr.wollfie.cottus.dto.animation.ArmAnimation;
+import fr.wollfie.cottus.exception.AnimationNotFoundException;
+import fr.wollfie.cottus.exception.NoSolutionException;
+import fr.wollfie.cottus.models.animation.preview.AnimationSampler;
+import fr.wollfie.cottus.repositories.animation.AnimationRepository;
+import fr.wollfie.cottus.resources.serial.JointCommandFilter;
+import fr.wollfie.cottus.resources.serial.LinkSupervisor;
+import fr.wollfie.cottus.resources.serial.SerialCommunication;
+import fr.wollfie.cottus.resources.serial.SerialLinkTelemetry;
+import fr.wollfie.cottus.resources.serial.SerialWriterStatistics;
+import fr.wollfie.cottus.resources.serial.TrajectoryStreamer;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+
+import javax.inject.Inject;
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+@Path("/api/serial-link")
+public class SerialLinkResource {
+
+    @Inject SerialCommunication serialCommunication;
+    @Inject AnimationRepository animationRepository;
+    @Inject AnimationSampler animationSampler;
+
+    @GET
+    @Path("/writer-stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<SerialWriterStatistics> getWriterStatistics() {
+        return Uni.createFrom().item(serialCommunication::getWriterStatistics);
+    }
+
+    @GET
+    @Path("/command-filter-stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<JointCommandFilter.Statistics> getCommandFilterStatistics() {
+        return Uni.createFrom().item(serialCommunication::getCommandFilterStatistics);
+    }
+
+    @GET
+    @Path("/link-stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<LinkSupervisor.Statistics> getLinkStatistics() {
+        return Uni.createFrom().item(serialCommunication::getLinkStatistics);
+    }
+
+    @GET
+    @Path("/telemetry")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<SerialLinkTelemetry.Snapshot> getTelemetry() {
+        return Uni.createFrom().item(serialCommunication::getTelemetry);
+    }
+
+    @POST
+    @Path("/stream")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> stream(
+            @QueryParam("name") String animationName,
+            @QueryParam("rate_hz") @DefaultValue("50") double rateHz
+    ) {
+        // The animation is baked before it is streamed, which keeps the thread busy
+        return Uni.createFrom().item(() -> {
+            if (rateHz <= 0) { return Response.status(Response.Status.BAD_REQUEST).build(); }
+            try {
+                // Each read of the repository returns an animation of its own, which is baked from its start
+                ArmAnimation animation = animationRepository.getAnimationByName(animationName).getAnimation();
+                double[][] frames = animationSampler.bake(animation, rateHz);
+                // The arduino must speak the binary protocol, and play a single stream at a time
+                if (!serialCommunication.streamTrajectory(frames, rateHz)) { return Response.status(Response.Status.CONFLICT).build(); }
+                return Response.ok(true).build();
+            } catch (AnimationNotFoundException | NoSolutionException | IllegalArgumentException e) {
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            }
+        }).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    @POST
+    @Path("/stream/stop")
+    public Uni<Response> stopStream() {
+        return Uni.createFrom().item(() -> {
+            serialCommunication.stopTrajectory();
+            return Response.ok().build();
+        }).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    @GET
+    @Path("/stream-stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<TrajectoryStreamer.Statistics> getStreamStatistics() {
+        return Uni.createFrom().item(serialCommunication::getStreamStatistics);
+    }
+}
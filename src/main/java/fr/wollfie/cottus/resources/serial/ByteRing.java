@@ -0,0 +1,76 @@
+package fr.wollfie.cottus.resources.serial;
+
+import fr.wollfie.cottus.utils.Preconditions;
+
+/**
+ * Fixed-size circular buffer of the bytes received on the serial port. The bytes are read in place, by their
+ * index from the oldest one, and removed from the front once a frame is decoded, so nothing is allocated
+ * or moved after creation
+ */
+public class ByteRing {
+
+    private final byte[] bytes;
+    private final int mask;
+    /** Index in {@link ByteRing#bytes} of the oldest byte */
+    private int head = 0;
+    private int size = 0;
+
+    /** @param capacity The maximum number of bytes held, a power of two */
+    public ByteRing(int capacity) {
+        Preconditions.checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1);
+        this.bytes = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /** @return The number of bytes held */
+    public int size() { return size; }
+
+    /** @return True if no more bytes can be written */
+    public boolean isFull() { return size == bytes.length; }
+
+    /**
+     * Append as many bytes as there is space for
+     * @return The number of bytes appended
+     */
+    public int write(byte[] src, int offset, int length) {
+        int n = Math.min(length, bytes.length - size);
+        int tail = (head + size) & mask;
+        int first = Math.min(n, bytes.length - tail);
+        System.arraycopy(src, offset, bytes, tail, first);
+        System.arraycopy(src, offset + first, bytes, 0, n - first);
+        this.size += n;
+        return n;
+    }
+
+    /** @return The byte at the given index from the oldest one */
+    public byte get(int index) { return bytes[(head + index) & mask]; }
+
+    /** @return The little-endian int16 starting at the given index */
+    public short getShortLE(int index) { return (short) ((get(index) & 0xFF) | (get(index + 1) << 8)); }
+
+    /** @return The little-endian int32 starting at the given index */
+    public int getIntLE(int index) { return (getShortLE(index) & 0xFFFF) | (getShortLE(index + 2) << 16); }
+
+    /** @return The little-endian float32 starting at the given index */
+    public float getFloatLE(int index) { return Float.intBitsToFloat(getIntLE(index)); }
+
+    /** @return The index of the first occurrence of the byte at or after {@code from}, or -1 if there is none */
+    public int indexOf(byte b, int from) {
+        for (int i = from; i < size; i++) { if (get(i) == b) { return i; } }
+        return -1;
+    }
+
+    /** Copy the bytes between the given indices, to read them as text */
+    public void copy(int from, int to, byte[] dst) {
+        for (int i = from; i < to; i++) { dst[i - from] = get(i); }
+    }
+
+    /** Remove the oldest bytes */
+    public void skip(int n) {
+        Preconditions.checkArgument(n >= 0 && n <= size);
+        this.head = (head + n) & mask;
+        this.size -= n;
+    }
+
+    public void clear() { this.skip(size); }
+}
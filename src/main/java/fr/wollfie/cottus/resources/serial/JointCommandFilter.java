@@ -0,0 +1,108 @@
+package fr.wollfie.cottus.resources.serial;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ *     Chooses which joints of a command are worth sending to the arduino. A joint is sent only if its angle
+ *     moved by more than the deadband since it was last sent, so that an idle arm costs no bandwidth and the
+ *     slow drifts are still sent once they add up.
+ * </p>
+ * <p>
+ *     A full command, a keyframe, is sent at least every keyframe interval, and after {@link JointCommandFilter#requestKeyframe()},
+ *     so that the arduino resynchronizes if it lost a command.
+ * </p>
+ */
+public class JointCommandFilter {
+
+    /** Returned by {@link JointCommandFilter#filter} when all the joints must be sent */
+    public static final int KEYFRAME = -1;
+    /** Maximum number of joints of a partial command, one bit each in its mask */
+    public static final int MAX_JOINTS = 16;
+
+    /**
+     * The counters of the filter
+     * @param keyframes The number of full commands
+     * @param deltas The number of partial commands
+     * @param suppressed The number of commands where no joint moved beyond the deadband
+     */
+    public record Statistics(long keyframes, long deltas, long suppressed) { }
+
+    private final double deadbandRad;
+    private final long keyframeIntervalNs;
+
+    // Only used by the thread of the writer
+    private double[] lastSent;
+    private long lastKeyframeNs;
+    /** A keyframe was requested, and none has been sent since */
+    private boolean keyframePending = false;
+    private final AtomicBoolean keyframeRequested = new AtomicBoolean(true);
+
+    private volatile long keyframes = 0;
+    private volatile long deltas = 0;
+    private volatile long suppressed = 0;
+
+    /**
+     * @param deadbandRad The change of angle below which a joint is not sent
+     * @param keyframeIntervalMs The maximum time between two full commands
+     */
+    public JointCommandFilter(double deadbandRad, long keyframeIntervalMs) {
+        this.deadbandRad = deadbandRad;
+        this.keyframeIntervalNs = TimeUnit.MILLISECONDS.toNanos(keyframeIntervalMs);
+    }
+
+    /** Send all the joints of the next command */
+    public void requestKeyframe() { this.keyframeRequested.set(true); }
+
+    /**
+     * Choose the joints of the command to send. They are only remembered as sent by {@link JointCommandFilter#commit},
+     * so that a command which failed to be sent is sent again
+     * @param anglesRad The angles of the joints of the command
+     * @param nowNs The current time of {@link System#nanoTime()}
+     * @return {@link JointCommandFilter#KEYFRAME} if all the joints must be sent, otherwise the mask of
+     * the joints to send, the bit {@code i} for the joint {@code i}, 0 if none of them
+     */
+    public int filter(List<Double> anglesRad, long nowNs) {
+        if (keyframeRequested.getAndSet(false)) { this.keyframePending = true; }
+        if (keyframePending || lastSent == null || lastSent.length != anglesRad.size()
+                || anglesRad.size() > MAX_JOINTS || nowNs - lastKeyframeNs >= keyframeIntervalNs) {
+            return KEYFRAME;
+        }
+
+        int mask = 0;
+        for (int i = 0; i < anglesRad.size(); i++) {
+            if (Math.abs(anglesRad.get(i) - lastSent[i]) > deadbandRad) { mask |= 1 << i; }
+        }
+        if (mask == 0) {
+            this.suppressed++;
+            return 0;
+        }
+        // A partial command with all the joints is larger than the full one
+        return mask == (1 << anglesRad.size()) - 1 ? KEYFRAME : mask;
+    }
+
+    /**
+     * Remember the joints of a command as sent, once it was written
+     * @param anglesRad The angles of the joints of the command
+     * @param jointMask The joints sent, {@link JointCommandFilter#KEYFRAME} if all of them were
+     * @param nowNs The time of {@link System#nanoTime()} given to {@link JointCommandFilter#filter}
+     */
+    public void commit(List<Double> anglesRad, int jointMask, long nowNs) {
+        if (jointMask == KEYFRAME) {
+            if (lastSent == null || lastSent.length != anglesRad.size()) { this.lastSent = new double[anglesRad.size()]; }
+            for (int i = 0; i < anglesRad.size(); i++) { lastSent[i] = anglesRad.get(i); }
+            this.lastKeyframeNs = nowNs;
+            this.keyframePending = false;
+            this.keyframes++;
+        } else {
+            for (int i = 0; i < anglesRad.size(); i++) {
+                if ((jointMask & (1 << i)) != 0) { lastSent[i] = anglesRad.get(i); }
+            }
+            this.deltas++;
+        }
+    }
+
+    public Statistics getStatistics() { return new Statistics(keyframes, deltas, suppressed); }
+}
@@ -0,0 +1,159 @@
+package fr.wollfie.cottus.resources.serial;
+
+import io.quarkus.logging.Log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * <p>
+ *     Keeps the link to the arduino open from a thread of its own. It connects when started, and whenever the
+ *     link is reported lost it closes it and connects again, waiting between the failed attempts for a backoff
+ *     that doubles up to a maximum. A successful attempt resets the backoff, so that a short outage, e.g. the
+ *     arduino resetting, is recovered within the first backoffs.
+ * </p>
+ * <p>
+ *     The commands submitted while the link is down are dropped by the caller, they would be outdated once it
+ *     is back up.
+ * </p>
+ */
+public class LinkSupervisor {
+
+    /**
+     * The counters of the supervisor
+     * @param connected True if the link is up
+     * @param disconnections The number of times the link was lost
+     * @param attempts The number of connection attempts
+     * @param reconnections The number of times the link was back up after being lost
+     * @param commandsDropped The number of commands dropped while the link was down
+     * @param lastOutageMs The time between the last loss of the link and its reconnection
+     */
+    public record Statistics(
+            boolean connected,
+            long disconnections,
+            long attempts,
+            long reconnections,
+            long commandsDropped,
+            double lastOutageMs
+    ) { }
+
+    private final BooleanSupplier connector;
+    private final Runnable disconnector;
+    private final long initialBackoffNs;
+    private final long maxBackoffNs;
+    private final Thread thread;
+    private volatile boolean running;
+
+    private final AtomicBoolean connected = new AtomicBoolean(false);
+    /** Set when the link is lost, including during an attempt that then counts as failed */
+    private final AtomicBoolean lost = new AtomicBoolean(false);
+    private final AtomicLong disconnections = new AtomicLong();
+    private final AtomicLong commandsDropped = new AtomicLong();
+    // Only written by the thread of the supervisor
+    private volatile long attempts = 0;
+    private volatile long reconnections = 0;
+    private volatile long lostAtNs = 0;
+    private volatile long lastOutageNs = 0;
+
+    /**
+     * @param name The name of the thread
+     * @param initialBackoffMs The time waited after the first failed attempt
+     * @param maxBackoffMs The maximum time waited between two attempts
+     * @param connector Opens the link and starts the handshake, returns false if the link couldn't be opened
+     * @param disconnector Closes the link, called before each attempt
+     */
+    public LinkSupervisor(String name, long initialBackoffMs, long maxBackoffMs, BooleanSupplier connector, Runnable disconnector) {
+        if (initialBackoffMs <= 0 || maxBackoffMs < initialBackoffMs) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid backoff from %d to %d ms", initialBackoffMs, maxBackoffMs
+            ));
+        }
+        this.connector = connector;
+        this.disconnector = disconnector;
+        this.initialBackoffNs = TimeUnit.MILLISECONDS.toNanos(initialBackoffMs);
+        this.maxBackoffNs = TimeUnit.MILLISECONDS.toNanos(maxBackoffMs);
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+    }
+
+    /** Connect, then keep the link open until stopped */
+    public void start() {
+        if (running) { return; }
+        this.running = true;
+        this.thread.start();
+    }
+
+    public void stop() {
+        this.running = false;
+        LockSupport.unpark(thread);
+        try { thread.join(TimeUnit.SECONDS.toMillis(1)); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    /** @return True if the link is up */
+    public boolean isConnected() { return connected.get(); }
+
+    /** The link was lost, it is opened again from the thread of the supervisor. Never blocks */
+    public void onLinkLost() {
+        this.lost.set(true);
+        if (connected.compareAndSet(true, false)) {
+            this.disconnections.incrementAndGet();
+            this.lostAtNs = System.nanoTime();
+            Log.warn("Lost the link to the arm, reconnecting...");
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /** A command was dropped because the link is down */
+    public void onCommandDropped() { this.commandsDropped.incrementAndGet(); }
+
+    public Statistics getStatistics() {
+        return new Statistics(
+                connected.get(), disconnections.get(), attempts, reconnections,
+                commandsDropped.get(), lastOutageNs / 1e6
+        );
+    }
+
+    private void run() {
+        long backoffNs = initialBackoffNs;
+        while (running) {
+            if (connected.get()) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            this.disconnector.run();
+            this.lost.set(false);
+            this.attempts++;
+            boolean success;
+            try { success = connector.getAsBoolean() && !lost.get(); }
+            catch (RuntimeException e) {
+                Log.warnf("Cannot connect to the arm : %s", e.getMessage());
+                success = false;
+            }
+
+            if (success) {
+                this.connected.set(true);
+                if (lostAtNs != 0) {
+                    this.reconnections++;
+                    this.lastOutageNs = System.nanoTime() - lostAtNs;
+                    this.lostAtNs = 0;
+                    Log.infof("Reconnected to the arm after %.0f ms", lastOutageNs / 1e6);
+                }
+                backoffNs = initialBackoffNs;
+                // The link may have been lost between the end of the attempt and now
+                if (lost.get()) { this.onLinkLost(); }
+                continue;
+            }
+
+            // Wait for the backoff, or until stopped
+            long deadline = System.nanoTime() + backoffNs;
+            long remaining;
+            while (running && (remaining = deadline - System.nanoTime()) > 0) { LockSupport.parkNanos(this, remaining); }
+            backoffNs = Math.min(backoffNs * 2, maxBackoffNs);
+        }
+    }
+}
@@ -12,6 +12,7 @@ import io.quarkus.logging.Log;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Predicate;
 
@@ -23,6 +24,12 @@ public class SerialArmCommunication implements ArmCommunicationService {
     
     private double motorRadPerSec = 0;
     @Override public double getMotorSpeed() { return this.motorRadPerSec; }
+
+    private List<Double> motorRadPerSecPerJoint = List.of();
+    @Override public List<Double> getMotorSpeeds() {
+        if (!this.motorRadPerSecPerJoint.isEmpty()) { return this.motorRadPerSecPerJoint; }
+        return Collections.nCopies(this.angles.size(), this.motorRadPerSec);
+    }
     
 
     private List<Double> angles = List.of(0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
@@ -38,7 +45,7 @@ public class SerialArmCommunication implements ArmCommunicationService {
                 .map(Joint::getAngleRad).toList();
         
         // Send the joint angles to the arduino
-        serial.writeUnreliably(this.toEspData(jointAngles));
+        serial.submitAngles(jointAngles);
     }
 
     @Override
@@ -58,16 +65,12 @@ public class SerialArmCommunication implements ArmCommunicationService {
 
     private void onMotorSpeedReceived(MotorSpeedMessage motorSpeed) {
         this.motorRadPerSec = motorSpeed.getRadPerSec();
+        this.motorRadPerSecPerJoint = motorSpeed.getRadPerSecPerMotor();
         
         Log.infof("Motor speed received : %5.3f", motorRadPerSec);
         // When the arm sends the motor speed, it signals the arm is ready to take commands 
         this.armStateService.setReady(true);
     }
-    
-    /** @return The arm angles formatted as a string */
-    private String toEspData(List<Double> armAngles) {
-        return new AnglesMessage(armAngles).getMessage();
-    }
 
     
 }
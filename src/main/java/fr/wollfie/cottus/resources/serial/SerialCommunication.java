@@ -1,123 +1,288 @@
 package fr.wollfie.cottus.resources.serial;
 
-import com.fazecast.jSerialComm.SerialPort;
-import com.fazecast.jSerialComm.SerialPortDataListener;
-import com.fazecast.jSerialComm.SerialPortDataListenerWithExceptions;
-import com.fazecast.jSerialComm.SerialPortEvent;
-import fr.wollfie.cottus.resources.serial.msg.SerialMessage;
+import fr.wollfie.cottus.resources.serial.binary.BinaryFrameEncoder;
+import fr.wollfie.cottus.resources.serial.msg.AnglesMessage;
+import fr.wollfie.cottus.resources.serial.msg.MotorSpeedMessage;
+import fr.wollfie.cottus.resources.serial.msg.ProtocolMessage;
+import fr.wollfie.cottus.resources.serial.msg.SerialLogMessage;
+import fr.wollfie.cottus.resources.serial.transport.ArmTransport;
 import fr.wollfie.cottus.services.ArmCommunicationService;
 import io.quarkus.logging.Log;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 /** 
- * Serial Connection with the Arduino
+ * Connection with the Arduino, through the configured {@link ArmTransport}. Encodes the commands sent
+ * to the arm and decodes its messages, in the protocol negotiated when connecting
  * */
 @ApplicationScoped
 public class SerialCommunication {
 
-    private static long lastPacketMs = System.currentTimeMillis();
-    private static final long PACKET_FREQUENCY_MS = 2000;
-    SerialPort activePort;
-    SerialPort[] ports = SerialPort.getCommPorts();
+    @Inject ArmCommunicationService armCommunicationService;
+    @Inject ArmTransport transport;
+
+    @ConfigProperty(name = "cottus.config.serial.protocol") SerialProtocol preferredProtocol;
+    @ConfigProperty(name = "cottus.config.serial.send-rate-hz") double sendRateHz;
+    @ConfigProperty(name = "cottus.config.serial.deadband-rad") double deadbandRad;
+    @ConfigProperty(name = "cottus.config.serial.keyframe-interval-ms") long keyframeIntervalMs;
+    @ConfigProperty(name = "cottus.config.serial.stream.window") int streamWindow;
+    @ConfigProperty(name = "cottus.config.serial.stream.waypoints-per-segment") int streamWaypointsPerSegment;
+    @ConfigProperty(name = "cottus.config.serial.stream.retransmit-timeout-ms") long streamRetransmitTimeoutMs;
+    @ConfigProperty(name = "cottus.config.serial.stream.lead-ms") int streamLeadMs;
+    @ConfigProperty(name = "cottus.config.serial.telemetry.target-tolerance-rad") double targetToleranceRad;
+    @ConfigProperty(name = "cottus.config.serial.reconnect.initial-backoff-ms") long reconnectInitialBackoffMs;
+    @ConfigProperty(name = "cottus.config.serial.reconnect.max-backoff-ms") long reconnectMaxBackoffMs;
     
-    private SerialMessage.Builder messageBuilder = SerialMessage.buildNew();
+    private SerialWriter writer;
+    private JointCommandFilter commandFilter;
+    private TrajectoryStreamer streamer;
+    private SerialLinkTelemetry telemetry;
+    private LinkSupervisor supervisor;
     
-    @Inject ArmCommunicationService armCommunicationService;
-    private static final int BAUD_RATE = 115200;
+    /** Numbers all the frames sent on the link, guarded by itself until the frame it encoded is sent */
+    private final BinaryFrameEncoder frameEncoder = new BinaryFrameEncoder();
+    private final SerialReceiver receiver = new SerialReceiver(new SerialFrameListener() {
+        @Override
+        public void onAngles(double[] anglesRad, int count, int sequence) {
+            long now = System.nanoTime();
+            telemetry.onMessageReceived(now);
+            telemetry.onFeedback(anglesRad, count, now);
+            armCommunicationService.onMsgReceived(new AnglesMessage(toList(anglesRad, count)));
+        }
 
-    /** @return All the serial ports available for this device */
-    public List<SerialPort> getAllPorts() {
-        return Arrays.asList(this.ports);
-    }
+        @Override
+        public void onMotorSpeeds(double[] radPerSec, int count, int sequence) {
+            telemetry.onMessageReceived(System.nanoTime());
+            armCommunicationService.onMsgReceived(new MotorSpeedMessage(toList(radPerSec, count)));
+        }
 
-    private void tryReconnect() {
-        Log.info("Disconnected !");
-    }
-    
-    /**
-     * Start the connection with the specified Serial Port
-     * @param port The serial port to connect to
-     */
-    public void connectTo(SerialPort port) {
-        this.activePort = port;
-        
-        if (activePort.isOpen()) {
-            Log.errorf("Failed to connect to port %s because it is already opened by another device!",
-                    activePort.getPortDescription());
-            return;
-        } else if (!activePort.openPort()) {
-            Log.errorf("Failed to connect to port %s for unknown reasons...",
-                    activePort.getPortDescription());
-            return;
-        } else { Log.infof("%s port opened.", activePort.getPortDescription()); }
+        @Override
+        public void onMotorSpeed(double radPerSec) {
+            telemetry.onMessageReceived(System.nanoTime());
+            armCommunicationService.onMsgReceived(new MotorSpeedMessage(radPerSec));
+        }
 
-        if (!activePort.setBaudRate(BAUD_RATE)){
-            Log.errorf("%d bauds is disallowed by this system !", BAUD_RATE);
-            return;
+        @Override
+        public void onLog(String message) {
+            telemetry.onMessageReceived(System.nanoTime());
+            armCommunicationService.onMsgReceived(new SerialLogMessage(message));
         }
-        SerialCommunication communication = this;
-        
-        boolean success = activePort.addDataListener(new SerialPortDataListenerWithExceptions() {
 
-            @Override
-            public void catchException(Exception e) { Log.error(e); }
+        @Override
+        public void onProtocol(int version) {
+            telemetry.onMessageReceived(System.nanoTime());
+            onProtocolAnswer(version);
+        }
 
-            @Override
-            public void serialEvent(SerialPortEvent event) {
-                if (event.getEventType() == SerialPort.LISTENING_EVENT_DATA_AVAILABLE) {
-                    
-                    byte[] buffer = new byte[activePort.bytesAvailable()];
-                    activePort.readBytes(buffer, activePort.bytesAvailable());
-                    String msg = new String(buffer);
+        @Override
+        public void onSegmentAck(int segmentId) {
+            telemetry.onMessageReceived(System.nanoTime());
+            streamer.onAck(segmentId);
+        }
+    });
+    
+    /** @return The protocol in use with the arduino, text until it accepts the binary one */
+    public SerialProtocol getProtocol() { return receiver.getProtocol(); }
+    
+    /** @return The number of bytes and messages received from the arduino that couldn't be decoded */
+    public long getFramingErrors() { return receiver.getFramingErrors(); }
 
-                    messageBuilder.append(msg);
-                    
-                    if (messageBuilder.isComplete()) {
-                        armCommunicationService.onMsgReceived(communication.messageBuilder.toMsg());
-                        messageBuilder = SerialMessage.buildNew();
-                    }
-                } else if (
-                        event.getEventType() == SerialPort.LISTENING_EVENT_PORT_DISCONNECTED
-                        || event.getEventType() == SerialPort.LISTENING_EVENT_TIMED_OUT
-                ) { communication.tryReconnect(); }
+    @PostConstruct
+    void init() { 
+        this.telemetry = new SerialLinkTelemetry(targetToleranceRad);
+        this.writer = new SerialWriter("serial-writer", transport.getBytesPerSecond(), sendRateHz, this::sendAngles);
+        this.commandFilter = new JointCommandFilter(deadbandRad, keyframeIntervalMs);
+        this.streamer = new TrajectoryStreamer(
+                new TrajectoryStreamer.Settings(streamWindow, streamWaypointsPerSegment, streamRetransmitTimeoutMs, streamLeadMs),
+                this::sendFrame,
+                // The arm may not be where the next command expects it, all the joints are sent again
+                commandFilter::requestKeyframe
+        );
+        this.transport.setListener(new ArmTransport.Listener() {
+            @Override
+            public void onBytes(byte[] data, int offset, int length) {
+                telemetry.onBytesReceived(length, System.nanoTime());
+                receiver.feed(data, offset, length);
             }
 
             @Override
-            public int getListeningEvents() {
-                return SerialPort.LISTENING_EVENT_DATA_AVAILABLE;
-            }
+            public void onDisconnected() { supervisor.onLinkLost(); }
         });
+        this.supervisor = new LinkSupervisor(
+                "serial-link-supervisor", reconnectInitialBackoffMs, reconnectMaxBackoffMs,
+                this::open, transport::disconnect
+        );
+    }
+    
+    /** Connect to the arm in the background, and connect again whenever the link is lost */
+    public void connect() {
+        this.supervisor.start();
+        this.writer.start();
+    }
+    
+    /** 
+     * Open the transport to the arm, then offer it the binary protocol if it is preferred. Called by the 
+     * {@link LinkSupervisor} for each attempt
+     * @return False if the transport couldn't be opened
+     */
+    private boolean open() {
+        // The arm may have moved or restarted during the outage, nothing sent before can be relied on
+        this.streamer.stop();
+        this.receiver.reset();
+        this.commandFilter.requestKeyframe();
+        if (!transport.connect()) {
+            Log.warnf("Failed to connect to the arm through the %s", transport.getDescription());
+            return false;
+        }
+        Log.infof("Connected to the arm through the %s", transport.getDescription());
         
-        if (!success) { Log.error("An error occurred during the registration of the port event listener..."); }
-        else { Log.info("Successfully connected to the port and registered the event listener..."); }
+        if (preferredProtocol == SerialProtocol.BINARY) {
+            // The arduino answers with the same message if its firmware supports the binary protocol
+            this.write(new ProtocolMessage(ProtocolMessage.BINARY_VERSION).getMessage().getBytes(StandardCharsets.UTF_8));
+        }
+        return true;
+    }
+    
+    /** 
+     * The arduino answered the offer of the binary protocol, the bytes it sends next are frames. The commands
+     * sent from now on are frames too, the arduino switches at the first one it receives
+     */
+    private void onProtocolAnswer(int version) {
+        if (preferredProtocol == SerialProtocol.BINARY && version == ProtocolMessage.BINARY_VERSION) {
+            this.receiver.setProtocol(SerialProtocol.BINARY);
+            this.commandFilter.requestKeyframe();
+            Log.infof("Switched to the binary protocol version %d", version);
+        } else { Log.warnf("The arduino offered the unsupported protocol version %d", version); }
     }
     
     @PreDestroy
     void cleanup() {
-        if (this.activePort != null && this.activePort.isOpen()) {
-            if (!this.activePort.closePort()) {
-                Log.errorf("Failed to close %s on cleanup", activePort);
+        this.supervisor.stop();
+        this.streamer.stop();
+        this.writer.stop();
+        this.transport.disconnect();
+    }
+    
+    /**
+     * Send the angles of the joints to the arduino, in the protocol in use. Never blocks : the angles are
+     * sent by the {@link SerialWriter}, and replace those not sent yet
+     * @param anglesRad The angles of the joints in radians
+     */
+    public void submitAngles(List<Double> anglesRad) { this.writer.submit(anglesRad); }
+    
+    /** @return The counters of the writer of the commands */
+    public SerialWriterStatistics getWriterStatistics() { return this.writer.getStatistics(); }
+    
+    /**
+     * Stream the trajectory to the arduino, which plays it on its own clock. The joint commands are not
+     * sent while the trajectory is streamed
+     * @param frames The angles of the joints at evenly spaced times
+     * @param rateHz The number of frames per second
+     * @return False if the arm is not connected, the binary protocol is not in use or another trajectory is being streamed
+     */
+    public boolean streamTrajectory(double[][] frames, double rateHz) {
+        if (!supervisor.isConnected() || receiver.getProtocol() != SerialProtocol.BINARY) { return false; }
+        return this.streamer.start(frames, rateHz);
+    }
+    
+    /** Stop the trajectory being streamed, the arm stops where it is */
+    public void stopTrajectory() { this.streamer.stop(); }
+    
+    /** @return The counters of the current or last trajectory stream */
+    public TrajectoryStreamer.Statistics getStreamStatistics() { return this.streamer.getStatistics(); }
+    
+    /** @return The traffic with the arduino and the latency from the commands to the feedback reaching them */
+    public SerialLinkTelemetry.Snapshot getTelemetry() {
+        return this.telemetry.snapshot(
+                receiver.getFramingErrors(),
+                writer.getStatistics().superseded(),
+                commandFilter.getStatistics().suppressed(),
+                System.nanoTime()
+        );
+    }
+    
+    /** @return The counters of the losses of the link and the reconnections */
+    public LinkSupervisor.Statistics getLinkStatistics() { return this.supervisor.getStatistics(); }
+    
+    /** @return The counters of the keyframes and partial commands sent */
+    public JointCommandFilter.Statistics getCommandFilterStatistics() { return this.commandFilter.getStatistics(); }
+    
+    /** 
+     * Send the joints that moved beyond the deadband, all of them for a keyframe. The text protocol
+     * only has full commands, they are sent if any joint moved 
+     * @return The number of bytes written, called by the {@link SerialWriter} only 
+     */
+    private int sendAngles(List<Double> anglesRad) {
+        // The commands are dropped during an outage, the arm only needs the latest once it is back
+        if (!supervisor.isConnected()) {
+            this.supervisor.onCommandDropped();
+            return 0;
+        }
+        if (streamer.isStreaming()) { return 0; }
+        long now = System.nanoTime();
+        int jointMask = commandFilter.filter(anglesRad, now);
+        if (jointMask == 0) { return 0; }
+        
+        int bytes;
+        int sequence = -1;
+        if (receiver.getProtocol() == SerialProtocol.BINARY) {
+            synchronized (frameEncoder) {
+                ByteBuffer frame = jointMask == JointCommandFilter.KEYFRAME ? null : frameEncoder.encodeChangedAngles(anglesRad, jointMask);
+                if (frame == null) {
+                    frame = frameEncoder.encodeAngles(anglesRad);
+                    jointMask = JointCommandFilter.KEYFRAME;
+                }
+                bytes = this.send(frame.array(), 0, frame.limit());
+                sequence = frameEncoder.getLastSequence();
             }
+        } else {
+            byte[] data = new AnglesMessage(anglesRad).getMessage().getBytes(StandardCharsets.UTF_8);
+            bytes = this.send(data, 0, data.length);
+            jointMask = JointCommandFilter.KEYFRAME;
         }
+        if (bytes > 0) {
+            // A command which failed to be sent is sent again with the next one
+            this.commandFilter.commit(anglesRad, jointMask, now);
+            this.telemetry.onCommandSent(sequence, anglesRad, System.nanoTime());
+        }
+        return bytes;
     }
     
-    /**
-     * Write data to the arduino. This must be redundant data as it may be dropped 
-     * if a packet was just sent 
-     * @param data The data to send to the Arduino
+    private void write(byte[] data) { this.send(data, 0, data.length); }
+    
+    /** 
+     * Encode a frame with the encoder of the link and send it, so that the frames leave in the order of 
+     * their sequence numbers whichever thread sends them
+     * @return The number of bytes written to the transport, or -1 if it failed
      */
-    public void writeUnreliably(String data) {
-        long nowMs = System.currentTimeMillis();
-        if (nowMs - lastPacketMs > PACKET_FREQUENCY_MS && this.activePort != null) {
-            byte[] toWrite = data.getBytes(StandardCharsets.UTF_8);
-            activePort.writeBytes(toWrite, toWrite.length);
-            lastPacketMs = nowMs;
+    private int sendFrame(Function<BinaryFrameEncoder, ByteBuffer> encoding) {
+        synchronized (frameEncoder) {
+            ByteBuffer frame = encoding.apply(frameEncoder);
+            return this.send(frame.array(), 0, frame.limit());
         }
     }
+    
+    /** @return The number of bytes written to the transport, or -1 if it failed */
+    private int send(byte[] data, int offset, int length) {
+        int bytes = transport.send(data, offset, length);
+        if (bytes > 0) { this.telemetry.onSent(bytes, System.nanoTime()); }
+        // Not every transport reports the loss of the link, a failed write of an open link reveals it
+        else if (bytes < 0 && supervisor.isConnected()) { this.supervisor.onLinkLost(); }
+        return bytes;
+    }
+    
+    private static List<Double> toList(double[] values, int count) {
+        List<Double> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) { list.add(values[i]); }
+        return list;
+    }
 }
@@ -0,0 +1,51 @@
+package fr.wollfie.cottus.resources.serial;
+
+/**
+ * Receives the messages decoded from the serial port, whatever their protocol. The arrays are reused for
+ * each message, the listener must copy what it keeps before returning
+ */
+public interface SerialFrameListener {
+
+    /** 
+     * The arduino reported the angles of its joints, in radians 
+     * @param sequence The sequence number of the binary frame, -1 for a text message
+     */
+    void onAngles(double[] anglesRad, int count, int sequence);
+
+    /**
+     * Angles of some of the joints were received, only sent by the server, ignored by default
+     * @param jointMask The bit {@code i} is set if the joint {@code i} is included
+     * @param anglesRad The angles of the included joints in order, in radians
+     */
+    default void onChangedAngles(int jointMask, double[] anglesRad, int count, int sequence) { }
+
+    /** A trajectory stream starts after the given delay, only sent by the server, ignored by default */
+    default void onStreamStart(int leadMs) { }
+
+    /**
+     * A segment of a trajectory stream was received, only sent by the server, ignored by default
+     * @param segmentId The 16 lowest bits of the id of the segment
+     * @param startUs The time of its first waypoint since the start of the playback
+     * @param stepUs The time between two waypoints
+     * @param anglesRad The angles of the joints of each waypoint, one waypoint after the other
+     */
+    default void onSegment(int segmentId, long startUs, long stepUs, int nbWaypoints, int nbJoints, double[] anglesRad) { }
+
+    /** The trajectory stream stops, only sent by the server, ignored by default */
+    default void onStreamStop() { }
+
+    /** The arduino received the segments of the trajectory stream up to the given one, ignored by default */
+    default void onSegmentAck(int segmentId) { }
+
+    /** The arduino reported the speed of each of its motors, in radians per second */
+    void onMotorSpeeds(double[] radPerSec, int count, int sequence);
+
+    /** The arduino reported a speed common to all of its motors, in radians per second */
+    void onMotorSpeed(double radPerSec);
+
+    /** The arduino logged a message */
+    void onLog(String message);
+
+    /** The arduino answered the offer of the binary protocol with the given version */
+    void onProtocol(int version);
+}
@@ -0,0 +1,259 @@
+package fr.wollfie.cottus.resources.serial;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *     Counters of the traffic with the arduino : bytes and messages sent and received, as totals and per second
+ *     over the last minute, and the latency from a command to the feedback showing the arm reached it.
+ * </p>
+ * <p>
+ *     The latest commands sent are kept with their sequence number and the time they were sent. When the angles
+ *     reported by the arduino are all within the tolerance of one of them, the newest such command is reached :
+ *     its latency is recorded, and the older ones are dropped. Commands that drop out of the history without being
+ *     reached are counted as unreached, which happens when the arm never settles on an intermediate target.
+ * </p>
+ * <p>
+ *     The counters are kept here rather than in a metrics registry, the server has no metrics extension : their
+ *     {@link SerialLinkTelemetry.Snapshot} is served as JSON on {@code /api/serial-link/telemetry}.
+ * </p>
+ */
+public class SerialLinkTelemetry {
+
+    /** Number of seconds of the rates */
+    private static final int RATE_WINDOW_SECS = 60;
+    /** Number of commands waiting for the feedback that reaches them */
+    private static final int PENDING_COMMANDS = 32;
+    /** Upper bounds of the buckets of the latency histogram, the last bucket holds the longer latencies */
+    private static final double[] LATENCY_BUCKETS_MS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+    /**
+     * A quantity counted per second
+     * @param total The total since the start
+     * @param lastSecond The count of the last complete second
+     * @param meanPerSecond The mean count per second over the window
+     * @param maxPerSecond The maximum count of a second of the window
+     */
+    public record Rate(long total, long lastSecond, double meanPerSecond, long maxPerSecond) { }
+
+    /**
+     * The distribution of the latencies from a command to the feedback reaching it
+     * @param count The number of commands reached
+     * @param meanMs The mean latency
+     * @param maxMs The maximum latency
+     * @param p50Ms The median latency, to the upper bound of its bucket
+     * @param p95Ms The 95th percentile of the latency, to the upper bound of its bucket
+     * @param p99Ms The 99th percentile of the latency, to the upper bound of its bucket
+     * @param bucketsMs The upper bounds of the buckets of the histogram
+     * @param counts The number of latencies in each bucket, the last one counting those above the last bound
+     */
+    public record Latency(
+            long count, double meanMs, double maxMs, double p50Ms, double p95Ms, double p99Ms,
+            List<Double> bucketsMs, List<Long> counts
+    ) { }
+
+    /**
+     * The state of the link
+     * @param bytesSent The bytes written to the transport
+     * @param messagesSent The messages written to the transport
+     * @param bytesReceived The bytes read from the transport
+     * @param messagesReceived The messages decoded from the received bytes
+     * @param parseFailures The number of received bytes and messages that couldn't be decoded
+     * @param commandsSuperseded The number of commands replaced by a newer one before being sent
+     * @param commandsSuppressed The number of commands not sent because no joint moved beyond the deadband
+     * @param commandsUnreached The number of sent commands never reported as reached by the arduino
+     * @param lastReachedSequence The sequence number of the last command reached, -1 if none or not known
+     * @param latency The latencies from a command to the feedback reaching it
+     */
+    public record Snapshot(
+            Rate bytesSent, Rate messagesSent, Rate bytesReceived, Rate messagesReceived,
+            long parseFailures, long commandsSuperseded, long commandsSuppressed, long commandsUnreached,
+            int lastReachedSequence, Latency latency
+    ) { }
+
+    private final double toleranceRad;
+
+    private final RateMeter bytesSent = new RateMeter();
+    private final RateMeter messagesSent = new RateMeter();
+    private final RateMeter bytesReceived = new RateMeter();
+    private final RateMeter messagesReceived = new RateMeter();
+
+    // Guarded by this
+    private final int[] pendingSequences = new int[PENDING_COMMANDS];
+    private final long[] pendingSentNs = new long[PENDING_COMMANDS];
+    private final double[][] pendingTargets = new double[PENDING_COMMANDS][];
+    /** Index of the next pending command, the pending commands are the ones before it */
+    private int pendingHead = 0;
+    private int pendingCount = 0;
+    private long unreached = 0;
+    private int lastReachedSequence = -1;
+    private final long[] latencyCounts = new long[LATENCY_BUCKETS_MS.length + 1];
+    private long latencyTotalNs = 0;
+    private long latencyMaxNs = 0;
+
+    /** @param toleranceRad The distance of each joint to its target under which a command is reached */
+    public SerialLinkTelemetry(double toleranceRad) { this.toleranceRad = toleranceRad; }
+
+    /** Bytes were written to the transport, as one message */
+    public void onSent(int bytes, long nowNs) {
+        this.bytesSent.add(bytes, nowNs);
+        this.messagesSent.add(1, nowNs);
+    }
+
+    /** Bytes were read from the transport */
+    public void onBytesReceived(int bytes, long nowNs) { this.bytesReceived.add(bytes, nowNs); }
+
+    /** A message was decoded from the received bytes */
+    public void onMessageReceived(long nowNs) { this.messagesReceived.add(1, nowNs); }
+
+    /**
+     * A command was sent, it waits for the feedback reaching it
+     * @param sequence The sequence number of its frame, -1 if it has none
+     * @param anglesRad The angles it commands
+     */
+    public synchronized void onCommandSent(int sequence, List<Double> anglesRad, long nowNs) {
+        if (pendingCount == PENDING_COMMANDS) {
+            this.unreached++;
+            this.pendingCount--;
+        }
+        double[] target = pendingTargets[pendingHead];
+        if (target == null || target.length != anglesRad.size()) { target = pendingTargets[pendingHead] = new double[anglesRad.size()]; }
+        for (int i = 0; i < target.length; i++) { target[i] = anglesRad.get(i); }
+        this.pendingSequences[pendingHead] = sequence;
+        this.pendingSentNs[pendingHead] = nowNs;
+        this.pendingHead = (pendingHead + 1) % PENDING_COMMANDS;
+        this.pendingCount++;
+    }
+
+    /** The arduino reported the angles of its joints, which may reach one of the pending commands */
+    public synchronized void onFeedback(double[] anglesRad, int count, long nowNs) {
+        // From the newest to the oldest, a command reached makes the older ones obsolete
+        for (int k = 1; k <= pendingCount; k++) {
+            int index = Math.floorMod(pendingHead - k, PENDING_COMMANDS);
+            if (!reached(pendingTargets[index], anglesRad, count)) { continue; }
+
+            this.recordLatency(nowNs - pendingSentNs[index]);
+            this.lastReachedSequence = pendingSequences[index];
+            this.unreached += pendingCount - k;
+            this.pendingCount = k - 1;
+            return;
+        }
+    }
+
+    private boolean reached(double[] target, double[] anglesRad, int count) {
+        if (count < target.length) { return false; }
+        for (int i = 0; i < target.length; i++) {
+            if (Math.abs(target[i] - anglesRad[i]) > toleranceRad) { return false; }
+        }
+        return true;
+    }
+
+    private void recordLatency(long latencyNs) {
+        double latencyMs = latencyNs / 1e6;
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS_MS.length && latencyMs > LATENCY_BUCKETS_MS[bucket]) { bucket++; }
+        this.latencyCounts[bucket]++;
+        this.latencyTotalNs += latencyNs;
+        this.latencyMaxNs = Math.max(latencyMaxNs, latencyNs);
+    }
+
+    /**
+     * @param parseFailures The number of received bytes and messages that couldn't be decoded
+     * @param commandsSuperseded The number of commands replaced before being sent
+     * @param commandsSuppressed The number of commands not sent because no joint moved enough
+     * @return The state of the link
+     */
+    public Snapshot snapshot(long parseFailures, long commandsSuperseded, long commandsSuppressed, long nowNs) {
+        long unreachedNow;
+        int lastSequence;
+        Latency latency;
+        synchronized (this) {
+            unreachedNow = unreached;
+            lastSequence = lastReachedSequence;
+            latency = this.latency();
+        }
+        return new Snapshot(
+                bytesSent.snapshot(nowNs), messagesSent.snapshot(nowNs),
+                bytesReceived.snapshot(nowNs), messagesReceived.snapshot(nowNs),
+                parseFailures, commandsSuperseded, commandsSuppressed, unreachedNow, lastSequence, latency
+        );
+    }
+
+    private Latency latency() {
+        long count = 0;
+        for (long c : latencyCounts) { count += c; }
+        double maxMs = latencyMaxNs / 1e6;
+        return new Latency(
+                count, count == 0 ? 0 : latencyTotalNs / 1e6 / count, maxMs,
+                percentile(0.50, count, maxMs), percentile(0.95, count, maxMs), percentile(0.99, count, maxMs),
+                Arrays.stream(LATENCY_BUCKETS_MS).boxed().toList(),
+                Arrays.stream(latencyCounts).boxed().toList()
+        );
+    }
+
+    /** @return The upper bound of the bucket holding the percentile, the maximum for the last bucket */
+    private double percentile(double p, long count, double maxMs) {
+        if (count == 0) { return 0; }
+        long rank = (long) Math.ceil(p * count);
+        long cumulated = 0;
+        for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+            cumulated += latencyCounts[i];
+            if (cumulated >= rank) { return Math.min(LATENCY_BUCKETS_MS[i], maxMs); }
+        }
+        return maxMs;
+    }
+
+// //======================================================================================\\
+// ||                                                                                      ||
+// ||                                       RATES                                          ||
+// ||                                                                                      ||
+// \\======================================================================================//
+
+    /** Counts per second over the last {@link SerialLinkTelemetry#RATE_WINDOW_SECS} seconds */
+    private static final class RateMeter {
+        private final long[] perSecond = new long[RATE_WINDOW_SECS + 1];
+        private boolean started = false;
+        private long firstSecond;
+        private long currentSecond;
+        private long total;
+
+        synchronized void add(long count, long nowNs) {
+            this.roll(nowNs);
+            this.perSecond[Math.floorMod(currentSecond, perSecond.length)] += count;
+            this.total += count;
+        }
+
+        /** Move to the second of the given time, clearing the seconds in between */
+        private void roll(long nowNs) {
+            long second = TimeUnit.NANOSECONDS.toSeconds(nowNs);
+            if (!started) {
+                this.started = true;
+                this.firstSecond = this.currentSecond = second;
+                return;
+            }
+            for (long s = currentSecond + 1; s <= second && s <= currentSecond + perSecond.length; s++) {
+                this.perSecond[Math.floorMod(s, perSecond.length)] = 0;
+            }
+            this.currentSecond = Math.max(currentSecond, second);
+        }
+
+        synchronized Rate snapshot(long nowNs) {
+            this.roll(nowNs);
+            // Only the complete seconds since the first count
+            int seconds = (int) Math.min(RATE_WINDOW_SECS, currentSecond - firstSecond);
+            if (seconds == 0) { return new Rate(total, 0, 0, 0); }
+
+            long sum = 0;
+            long max = 0;
+            for (int s = 1; s <= seconds; s++) {
+                long count = perSecond[Math.floorMod(currentSecond - s, perSecond.length)];
+                sum += count;
+                max = Math.max(max, count);
+            }
+            long lastSecond = perSecond[Math.floorMod(currentSecond - 1, perSecond.length)];
+            return new Rate(total, lastSecond, sum / (double) seconds, max);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package fr.wollfie.cottus.resources.serial;
+
+/** Format of the messages exchanged with the arduino */
+public enum SerialProtocol {
+    /** Lines of text, understood by every firmware */
+    ASCII,
+    /** Binary frames, offered when connecting and used only if the arduino accepts them */
+    BINARY
+}
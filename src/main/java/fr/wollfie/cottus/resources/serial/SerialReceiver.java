@@ -0,0 +1,84 @@
+package fr.wollfie.cottus.resources.serial;
+
+import fr.wollfie.cottus.resources.serial.binary.BinaryFrame;
+import fr.wollfie.cottus.resources.serial.binary.BinaryFrameDecoder;
+import fr.wollfie.cottus.resources.serial.msg.TextMessageDecoder;
+
+/**
+ * <p>
+ *     Receive path of the serial port. The bytes of each read are appended to a {@link ByteRing}, then every
+ *     complete message in it is decoded, text lines or binary frames depending on the protocol in use. A
+ *     message split between two reads stays in the ring until the rest arrives.
+ * </p>
+ * <p>
+ *     The protocol can change between two messages of the same read : the bytes following the answer to the
+ *     offer of the binary protocol are decoded as frames. The arduino, which sends the answer, can't know when
+ *     the server receives it, so it keeps decoding text lines until the first {@link BinaryFrame#SYNC} starting
+ *     a message, no text line starts with it.
+ * </p>
+ */
+public class SerialReceiver {
+
+    private static final int CAPACITY = 4096;
+
+    private final ByteRing ring = new ByteRing(CAPACITY);
+    private final TextMessageDecoder textDecoder;
+    private final BinaryFrameDecoder binaryDecoder;
+    private long overflows = 0;
+
+    private volatile SerialProtocol protocol = SerialProtocol.ASCII;
+    /** @return The protocol the received bytes are decoded with */
+    public SerialProtocol getProtocol() { return protocol; }
+    /** Decode the next bytes with the given protocol */
+    public void setProtocol(SerialProtocol protocol) {
+        this.binaryAtNextFrame = false;
+        this.protocol = protocol;
+    }
+
+    private volatile boolean binaryAtNextFrame = false;
+    /** Keep decoding text lines, and switch to the binary protocol at the first message starting with a sync byte */
+    public void setBinaryAtNextFrame() { this.binaryAtNextFrame = true; }
+
+    public SerialReceiver(SerialFrameListener listener) {
+        this.textDecoder = new TextMessageDecoder(listener);
+        this.binaryDecoder = new BinaryFrameDecoder(listener);
+    }
+
+    /** @return The number of bytes skipped, corrupted frames and messages too long to fit in the ring */
+    public long getFramingErrors() {
+        return textDecoder.getFramingErrors() + binaryDecoder.getFramingErrors() + overflows;
+    }
+
+    /** Decode the received bytes, the listener is called for each complete message */
+    public void feed(byte[] data, int offset, int length) {
+        while (length > 0) {
+            int n = ring.write(data, offset, length);
+            offset += n;
+            length -= n;
+
+            while (this.decodeNext()) { }
+
+            if (ring.isFull()) {
+                // Only a text line longer than the ring can fill it, it would never complete
+                ring.clear();
+                this.overflows++;
+            }
+        }
+    }
+
+    /** @return False if the ring doesn't hold a complete message yet */
+    private boolean decodeNext() {
+        if (protocol == SerialProtocol.BINARY) { return binaryDecoder.decodeNext(ring); }
+        if (binaryAtNextFrame && ring.size() > 0 && ring.get(0) == BinaryFrame.SYNC) {
+            this.setProtocol(SerialProtocol.BINARY);
+            return true;
+        }
+        return textDecoder.decodeNext(ring);
+    }
+
+    /** Forget the bytes of the incomplete message, when the connection is reset */
+    public void reset() {
+        ring.clear();
+        this.setProtocol(SerialProtocol.ASCII);
+    }
+}
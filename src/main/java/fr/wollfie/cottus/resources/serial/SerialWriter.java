@@ -0,0 +1,131 @@
+package fr.wollfie.cottus.resources.serial;
+
+import io.quarkus.logging.Log;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToIntFunction;
+
+/**
+ * <p>
+ *     Sends the joint commands to the arduino from its own thread, so that the update loop never waits on the
+ *     serial port. The commands are left in a single-slot mailbox that only holds the newest one : a command
+ *     not sent yet when the next one is submitted is superseded, as the arm only needs to reach the latest.
+ * </p>
+ * <p>
+ *     The commands are sent at most at the configured rate, and never faster than the line can carry the
+ *     frames : after each frame, the writer waits for the time its bytes take on the wire.
+ * </p>
+ */
+public class SerialWriter {
+
+    /** A command waiting in the mailbox, with the time it was submitted */
+    private record Command(List<Double> anglesRad, long submittedNs) { }
+
+    /** Weight of the last sample in the mean queue age */
+    private static final double MEAN_WEIGHT = 0.1;
+
+    private final AtomicReference<Command> mailbox = new AtomicReference<>();
+    private final ToIntFunction<List<Double>> sender;
+    private final long bytesPerSecond;
+    private final long periodNs;
+    private final Thread thread;
+    private volatile boolean running;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    // Only written by the writer thread
+    private volatile long sent = 0;
+    private volatile int lastFrameBytes = 0;
+    private volatile long lastQueueAgeNs = 0;
+    private volatile long maxQueueAgeNs = 0;
+    private volatile double meanQueueAgeNs = 0;
+
+    /**
+     * @param name The name of the thread
+     * @param bytesPerSecond The number of bytes per second the line carries, which bounds the rate at which the
+     *                       commands are sent, or 0 if it is not a limit
+     * @param rateHz The maximum number of commands sent per second
+     * @param sender Sends a command and returns the number of bytes it took on the wire
+     */
+    public SerialWriter(String name, long bytesPerSecond, double rateHz, ToIntFunction<List<Double>> sender) {
+        if (rateHz <= 0) { throw new IllegalArgumentException(String.format("The send rate must be positive, got %f", rateHz)); }
+        this.sender = sender;
+        this.bytesPerSecond = bytesPerSecond;
+        this.periodNs = (long) (TimeUnit.SECONDS.toNanos(1) / rateHz);
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        if (running) { return; }
+        this.running = true;
+        this.thread.start();
+    }
+
+    public void stop() {
+        this.running = false;
+        LockSupport.unpark(thread);
+        try { thread.join(TimeUnit.SECONDS.toMillis(1)); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    /** Replace the command waiting in the mailbox by this one, never blocks */
+    public void submit(List<Double> anglesRad) {
+        this.submitted.incrementAndGet();
+        Command previous = mailbox.getAndSet(new Command(anglesRad, System.nanoTime()));
+        // The writer only sleeps without a timeout when the mailbox is empty
+        if (previous == null) { LockSupport.unpark(thread); }
+        else { this.superseded.incrementAndGet(); }
+    }
+
+    private void run() {
+        long nextSendNs = System.nanoTime();
+        while (running) {
+            long now = System.nanoTime();
+            if (now < nextSendNs) {
+                LockSupport.parkNanos(this, nextSendNs - now);
+                continue;
+            }
+            Command command = mailbox.getAndSet(null);
+            if (command == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            int bytes;
+            try { bytes = Math.max(0, sender.applyAsInt(command.anglesRad())); }
+            catch (RuntimeException e) {
+                Log.warnf("Cannot send the command to the arduino : %s", e.getMessage());
+                continue;
+            }
+            // Nothing is sent when no joint moved enough since the last command
+            if (bytes > 0) { this.record(now - command.submittedNs(), bytes); }
+
+            long lineNs = bytesPerSecond == 0 ? 0 : bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+            // After an idle period, the next command can be sent right away
+            nextSendNs = Math.max(nextSendNs + Math.max(periodNs, lineNs), now);
+        }
+    }
+
+    private void record(long queueAgeNs, int bytes) {
+        this.sent++;
+        this.lastFrameBytes = bytes;
+        this.lastQueueAgeNs = queueAgeNs;
+        this.maxQueueAgeNs = Math.max(maxQueueAgeNs, queueAgeNs);
+        this.meanQueueAgeNs = sent == 1 ? queueAgeNs : meanQueueAgeNs + MEAN_WEIGHT * (queueAgeNs - meanQueueAgeNs);
+    }
+
+    /** @return The counters of the writer and the time the commands waited in the mailbox */
+    public SerialWriterStatistics getStatistics() {
+        double lineCapacityHz = lastFrameBytes == 0 ? 0 : bytesPerSecond / (double) lastFrameBytes;
+        return new SerialWriterStatistics(
+                TimeUnit.SECONDS.toNanos(1) / (double) periodNs, lineCapacityHz,
+                submitted.get(), sent, superseded.get(), mailbox.get() != null,
+                lastQueueAgeNs / 1e6, meanQueueAgeNs / 1e6, maxQueueAgeNs / 1e6
+        );
+    }
+}
@@ -0,0 +1,26 @@
+package fr.wollfie.cottus.resources.serial;
+
+/**
+ * The state of a {@link SerialWriter}
+ * @param rateHz The configured maximum number of commands sent per second
+ * @param lineCapacityHz The number of commands per second the line can carry, given the size of the last frame,
+ *                       or 0 if the line is not a limit
+ * @param submitted The number of commands submitted
+ * @param sent The number of commands sent, not counting those where no joint moved enough to be sent
+ * @param superseded The number of commands replaced by a newer one before being sent
+ * @param pending True if a command is waiting in the mailbox
+ * @param lastQueueAgeMs The time the last sent command waited in the mailbox
+ * @param meanQueueAgeMs The moving average of the time the commands waited in the mailbox
+ * @param maxQueueAgeMs The longest time a command waited in the mailbox
+ */
+public record SerialWriterStatistics(
+        double rateHz,
+        double lineCapacityHz,
+        long submitted,
+        long sent,
+        long superseded,
+        boolean pending,
+        double lastQueueAgeMs,
+        double meanQueueAgeMs,
+        double maxQueueAgeMs
+) { }
@@ -0,0 +1,267 @@
+package fr.wollfie.cottus.resources.serial;
+
+import fr.wollfie.cottus.resources.serial.binary.BinaryFrame;
+import fr.wollfie.cottus.resources.serial.binary.BinaryFrameEncoder;
+import io.quarkus.logging.Log;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * <p>
+ *     Streams a baked trajectory to the arduino as segments of timestamped waypoints, which it interpolates at
+ *     its own rate. The playback starts on the arduino {@code leadMs} after it receives the start of the stream,
+ *     so that the jitter of the line only delays the segments, not the motion, as long as they arrive in time.
+ * </p>
+ * <p>
+ *     At most {@code window} segments are sent and not acknowledged yet. The arduino acknowledges the last
+ *     segment it received in order, and drops those that arrive out of order : when no acknowledgement comes
+ *     for the retransmit timeout, the streamer goes back to the first segment not acknowledged. The segments are
+ *     not sent more than {@code window} segments ahead of the playback, which bounds the memory of the arduino.
+ * </p>
+ */
+public class TrajectoryStreamer {
+
+    /**
+     * @param window The maximum number of segments sent and not acknowledged
+     * @param waypointsPerSegment The number of waypoints of each segment
+     * @param retransmitTimeoutMs The time without acknowledgement after which the segments are sent again
+     * @param leadMs The delay between the reception of the start of the stream and its playback
+     */
+    public record Settings(int window, int waypointsPerSegment, long retransmitTimeoutMs, int leadMs) { }
+
+    /**
+     * The counters of the current or last stream
+     * @param streaming True if the stream is being played
+     * @param segments The number of segments of the stream
+     * @param sent The number of segments sent at least once
+     * @param acknowledged The number of segments acknowledged
+     * @param retransmissions The number of times the streamer went back to the first segment not acknowledged
+     */
+    public record Statistics(boolean streaming, int segments, int sent, int acknowledged, long retransmissions) { }
+
+    /** Sends the frames of the streams, numbered by the encoder of the link */
+    @FunctionalInterface
+    public interface FrameSender {
+        /**
+         * Encode a frame with the encoder of the link and send it, before any other frame is encoded
+         * @param encoding Encodes the frame with the given encoder
+         * @return The number of bytes written, or -1 if it failed
+         */
+        int send(Function<BinaryFrameEncoder, ByteBuffer> encoding);
+    }
+
+    private final Settings settings;
+    private final FrameSender sender;
+    private final Runnable onFinished;
+
+    // Guarded by this
+    private double[][] waypoints;
+    private long stepUs;
+    private int nbSegments;
+    /** First segment not acknowledged */
+    private int base;
+    /** Next segment to send */
+    private int next;
+    /** Highest number of segments sent */
+    private int sent;
+    private long retransmissions;
+    private long playbackStartNs;
+    private long timerStartNs;
+    private Thread thread;
+    private volatile boolean streaming;
+
+    /**
+     * @param settings The settings of the streams
+     * @param sender Encodes the frames with the encoder of the link and sends them
+     * @param onFinished Called from the thread of the streamer once a stream ended or was stopped
+     */
+    public TrajectoryStreamer(Settings settings, FrameSender sender, Runnable onFinished) {
+        if (settings.window() <= 0 || settings.waypointsPerSegment() <= 0 || settings.retransmitTimeoutMs() <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid stream settings %s", settings));
+        }
+        this.settings = settings;
+        this.sender = sender;
+        this.onFinished = onFinished;
+    }
+
+    /** @return True if a stream is being played */
+    public boolean isStreaming() { return streaming; }
+
+    /**
+     * Start streaming the trajectory, unless another one is being streamed
+     * @param frames The angles of the joints at evenly spaced times
+     * @param rateHz The number of frames per second
+     * @return False if another trajectory is being streamed
+     */
+    public synchronized boolean start(double[][] frames, double rateHz) {
+        if (frames.length == 0 || rateHz <= 0) { throw new IllegalArgumentException("The trajectory is empty"); }
+        int payload = BinaryFrame.SEGMENT_HEADER_BYTES + settings.waypointsPerSegment() * frames[0].length * Short.BYTES;
+        if (payload > BinaryFrame.MAX_PAYLOAD_BYTES) {
+            throw new IllegalArgumentException(String.format(
+                    "%d waypoints of %d joints don't fit in a segment", settings.waypointsPerSegment(), frames[0].length
+            ));
+        }
+        double maxAngle = Short.MAX_VALUE * BinaryFrame.ANGLE_QUANTUM_RAD;
+        for (double[] frame : frames) {
+            for (double angle : frame) {
+                if (Math.abs(angle) > maxAngle) {
+                    throw new IllegalArgumentException(String.format("The angle %f cannot be streamed", angle));
+                }
+            }
+        }
+        if (streaming) { return false; }
+
+        this.waypoints = frames;
+        this.stepUs = Math.round(TimeUnit.SECONDS.toMicros(1) / rateHz);
+        this.nbSegments = (frames.length + settings.waypointsPerSegment() - 1) / settings.waypointsPerSegment();
+        this.base = 0;
+        this.next = 0;
+        this.sent = 0;
+        this.retransmissions = 0;
+        this.streaming = true;
+        this.thread = new Thread(this::run, "trajectory-streamer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        return true;
+    }
+
+    /** Stop the stream being played, the arduino stops where it is */
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            if (!streaming) { return; }
+            this.streaming = false;
+            current = this.thread;
+            this.notifyAll();
+        }
+        try { current.join(TimeUnit.SECONDS.toMillis(1)); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    /**
+     * The arduino received the segments up to the given one in order
+     * @param segmentId The 16 lowest bits of the id of the segment
+     */
+    public synchronized void onAck(int segmentId) {
+        if (!streaming) { return; }
+        // The id is the closest to the last acknowledged one, acknowledgements of segments not sent are ignored
+        int acknowledged = base + ((segmentId - base) & 0xFFFF);
+        if (acknowledged >= next) { return; }
+        this.base = acknowledged + 1;
+        this.timerStartNs = System.nanoTime();
+        this.notifyAll();
+    }
+
+    /** @return The counters of the current or last stream */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(streaming, nbSegments, sent, base, retransmissions);
+    }
+
+// //======================================================================================\\
+// ||                                                                                      ||
+// ||                                       STREAMING                                      ||
+// ||                                                                                      ||
+// \\======================================================================================//
+
+    /**
+     * The frames to send next, chosen under the lock and sent outside of it, so that the transport is never
+     * called while the acknowledgements wait for the lock
+     * @param start True if the start of the stream is sent first
+     * @param from The first segment to send
+     * @param to The segment after the last one to send
+     */
+    private record Batch(boolean start, int from, int to) { }
+
+    private void run() {
+        double[][] waypoints;
+        long stepUs;
+        synchronized (this) {
+            waypoints = this.waypoints;
+            stepUs = this.stepUs;
+        }
+        long segmentNs = TimeUnit.MICROSECONDS.toNanos(stepUs * settings.waypointsPerSegment());
+        long durationNs = TimeUnit.MICROSECONDS.toNanos(stepUs * (waypoints.length - 1));
+
+        this.sendStart();
+        Batch batch;
+        while ((batch = this.nextBatch(segmentNs, durationNs)) != null) {
+            if (batch.start()) { this.sendStart(); }
+            for (int segment = batch.from(); segment < batch.to(); segment++) { this.sendSegment(waypoints, stepUs, segment); }
+        }
+
+        Statistics statistics;
+        synchronized (this) {
+            statistics = this.getStatistics();
+            this.streaming = false;
+        }
+        if (!statistics.streaming()) { this.send(BinaryFrameEncoder::encodeStreamStop); }
+        else { Log.infof("Streamed %d segments with %d retransmissions", statistics.segments(), statistics.retransmissions()); }
+        this.onFinished.run();
+    }
+
+    /**
+     * Wait until frames must be sent
+     * @return The frames to send, or null once the stream ended or was stopped
+     */
+    private synchronized Batch nextBatch(long segmentNs, long durationNs) {
+        while (streaming) {
+            long now = System.nanoTime();
+            if (base == nbSegments && now >= playbackStartNs + durationNs) { return null; }
+            // The arduino holds its position once it played all the waypoints it received
+            if (base < nbSegments && now - playbackStartNs - base * segmentNs > TimeUnit.MILLISECONDS.toNanos(settings.leadMs())) {
+                Log.warnf("The trajectory stream is late by more than %d ms at the segment %d, stopping it", settings.leadMs(), base);
+                this.streaming = false;
+                return null;
+            }
+
+            // Send the segments within the window that the playback will soon need
+            long horizonNs = Math.max(0, now - playbackStartNs) + settings.window() * segmentNs;
+            int from = next;
+            while (next < Math.min(base + settings.window(), nbSegments) && next * segmentNs <= horizonNs) {
+                if (next == base) { this.timerStartNs = now; }
+                this.next++;
+                this.sent = Math.max(sent, next);
+            }
+            if (from < next) { return new Batch(false, from, next); }
+
+            long timeoutNs = TimeUnit.MILLISECONDS.toNanos(settings.retransmitTimeoutMs());
+            if (base < next && now - timerStartNs >= timeoutNs) {
+                this.retransmissions++;
+                this.next = base;
+                // The arduino may not have received the start, it is sent again until the first segment is acknowledged
+                if (base == 0) { return new Batch(true, 0, 0); }
+                continue;
+            }
+
+            // Wake up for the next segment to send, the retransmit timeout, or the end of the playback
+            long waitNs = base < next ? timerStartNs + timeoutNs - now : segmentNs;
+            if (base == nbSegments) { waitNs = Math.min(waitNs, playbackStartNs + durationNs - now); }
+            try { TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitNs, 1)); }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void sendStart() {
+        int leadMs = settings.leadMs();
+        this.send(encoder -> encoder.encodeStreamStart(leadMs));
+        synchronized (this) { this.playbackStartNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leadMs); }
+    }
+
+    private void sendSegment(double[][] waypoints, long stepUs, int segment) {
+        int from = segment * settings.waypointsPerSegment();
+        int count = Math.min(settings.waypointsPerSegment(), waypoints.length - from);
+        this.send(encoder -> encoder.encodeSegment(segment, from * stepUs, stepUs, waypoints, from, count));
+    }
+
+    private void send(Function<BinaryFrameEncoder, ByteBuffer> encoding) {
+        try {
+            if (sender.send(encoding) < 0) { Log.warn("Cannot send the frame of the trajectory stream"); }
+        } catch (RuntimeException e) { Log.warnf("Cannot send the frame of the trajectory stream : %s", e.getMessage()); }
+    }
+}
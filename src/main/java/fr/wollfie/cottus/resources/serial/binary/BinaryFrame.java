@@ -0,0 +1,61 @@
+package fr.wollfie.cottus.resources.serial.binary;
+
+/**
+ * <p>
+ *     Layout of the frames of the binary serial protocol, used instead of the text messages once
+ *     negotiated with the arduino. A frame is :
+ * </p>
+ * <pre>
+ *     [0xA5 sync][type][sequence][payload length][payload ...][CRC-16 low][CRC-16 high]
+ * </pre>
+ * <p>
+ *     All the numbers are little-endian. The sequence number is incremented by the sender for each frame
+ *     and wraps around at 256. Each end of the link numbers all the frames it sends with a single counter,
+ *     whichever part of it sends them. The CRC-16/CCITT-FALSE covers the type, sequence, length and payload, so
+ *     that a receiver can find the next frame after a corrupted one by looking for the next sync byte.
+ * </p>
+ */
+public final class BinaryFrame {
+
+    private BinaryFrame() { }
+
+    public static final byte SYNC = (byte) 0xA5;
+
+    /** Sync, type, sequence and length */
+    public static final int HEADER_BYTES = 4;
+    public static final int CRC_BYTES = 2;
+    public static final int MAX_PAYLOAD_BYTES = 255;
+    public static final int MAX_FRAME_BYTES = HEADER_BYTES + MAX_PAYLOAD_BYTES + CRC_BYTES;
+
+    /** Angles of the joints as int16, in units of {@link BinaryFrame#ANGLE_QUANTUM_RAD} */
+    public static final byte TYPE_ANGLES_I16 = 0x01;
+    /** Angles of the joints in radians as float32, when one of them doesn't fit in an int16 */
+    public static final byte TYPE_ANGLES_F32 = 0x02;
+    /** 
+     * Angles of some of the joints : a uint16 mask with the bit {@code i} set if the joint {@code i} is 
+     * included, then the angles of the included joints in order, as int16 like {@link BinaryFrame#TYPE_ANGLES_I16} 
+     */
+    public static final byte TYPE_ANGLES_DELTA_I16 = 0x03;
+    /** Start of a trajectory stream : uint16 delay in milliseconds between the reception and the playback of its start */
+    public static final byte TYPE_STREAM_START = 0x04;
+    /**
+     * Segment of a trajectory stream : uint16 segment id, uint32 time of its first waypoint in microseconds since
+     * the start of the playback, uint32 time between two waypoints in microseconds, uint8 number of waypoints,
+     * uint8 number of joints, then the angles of each waypoint as int16 like {@link BinaryFrame#TYPE_ANGLES_I16}
+     */
+    public static final byte TYPE_SEGMENT = 0x05;
+    /** End of a trajectory stream, the arduino stops where it is */
+    public static final byte TYPE_STREAM_STOP = 0x06;
+    /** Size of the fields of a segment before its angles */
+    public static final int SEGMENT_HEADER_BYTES = 12;
+
+    /** Speed of each motor in radians per second as float32 */
+    public static final byte TYPE_MOTOR_SPEEDS_F32 = 0x10;
+    /** Acknowledgement of the segments of a trajectory stream : uint16 id of the last segment received in order */
+    public static final byte TYPE_SEGMENT_ACK = 0x11;
+    /** UTF-8 text logged by the arduino */
+    public static final byte TYPE_LOG = 0x20;
+
+    /** Resolution of the int16 angles, they cover -3.2767 to 3.2767 radians */
+    public static final double ANGLE_QUANTUM_RAD = 1e-4;
+}
@@ -0,0 +1,119 @@
+package fr.wollfie.cottus.resources.serial.binary;
+
+import fr.wollfie.cottus.resources.serial.ByteRing;
+import fr.wollfie.cottus.resources.serial.SerialFrameListener;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ *     Decodes the {@link BinaryFrame}s received from the arduino, in place in a {@link ByteRing}. The bytes
+ *     before a sync byte and the frames with a wrong CRC are skipped and counted as framing errors.
+ * </p>
+ * <p>
+ *     The values of a frame are decoded in arrays reused for each frame and given to the
+ *     {@link SerialFrameListener}, which must copy what it keeps before returning.
+ * </p>
+ */
+public class BinaryFrameDecoder {
+
+    private final SerialFrameListener listener;
+    private final double[] values = new double[BinaryFrame.MAX_PAYLOAD_BYTES / Short.BYTES];
+    private final byte[] text = new byte[BinaryFrame.MAX_PAYLOAD_BYTES];
+    private long framingErrors = 0;
+
+    public BinaryFrameDecoder(SerialFrameListener listener) { this.listener = listener; }
+
+    /** @return The number of skipped bytes and corrupted frames since the creation of the decoder */
+    public long getFramingErrors() { return framingErrors; }
+
+    /**
+     * Decode the frame at the front of the ring, or skip the bytes that can't start one
+     * @return True if bytes were consumed, false if the ring doesn't hold a complete frame yet
+     */
+    public boolean decodeNext(ByteRing ring) {
+        if (ring.size() == 0) { return false; }
+        if (ring.get(0) != BinaryFrame.SYNC) {
+            int sync = ring.indexOf(BinaryFrame.SYNC, 1);
+            int skipped = sync < 0 ? ring.size() : sync;
+            ring.skip(skipped);
+            this.framingErrors += skipped;
+            return true;
+        }
+        if (ring.size() < BinaryFrame.HEADER_BYTES) { return false; }
+
+        int length = ring.get(3) & 0xFF;
+        int payload = BinaryFrame.HEADER_BYTES;
+        int frameBytes = payload + length + BinaryFrame.CRC_BYTES;
+        if (ring.size() < frameBytes) { return false; }
+
+        int crc = ring.getShortLE(payload + length) & 0xFFFF;
+        if (crc != Crc16.compute(ring, 1, payload + length)) {
+            // The sync byte may have been a byte of a corrupted frame, the next frame can start right after it
+            ring.skip(1);
+            this.framingErrors++;
+            return true;
+        }
+
+        this.dispatch(ring, ring.get(1), ring.get(2) & 0xFF, payload, length);
+        ring.skip(frameBytes);
+        return true;
+    }
+
+    private void dispatch(ByteRing ring, byte type, int sequence, int payload, int length) {
+        switch (type) {
+            case BinaryFrame.TYPE_ANGLES_I16 -> {
+                int count = length / Short.BYTES;
+                for (int i = 0; i < count; i++) {
+                    values[i] = ring.getShortLE(payload + i * Short.BYTES) * BinaryFrame.ANGLE_QUANTUM_RAD;
+                }
+                listener.onAngles(values, count, sequence);
+            }
+            case BinaryFrame.TYPE_ANGLES_DELTA_I16 -> {
+                // The mask must be followed by one angle per joint it includes
+                int jointMask = length < Short.BYTES ? 0 : ring.getShortLE(payload) & 0xFFFF;
+                int count = (length - Short.BYTES) / Short.BYTES;
+                if (length < Short.BYTES || length != Short.BYTES * (1 + Integer.bitCount(jointMask))) {
+                    this.framingErrors++;
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    values[i] = ring.getShortLE(payload + (i + 1) * Short.BYTES) * BinaryFrame.ANGLE_QUANTUM_RAD;
+                }
+                listener.onChangedAngles(jointMask, values, count, sequence);
+            }
+            case BinaryFrame.TYPE_ANGLES_F32 -> listener.onAngles(values, readFloats(ring, payload, length), sequence);
+            case BinaryFrame.TYPE_MOTOR_SPEEDS_F32 -> listener.onMotorSpeeds(values, readFloats(ring, payload, length), sequence);
+            case BinaryFrame.TYPE_STREAM_START -> listener.onStreamStart(ring.getShortLE(payload) & 0xFFFF);
+            case BinaryFrame.TYPE_SEGMENT -> {
+                int segmentId = ring.getShortLE(payload) & 0xFFFF;
+                long startUs = ring.getIntLE(payload + 2) & 0xFFFFFFFFL;
+                long stepUs = ring.getIntLE(payload + 6) & 0xFFFFFFFFL;
+                int nbWaypoints = ring.get(payload + 10) & 0xFF;
+                int nbJoints = ring.get(payload + 11) & 0xFF;
+                int count = nbWaypoints * nbJoints;
+                if (BinaryFrame.SEGMENT_HEADER_BYTES + count * Short.BYTES != length) {
+                    this.framingErrors++;
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    values[i] = ring.getShortLE(payload + BinaryFrame.SEGMENT_HEADER_BYTES + i * Short.BYTES) * BinaryFrame.ANGLE_QUANTUM_RAD;
+                }
+                listener.onSegment(segmentId, startUs, stepUs, nbWaypoints, nbJoints, values);
+            }
+            case BinaryFrame.TYPE_STREAM_STOP -> listener.onStreamStop();
+            case BinaryFrame.TYPE_SEGMENT_ACK -> listener.onSegmentAck(ring.getShortLE(payload) & 0xFFFF);
+            case BinaryFrame.TYPE_LOG -> {
+                ring.copy(payload, payload + length, text);
+                listener.onLog(new String(text, 0, length, StandardCharsets.UTF_8));
+            }
+            default -> this.framingErrors++;
+        }
+    }
+
+    private int readFloats(ByteRing ring, int payload, int length) {
+        int count = length / Float.BYTES;
+        for (int i = 0; i < count; i++) { values[i] = ring.getFloatLE(payload + i * Float.BYTES); }
+        return count;
+    }
+}
@@ -0,0 +1,129 @@
+package fr.wollfie.cottus.resources.serial.binary;
+
+import fr.wollfie.cottus.utils.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Encodes the {@link BinaryFrame}s sent to the arduino. The frames are written in a single buffer reused
+ * for each of them, so a frame must be sent before the next one is encoded
+ */
+public class BinaryFrameEncoder {
+
+    private final ByteBuffer frame = ByteBuffer.allocate(BinaryFrame.MAX_FRAME_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private int sequence = 0;
+
+    /** @return The sequence number of the last encoded frame */
+    public int getLastSequence() { return (sequence - 1) & 0xFF; }
+
+    /**
+     * Encode the angles of the joints, as int16 if all of them fit, as float32 otherwise
+     * @param anglesRad The angles of the joints in radians
+     * @return The buffer holding the frame between its position and its limit, backed by an array
+     */
+    public ByteBuffer encodeAngles(List<Double> anglesRad) {
+        boolean fitsInt16 = true;
+        for (int i = 0; i < anglesRad.size() && fitsInt16; i++) {
+            fitsInt16 = Math.abs(anglesRad.get(i) / BinaryFrame.ANGLE_QUANTUM_RAD) <= Short.MAX_VALUE;
+        }
+
+        if (fitsInt16) {
+            this.begin(BinaryFrame.TYPE_ANGLES_I16, anglesRad.size() * Short.BYTES);
+            for (int i = 0; i < anglesRad.size(); i++) {
+                frame.putShort((short) Math.round(anglesRad.get(i) / BinaryFrame.ANGLE_QUANTUM_RAD));
+            }
+        } else {
+            this.begin(BinaryFrame.TYPE_ANGLES_F32, anglesRad.size() * Float.BYTES);
+            for (int i = 0; i < anglesRad.size(); i++) { frame.putFloat(anglesRad.get(i).floatValue()); }
+        }
+        return this.end();
+    }
+
+    /**
+     * Encode the angles of some of the joints, which must fit in an int16
+     * @param anglesRad The angles of all the joints in radians
+     * @param jointMask The bit {@code i} is set if the joint {@code i} must be sent
+     * @return The buffer holding the frame between its position and its limit, backed by an array, or null if
+     * one of the angles doesn't fit in an int16, in which case all of them must be sent with {@link BinaryFrameEncoder#encodeAngles}
+     */
+    public ByteBuffer encodeChangedAngles(List<Double> anglesRad, int jointMask) {
+        for (int i = 0; i < anglesRad.size(); i++) {
+            if ((jointMask & (1 << i)) != 0 && Math.abs(anglesRad.get(i) / BinaryFrame.ANGLE_QUANTUM_RAD) > Short.MAX_VALUE) { 
+                return null; 
+            }
+        }
+
+        this.begin(BinaryFrame.TYPE_ANGLES_DELTA_I16, Short.BYTES * (1 + Integer.bitCount(jointMask)));
+        frame.putShort((short) jointMask);
+        for (int i = 0; i < anglesRad.size(); i++) {
+            if ((jointMask & (1 << i)) != 0) { frame.putShort((short) Math.round(anglesRad.get(i) / BinaryFrame.ANGLE_QUANTUM_RAD)); }
+        }
+        return this.end();
+    }
+
+    /**
+     * Encode the speed of each motor
+     * @param radPerSec The speeds in radians per second
+     * @return The buffer holding the frame between its position and its limit, backed by an array
+     */
+    public ByteBuffer encodeMotorSpeeds(List<Double> radPerSec) {
+        this.begin(BinaryFrame.TYPE_MOTOR_SPEEDS_F32, radPerSec.size() * Float.BYTES);
+        for (int i = 0; i < radPerSec.size(); i++) { frame.putFloat(radPerSec.get(i).floatValue()); }
+        return this.end();
+    }
+
+    /** @return The frame starting a trajectory stream, played after the given delay */
+    public ByteBuffer encodeStreamStart(int leadMs) {
+        this.begin(BinaryFrame.TYPE_STREAM_START, Short.BYTES);
+        frame.putShort((short) leadMs);
+        return this.end();
+    }
+
+    /**
+     * Encode a segment of a trajectory stream
+     * @param segmentId The id of the segment, only its 16 lowest bits are sent
+     * @param startUs The time of its first waypoint since the start of the playback
+     * @param stepUs The time between two waypoints
+     * @param waypoints The angles of the joints at each waypoint, which must fit in an int16
+     * @param from The index of the first waypoint of the segment
+     * @param count The number of waypoints of the segment
+     * @return The buffer holding the frame between its position and its limit, backed by an array
+     */
+    public ByteBuffer encodeSegment(int segmentId, long startUs, long stepUs, double[][] waypoints, int from, int count) {
+        int nbJoints = waypoints[from].length;
+        this.begin(BinaryFrame.TYPE_SEGMENT, BinaryFrame.SEGMENT_HEADER_BYTES + count * nbJoints * Short.BYTES);
+        frame.putShort((short) segmentId).putInt((int) startUs).putInt((int) stepUs).put((byte) count).put((byte) nbJoints);
+        for (int i = from; i < from + count; i++) {
+            for (double angle : waypoints[i]) { frame.putShort((short) Math.round(angle / BinaryFrame.ANGLE_QUANTUM_RAD)); }
+        }
+        return this.end();
+    }
+
+    /** @return The frame stopping a trajectory stream */
+    public ByteBuffer encodeStreamStop() {
+        this.begin(BinaryFrame.TYPE_STREAM_STOP, 0);
+        return this.end();
+    }
+
+    /** @return The acknowledgement of the segments up to the given one, sent by the arduino */
+    public ByteBuffer encodeSegmentAck(int segmentId) {
+        this.begin(BinaryFrame.TYPE_SEGMENT_ACK, Short.BYTES);
+        frame.putShort((short) segmentId);
+        return this.end();
+    }
+
+    private void begin(byte type, int payloadLength) {
+        Preconditions.checkArgument(payloadLength <= BinaryFrame.MAX_PAYLOAD_BYTES);
+        frame.clear();
+        frame.put(BinaryFrame.SYNC).put(type).put((byte) sequence).put((byte) payloadLength);
+        this.sequence = (sequence + 1) & 0xFF;
+    }
+
+    private ByteBuffer end() {
+        // The sync byte is not covered by the CRC
+        frame.putShort((short) Crc16.compute(frame, 1, frame.position()));
+        return frame.flip();
+    }
+}
@@ -0,0 +1,40 @@
+package fr.wollfie.cottus.resources.serial.binary;
+
+import fr.wollfie.cottus.resources.serial.ByteRing;
+
+import java.nio.ByteBuffer;
+
+/** CRC-16/CCITT-FALSE : polynomial 0x1021, initial value 0xFFFF, no reflection */
+public final class Crc16 {
+
+    private Crc16() { }
+
+    private static final int[] TABLE = new int[256];
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    /** @return The CRC of the bytes of the buffer between the given absolute indices, without moving its position */
+    public static int compute(ByteBuffer buffer, int from, int to) {
+        int crc = 0xFFFF;
+        for (int i = from; i < to; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ buffer.get(i)) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    /** @return The CRC of the bytes of the ring between the given indices */
+    public static int compute(ByteRing ring, int from, int to) {
+        int crc = 0xFFFF;
+        for (int i = from; i < to; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ ring.get(i)) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+}
@@ -0,0 +1,338 @@
+package fr.wollfie.cottus.resources.serial.emulator;
+
+import fr.wollfie.cottus.resources.serial.SerialFrameListener;
+import fr.wollfie.cottus.resources.serial.SerialProtocol;
+import fr.wollfie.cottus.resources.serial.SerialReceiver;
+import fr.wollfie.cottus.resources.serial.binary.BinaryFrameEncoder;
+import fr.wollfie.cottus.resources.serial.msg.AnglesMessage;
+import fr.wollfie.cottus.resources.serial.msg.MotorSpeedMessage;
+import fr.wollfie.cottus.resources.serial.msg.ProtocolMessage;
+import fr.wollfie.cottus.resources.serial.transport.ArmTransport;
+import fr.wollfie.cottus.resources.serial.transport.LoopbackTransport;
+import io.quarkus.logging.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Emulates the firmware of the arduino at the device end of a {@link LoopbackTransport}, to run the
+ *     serial path without hardware. Like the firmware, it :
+ * </p>
+ * <ul>
+ *     <li>Reports the speed of its motors with a {@link MotorSpeedMessage} when the server first sends something</li>
+ *     <li>Accepts the offer of the binary protocol if {@link Settings#binary()}</li>
+ *     <li>Moves each stepper towards the last received angles at {@link Settings#speedRadPerSec()}, from full or partial commands</li>
+ *     <li>Plays the trajectory streams, acknowledging the segments received in order and interpolating their waypoints</li>
+ *     <li>Reports the angles of the steppers at {@link Settings#feedbackRateHz()}</li>
+ * </ul>
+ * <p>
+ *     The messages in both directions can be delayed by {@link Settings#latencyMs()}, and the sent messages
+ *     corrupted with the probability {@link Settings#corruptionProbability()}, by flipping one of their bits.
+ * </p>
+ */
+public class FirmwareEmulator {
+
+    /**
+     * @param nbJoints The number of steppers
+     * @param speedRadPerSec The speed of the steppers
+     * @param feedbackRateHz The number of times per second the angles are reported
+     * @param latencyMs The delay of the messages in each direction
+     * @param corruptionProbability The probability that a sent message has a bit flipped
+     * @param binary True if the binary protocol is accepted
+     * @param seed The seed of the corruptions, so that a run can be reproduced
+     */
+    public record Settings(
+            int nbJoints,
+            double speedRadPerSec,
+            double feedbackRateHz,
+            long latencyMs,
+            double corruptionProbability,
+            boolean binary,
+            long seed
+    ) {
+        /** @return Settings of a perfect link to an arm of the given number of steppers */
+        public static Settings ideal(int nbJoints, double speedRadPerSec) {
+            return new Settings(nbJoints, speedRadPerSec, 50, 0, 0, true, 0);
+        }
+    }
+
+    /**
+     * The counters of the emulator
+     * @param commandsReceived The number of angle commands received
+     * @param bytesReceived The number of bytes received
+     * @param framingErrors The number of received bytes and messages that couldn't be decoded
+     * @param messagesSent The number of messages sent
+     * @param bytesSent The number of bytes sent
+     * @param messagesCorrupted The number of sent messages that were corrupted
+     * @param segmentsReceived The number of trajectory segments received in order
+     */
+    public record Statistics(
+            long commandsReceived,
+            long bytesReceived,
+            long framingErrors,
+            long messagesSent,
+            long bytesSent,
+            long messagesCorrupted,
+            long segmentsReceived
+    ) { }
+
+    private final LoopbackTransport.DeviceEnd device;
+    private final Settings settings;
+    private final SerialReceiver receiver;
+    private final BinaryFrameEncoder encoder = new BinaryFrameEncoder();
+    private final Random random;
+    private final ScheduledExecutorService executor;
+
+    // Only used by the thread of the executor
+    private final double[] positions;
+    private final double[] targets;
+    private boolean greeted = false;
+    private SerialProtocol protocol = SerialProtocol.ASCII;
+    private long lastTickNs;
+    /** The waypoints of the trajectory stream received in order, played from the start time */
+    private final List<double[]> streamWaypoints = new ArrayList<>();
+    private boolean streaming = false;
+    private long streamStartNs;
+    private long streamStepUs;
+    private int expectedSegment;
+
+    private final AtomicLong commandsReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong messagesCorrupted = new AtomicLong();
+    private final AtomicLong segmentsReceived = new AtomicLong();
+
+    public FirmwareEmulator(LoopbackTransport.DeviceEnd device, Settings settings) {
+        this.device = device;
+        this.settings = settings;
+        this.positions = new double[settings.nbJoints()];
+        this.targets = new double[settings.nbJoints()];
+        this.random = new Random(settings.seed());
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "firmware-emulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.receiver = new SerialReceiver(new SerialFrameListener() {
+            @Override
+            public void onAngles(double[] anglesRad, int count, int sequence) {
+                double[] angles = Arrays.copyOf(anglesRad, count);
+                commandsReceived.incrementAndGet();
+                later(() -> onCommand(angles));
+            }
+
+            @Override
+            public void onChangedAngles(int jointMask, double[] anglesRad, int count, int sequence) {
+                double[] angles = Arrays.copyOf(anglesRad, count);
+                commandsReceived.incrementAndGet();
+                later(() -> onChangedCommand(jointMask, angles));
+            }
+
+            @Override
+            public void onStreamStart(int leadMs) { later(() -> FirmwareEmulator.this.onStreamStart(leadMs)); }
+
+            @Override
+            public void onSegment(int segmentId, long startUs, long stepUs, int nbWaypoints, int nbJoints, double[] anglesRad) {
+                double[] angles = Arrays.copyOf(anglesRad, nbWaypoints * nbJoints);
+                later(() -> FirmwareEmulator.this.onSegment(segmentId, stepUs, nbWaypoints, nbJoints, angles));
+            }
+
+            @Override
+            public void onStreamStop() { later(() -> FirmwareEmulator.this.onStreamStop()); }
+
+            @Override public void onMotorSpeeds(double[] radPerSec, int count, int sequence) { }
+            @Override public void onMotorSpeed(double radPerSec) { }
+            @Override public void onLog(String message) { }
+
+            @Override
+            public void onProtocol(int version) {
+                // The server keeps sending text until it receives the answer, its first frame starts the binary
+                // protocol. It only sends frames after the answer, so waiting for them from the offer is the same
+                boolean accepted = settings.binary() && version == ProtocolMessage.BINARY_VERSION;
+                if (accepted) { receiver.setBinaryAtNextFrame(); }
+                later(() -> onProtocolOffer(accepted));
+            }
+        });
+    }
+
+    /** Start listening to the server and moving the steppers */
+    public void start() {
+        device.setListener(new ArmTransport.Listener() {
+            @Override
+            public void onBytes(byte[] data, int offset, int length) {
+                bytesReceived.addAndGet(length);
+                executor.execute(() -> greet());
+                receiver.feed(data, offset, length);
+            }
+
+            @Override
+            public void onDisconnected() { }
+        });
+        this.lastTickNs = System.nanoTime();
+        long periodNs = (long) (TimeUnit.SECONDS.toNanos(1) / settings.feedbackRateHz());
+        executor.scheduleAtFixedRate(this::tick, periodNs, periodNs, TimeUnit.NANOSECONDS);
+    }
+
+    public void stop() {
+        device.setListener(null);
+        executor.shutdownNow();
+    }
+
+    /** @return The current angles of the steppers */
+    public double[] getPositions() {
+        try { return executor.submit(() -> positions.clone()).get(); }
+        catch (Exception e) { throw new IllegalStateException("The emulator is stopped", e); }
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(
+                commandsReceived.get(), bytesReceived.get(), receiver.getFramingErrors(),
+                messagesSent.get(), bytesSent.get(), messagesCorrupted.get(), segmentsReceived.get()
+        );
+    }
+
+// //======================================================================================\\
+// ||                                                                                      ||
+// ||                                       FIRMWARE                                       ||
+// ||                                                                                      ||
+// \\======================================================================================//
+
+    /** Run the action once the latency has passed */
+    private void later(Runnable action) {
+        if (settings.latencyMs() == 0) { executor.execute(action); }
+        else { executor.schedule(action, settings.latencyMs(), TimeUnit.MILLISECONDS); }
+    }
+
+    /** The first time the server sends something, report the speed of the motors, which signals the arm is ready */
+    private void greet() {
+        if (greeted) { return; }
+        this.greeted = true;
+        this.sendSpeeds();
+    }
+
+    private void onProtocolOffer(boolean accepted) {
+        if (!accepted) { return; }
+        this.send(new ProtocolMessage(ProtocolMessage.BINARY_VERSION).getMessage().getBytes(StandardCharsets.UTF_8));
+        this.protocol = SerialProtocol.BINARY;
+        Log.infof("The firmware emulator switched to the binary protocol");
+    }
+
+    private void onCommand(double[] angles) {
+        this.streaming = false;
+        System.arraycopy(angles, 0, targets, 0, Math.min(angles.length, targets.length));
+    }
+
+    private void onChangedCommand(int jointMask, double[] angles) {
+        this.streaming = false;
+        int next = 0;
+        for (int i = 0; i < targets.length && next < angles.length; i++) {
+            if ((jointMask & (1 << i)) != 0) { targets[i] = angles[next++]; }
+        }
+    }
+
+    private void onStreamStart(int leadMs) {
+        this.streaming = true;
+        this.streamWaypoints.clear();
+        this.expectedSegment = 0;
+        this.streamStartNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leadMs);
+    }
+
+    /** Keep the segment if it is the next one, and acknowledge the last one received in order */
+    private void onSegment(int segmentId, long stepUs, int nbWaypoints, int nbJoints, double[] angles) {
+        if (!streaming) { return; }
+        if (segmentId == expectedSegment) {
+            for (int i = 0; i < nbWaypoints; i++) {
+                double[] waypoint = new double[targets.length];
+                System.arraycopy(angles, i * nbJoints, waypoint, 0, Math.min(nbJoints, targets.length));
+                streamWaypoints.add(waypoint);
+            }
+            this.streamStepUs = stepUs;
+            this.expectedSegment = (expectedSegment + 1) & 0xFFFF;
+            segmentsReceived.incrementAndGet();
+        }
+        // Nothing to acknowledge until the first segment is received
+        if (!streamWaypoints.isEmpty()) { this.send(encoder.encodeSegmentAck(expectedSegment - 1)); }
+    }
+
+    /** Stop where the steppers are */
+    private void onStreamStop() {
+        this.streaming = false;
+        System.arraycopy(positions, 0, targets, 0, targets.length);
+    }
+
+    /** Interpolate the waypoints of the stream at the current time, holding the last one received */
+    private void followStream(long now) {
+        if (streamWaypoints.isEmpty() || now < streamStartNs) { return; }
+        double index = (now - streamStartNs) / 1e3 / streamStepUs;
+        int i = (int) Math.floor(index);
+        if (i >= streamWaypoints.size() - 1) {
+            System.arraycopy(streamWaypoints.get(streamWaypoints.size() - 1), 0, targets, 0, targets.length);
+            return;
+        }
+        double alpha = index - i;
+        double[] from = streamWaypoints.get(i);
+        double[] to = streamWaypoints.get(i + 1);
+        for (int j = 0; j < targets.length; j++) { targets[j] = from[j] + alpha * (to[j] - from[j]); }
+    }
+
+    /** Move the steppers towards their target, then report their angles */
+    private void tick() {
+        long now = System.nanoTime();
+        if (streaming) { this.followStream(now); }
+        double maxStep = settings.speedRadPerSec() * (now - lastTickNs) / 1e9;
+        this.lastTickNs = now;
+        for (int i = 0; i < positions.length; i++) {
+            double delta = targets[i] - positions[i];
+            positions[i] += Math.max(-maxStep, Math.min(maxStep, delta));
+        }
+        if (greeted) { this.sendPositions(); }
+    }
+
+    private void sendPositions() {
+        List<Double> angles = toList(positions);
+        if (protocol == SerialProtocol.BINARY) { this.send(encoder.encodeAngles(angles)); }
+        else { this.send(new AnglesMessage(angles).getMessage().getBytes(StandardCharsets.UTF_8)); }
+    }
+
+    private void sendSpeeds() {
+        double[] speeds = new double[positions.length];
+        Arrays.fill(speeds, settings.speedRadPerSec());
+        if (protocol == SerialProtocol.BINARY) {
+            this.send(encoder.encodeMotorSpeeds(toList(speeds)));
+            return;
+        }
+        StringBuilder sb = new StringBuilder(MotorSpeedMessage.HEADER);
+        for (double speed : speeds) { sb.append(Math.toDegrees(speed)).append("D"); }
+        this.send(sb.append("\n").toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void send(ByteBuffer frame) { this.send(Arrays.copyOfRange(frame.array(), frame.position(), frame.limit())); }
+
+    private void send(byte[] message) {
+        if (random.nextDouble() < settings.corruptionProbability()) {
+            message[random.nextInt(message.length)] ^= (byte) (1 << random.nextInt(8));
+            messagesCorrupted.incrementAndGet();
+        }
+        this.later(() -> {
+            if (device.send(message, 0, message.length) < 0) { return; }
+            messagesSent.incrementAndGet();
+            bytesSent.addAndGet(message.length);
+        });
+    }
+
+    private static List<Double> toList(double[] values) {
+        List<Double> list = new ArrayList<>(values.length);
+        for (double value : values) { list.add(value); }
+        return list;
+    }
+}
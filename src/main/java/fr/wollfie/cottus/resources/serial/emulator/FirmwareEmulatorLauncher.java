@@ -0,0 +1,57 @@
+package fr.wollfie.cottus.resources.serial.emulator;
+
+import fr.wollfie.cottus.resources.serial.transport.LoopbackTransport;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Priority;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.Optional;
+
+/**
+ * Attaches a {@link FirmwareEmulator} to the {@link LoopbackTransport} when the application starts, if
+ * {@code cottus.config.transport.loopback.emulator.enabled}, so that the server runs end to end without hardware
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "cottus.config.transport.type", stringValue = "loopback")
+public class FirmwareEmulatorLauncher {
+
+    @Inject LoopbackTransport transport;
+
+    @ConfigProperty(name = "cottus.config.transport.loopback.emulator.enabled") boolean enabled;
+    @ConfigProperty(name = "cottus.config.transport.loopback.emulator.nb-joints") int nbJoints;
+    @ConfigProperty(name = "cottus.config.transport.loopback.emulator.speed-rad-per-sec") double speedRadPerSec;
+    @ConfigProperty(name = "cottus.config.transport.loopback.emulator.feedback-rate-hz") double feedbackRateHz;
+    @ConfigProperty(name = "cottus.config.transport.loopback.emulator.latency-ms") long latencyMs;
+    @ConfigProperty(name = "cottus.config.transport.loopback.emulator.corruption-probability") double corruptionProbability;
+    @ConfigProperty(name = "cottus.config.transport.loopback.emulator.binary") boolean binary;
+    @ConfigProperty(name = "cottus.config.transport.loopback.emulator.seed") Optional<Long> seed;
+
+    private FirmwareEmulator emulator;
+
+    /** @return The running emulator, or null if it is disabled */
+    public FirmwareEmulator getEmulator() { return emulator; }
+
+    /** Runs before the server connects to the arm, so that the emulator receives its first message */
+    void onStart(@Observes @Priority(1000) StartupEvent event) {
+        if (!enabled) { return; }
+        long corruptionSeed = seed.orElseGet(System::nanoTime);
+        this.emulator = new FirmwareEmulator(transport.getDeviceEnd(), new FirmwareEmulator.Settings(
+                nbJoints, speedRadPerSec, feedbackRateHz, latencyMs, corruptionProbability, binary, corruptionSeed
+        ));
+        this.emulator.start();
+        // The seed is logged so that a run without a configured one can be reproduced
+        Log.infof("Started the firmware emulator : %d joints at %.2f rad/s, %d ms of latency, %.1f%% of corruption, seed %d",
+                nbJoints, speedRadPerSec, latencyMs, corruptionProbability * 100, corruptionSeed);
+    }
+
+    @PreDestroy
+    void onDestroy() {
+        if (emulator != null) { emulator.stop(); }
+    }
+}
@@ -2,19 +2,51 @@ package fr.wollfie.cottus.resources.serial.msg;
 
 import org.jboss.resteasy.reactive.common.NotImplementedYet;
 
-/** Message = "SP[value]" */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Message = "SP[value]" for a speed common to all motors, 
+ * or "SP[value]D[value]D...D[value]D" for the speed of each motor */
 public class MotorSpeedMessage extends SerialMessage {
     
     public static final String HEADER = "SP";
+    private static final String END_VALUE_MARKER = "D";
 
     private double radPerSec = -1;
+    /** @return The speed of the slowest motor in radians per second */
     public double getRadPerSec() { return radPerSec; }
 
+    private List<Double> radPerSecPerMotor = Collections.emptyList();
+    /** @return The speed of each motor in radians per second, or an empty list if the
+     * arduino only sent a speed common to all motors */
+    public List<Double> getRadPerSecPerMotor() { return radPerSecPerMotor; }
+
     public MotorSpeedMessage() { super("SP"); }
 
+    public MotorSpeedMessage(double radPerSec) {
+        super(HEADER);
+        this.radPerSec = radPerSec;
+    }
+
+    public MotorSpeedMessage(List<Double> radPerSecPerMotor) {
+        super(HEADER);
+        this.radPerSecPerMotor = List.copyOf(radPerSecPerMotor);
+        this.radPerSec = radPerSecPerMotor.stream().min(Double::compareTo).orElse(-1.0);
+    }
+
     @Override
     protected void parse(String message) {
-        this.radPerSec = Math.toRadians(Double.parseDouble(message));
+        if (!message.contains(END_VALUE_MARKER)) {
+            this.radPerSec = Math.toRadians(Double.parseDouble(message));
+            return;
+        }
+        List<Double> speeds = new ArrayList<>();
+        for (String value : message.split(END_VALUE_MARKER)) {
+            if (!value.isEmpty()) { speeds.add(Math.toRadians(Double.parseDouble(value))); }
+        }
+        this.radPerSecPerMotor = List.copyOf(speeds);
+        this.radPerSec = speeds.stream().min(Double::compareTo).orElse(-1.0);
     }
 
     // For now, no need to send speed to the arduino
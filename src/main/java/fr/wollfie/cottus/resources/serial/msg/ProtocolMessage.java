@@ -0,0 +1,32 @@
+package fr.wollfie.cottus.resources.serial.msg;
+
+/** 
+ * Message = "BP[version]", sent by the server when it connects to offer the binary protocol, and 
+ * answered by the arduino with the same message if it accepts it. Both then switch to binary frames :
+ * the arduino sends frames after its answer, the server after receiving it. Until then the server sends
+ * text, and the arduino decodes text until the first frame it receives.
+ */
+public class ProtocolMessage extends SerialMessage {
+
+    public static final String HEADER = "BP";
+    public static final int BINARY_VERSION = 1;
+
+    private int version = -1;
+    /** @return The version of the binary protocol */
+    public int getVersion() { return version; }
+
+    public ProtocolMessage(int version) {
+        super(HEADER);
+        this.version = version;
+    }
+
+    public ProtocolMessage() { super(HEADER); }
+
+    @Override
+    protected void parse(String message) { this.version = Integer.parseInt(message.trim()); }
+
+    @Override
+    protected String getDataMsg() { return HEADER + version; }
+
+    @Override public boolean isEmpty() { return version < 0; }
+}
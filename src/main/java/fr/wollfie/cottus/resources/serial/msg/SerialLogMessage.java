@@ -8,6 +8,11 @@ public class SerialLogMessage extends SerialMessage {
         super("");
     }
 
+    public SerialLogMessage(String logMsg) {
+        super("");
+        this.logMsg = logMsg;
+    }
+
     @Override
     protected void parse(String message) {
         this.logMsg = message;
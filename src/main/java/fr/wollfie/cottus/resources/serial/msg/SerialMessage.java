@@ -37,6 +37,7 @@ public abstract class SerialMessage {
             msg = switch (header) {
                 case AnglesMessage.HEADER -> new AnglesMessage();
                 case MotorSpeedMessage.HEADER -> new MotorSpeedMessage();
+                case ProtocolMessage.HEADER -> new ProtocolMessage();
                 default -> new SerialLogMessage();
             };
             
@@ -48,30 +49,4 @@ public abstract class SerialMessage {
         msg.parse(message);
         return msg;
     }
-    
-    /** @return A new {@link SerialMessage.Builder} instance */
-    public static Builder buildNew() { return new Builder(); }
-    
-    public static class Builder {
-        private StringBuilder msg = new StringBuilder();
-        private boolean complete;
-
-        private Builder() { }
-        
-        /** Append the data to the packet, and update the state {@link Builder#complete} if the 
-         * data contains a line break, which means the packet is complete */
-        public void append(String data) {
-            this.msg.append(data);
-            this.complete = data.contains("\n");
-        }
-        
-        /** @return If the packet is ready to be converted to a {@link SerialMessage} instance */
-        public boolean isComplete() { return complete; }
-
-        public SerialMessage toMsg() {
-            if (!complete) { throw new IllegalStateException("The message isn't complete"); }
-            
-            return SerialMessage.getPacket(msg.toString().replace("\n", ""));
-        }
-    }
 }
@@ -0,0 +1,134 @@
+package fr.wollfie.cottus.resources.serial.msg;
+
+import fr.wollfie.cottus.resources.serial.ByteRing;
+import fr.wollfie.cottus.resources.serial.SerialFrameListener;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ *     Decodes the text messages received from the arduino, one per line, in place in a {@link ByteRing}.
+ *     The {@link AnglesMessage}, {@link MotorSpeedMessage} and {@link ProtocolMessage} are recognized by their
+ *     header and their numbers are parsed from the bytes directly, any other line is a {@link SerialLogMessage}.
+ * </p>
+ * <p>
+ *     A message with a number that can't be parsed is skipped and counted as a framing error.
+ * </p>
+ */
+public class TextMessageDecoder {
+
+    private static final byte END_OF_LINE = '\n';
+    private static final byte END_VALUE_MARKER = 'D';
+    /** Maximum number of values of a message, the arm has fewer joints */
+    private static final int MAX_VALUES = 32;
+
+    private final SerialFrameListener listener;
+    private final double[] values = new double[MAX_VALUES];
+    private byte[] text = new byte[256];
+    private long framingErrors = 0;
+
+    public TextMessageDecoder(SerialFrameListener listener) { this.listener = listener; }
+
+    /** @return The number of messages that couldn't be parsed since the creation of the decoder */
+    public long getFramingErrors() { return framingErrors; }
+
+    /**
+     * Decode the line at the front of the ring
+     * @return True if a line was consumed, false if the ring doesn't hold a complete line yet
+     */
+    public boolean decodeNext(ByteRing ring) {
+        int endOfLine = ring.indexOf(END_OF_LINE, 0);
+        if (endOfLine < 0) { return false; }
+
+        int end = endOfLine > 0 && ring.get(endOfLine - 1) == '\r' ? endOfLine - 1 : endOfLine;
+        if (!this.decode(ring, end)) { this.framingErrors++; }
+        ring.skip(endOfLine + 1);
+        return true;
+    }
+
+    /** @return False if the message is ill formatted */
+    private boolean decode(ByteRing ring, int end) {
+        if (end == 0) { return true; }
+        if (end >= 2 && isHeader(ring, AnglesMessage.HEADER)) {
+            int count = this.parseValues(ring, 2, end);
+            if (count < 0) { return false; }
+            listener.onAngles(values, count, -1);
+        } else if (end >= 2 && isHeader(ring, MotorSpeedMessage.HEADER)) {
+            int marker = ring.indexOf(END_VALUE_MARKER, 2);
+            if (marker < 0 || marker >= end) {
+                // A single speed common to all the motors
+                double degPerSec = parseNumber(ring, 2, end);
+                if (Double.isNaN(degPerSec)) { return false; }
+                listener.onMotorSpeed(Math.toRadians(degPerSec));
+            } else {
+                int count = this.parseValues(ring, 2, end);
+                if (count < 0) { return false; }
+                listener.onMotorSpeeds(values, count, -1);
+            }
+        } else if (end >= 2 && isHeader(ring, ProtocolMessage.HEADER)) {
+            double version = parseNumber(ring, 2, end);
+            if (Double.isNaN(version)) { return false; }
+            listener.onProtocol((int) version);
+        } else {
+            if (text.length < end) { this.text = new byte[Integer.highestOneBit(end) << 1]; }
+            ring.copy(0, end, text);
+            listener.onLog(new String(text, 0, end, StandardCharsets.UTF_8));
+        }
+        return true;
+    }
+
+    private static boolean isHeader(ByteRing ring, String header) {
+        return ring.get(0) == header.charAt(0) && ring.get(1) == header.charAt(1);
+    }
+
+    /**
+     * Parse the values in degrees separated by {@link TextMessageDecoder#END_VALUE_MARKER} in {@link TextMessageDecoder#values}
+     * @return The number of values, converted to radians, or -1 if one of them can't be parsed
+     */
+    private int parseValues(ByteRing ring, int from, int to) {
+        int count = 0;
+        int start = from;
+        while (start < to) {
+            int marker = ring.indexOf(END_VALUE_MARKER, start);
+            int valueEnd = marker < 0 || marker > to ? to : marker;
+            double degrees = parseNumber(ring, start, valueEnd);
+            if (Double.isNaN(degrees) || count == MAX_VALUES) { return -1; }
+            values[count++] = Math.toRadians(degrees);
+            start = valueEnd + 1;
+        }
+        return count;
+    }
+
+    /** @return The decimal number written between the given indices, or NaN if it isn't one */
+    static double parseNumber(ByteRing ring, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (ring.get(i) == '-' || ring.get(i) == '+')) { negative = ring.get(i++) == '-'; }
+
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean fraction = false;
+        for (; i < to; i++) {
+            byte c = ring.get(i);
+            if (c >= '0' && c <= '9') {
+                // The digits beyond the precision of a long are dropped
+                if (mantissa < Long.MAX_VALUE / 10) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (fraction) { exponent--; }
+                } else if (!fraction) { exponent++; }
+                digits++;
+            } else if (c == '.' && !fraction) { fraction = true; }
+            else if (c == 'e' || c == 'E') {
+                double written = parseNumber(ring, i + 1, to);
+                if (Double.isNaN(written) || written != Math.rint(written)) { return Double.NaN; }
+                exponent += (int) written;
+                break;
+            } else { return Double.NaN; }
+        }
+        if (digits == 0) { return Double.NaN; }
+
+        double value = exponent >= 0 ? mantissa * Math.pow(10, exponent) : mantissa / Math.pow(10, -exponent);
+        return negative ? -value : value;
+    }
+}
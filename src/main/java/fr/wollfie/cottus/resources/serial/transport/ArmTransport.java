@@ -0,0 +1,53 @@
+package fr.wollfie.cottus.resources.serial.transport;
+
+/**
+ * <p>
+ *     Link carrying the bytes between the server and the arm, whatever the medium. The messages and the
+ *     protocol are handled above it, by the {@link fr.wollfie.cottus.resources.serial.SerialCommunication}.
+ * </p>
+ * <p>
+ *     The implementation is chosen at build time with {@code cottus.config.transport.type} : {@code serial}
+ *     for a USB serial port, {@code tcp} for an ESP32 over Wi-Fi, or {@code loopback} for runs without hardware.
+ * </p>
+ */
+public interface ArmTransport {
+
+    /** Receives what the arm sends */
+    interface Listener {
+        /**
+         * Bytes were received. They are always given by the same thread, in order, and the array may be
+         * reused once the method returns
+         */
+        void onBytes(byte[] data, int offset, int length);
+
+        /** The link was lost */
+        void onDisconnected();
+    }
+
+    /** Set the listener of the received bytes, before connecting */
+    void setListener(Listener listener);
+
+    /** 
+     * Open the link 
+     * @return True if the link is open 
+     */
+    boolean connect();
+
+    /** Close the link, does nothing if it is not open */
+    void disconnect();
+
+    /** @return True if the link is open */
+    boolean isConnected();
+
+    /**
+     * Send the bytes to the arm
+     * @return The number of bytes sent, or -1 if they couldn't be
+     */
+    int send(byte[] data, int offset, int length);
+
+    /** @return The number of bytes per second the link can carry, or 0 if it is not a limit */
+    long getBytesPerSecond();
+
+    /** @return A description of the link for the logs */
+    String getDescription();
+}
@@ -0,0 +1,132 @@
+package fr.wollfie.cottus.resources.serial.transport;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.logging.Log;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * <p>
+ *     In-memory link, to run the whole control stack without hardware, in tests and benchmarks. What the
+ *     server sends is received by the {@link LoopbackTransport#getDeviceEnd() device end}, where an emulator
+ *     of the arm or a test can answer.
+ * </p>
+ * <p>
+ *     The bytes are copied when sent and delivered by one thread per direction, so that, as with a real link,
+ *     the sender never runs the code of the receiver.
+ * </p>
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "cottus.config.transport.type", stringValue = "loopback")
+public class LoopbackTransport implements ArmTransport {
+
+    /** Delivers the bytes sent in one direction to the listener of the other end */
+    private static class Pipe {
+        private static final byte[] CLOSE = new byte[0];
+
+        private final String name;
+        /** Queue of the delivery thread, each opening has its own so that the thread of the previous one
+         * drains its queue up to its close, without taking the bytes of the next one */
+        private volatile BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+        private volatile Listener listener;
+        private Thread thread;
+
+        Pipe(String name) { this.name = name; }
+
+        synchronized void open() {
+            if (thread != null) { return; }
+            BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+            this.queue = queue;
+            this.thread = new Thread(() -> this.deliver(queue), name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        synchronized void close() {
+            if (thread == null) { return; }
+            queue.add(CLOSE);
+            this.thread = null;
+        }
+
+        void send(byte[] data, int offset, int length) { queue.add(Arrays.copyOfRange(data, offset, offset + length)); }
+
+        private void deliver(BlockingQueue<byte[]> queue) {
+            try {
+                byte[] data;
+                while ((data = queue.take()) != CLOSE) {
+                    Listener listener = this.listener;
+                    try { if (listener != null) { listener.onBytes(data, 0, data.length); } }
+                    catch (RuntimeException e) { Log.errorf("The listener of the loopback %s failed : %s", name, e.getMessage()); }
+                }
+            } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+    }
+
+    /** The end of the link on the side of the arm */
+    public class DeviceEnd {
+        private DeviceEnd() { }
+
+        /** Set the listener of the bytes sent by the server */
+        public void setListener(Listener listener) { toDevice.listener = listener; }
+
+        /** 
+         * Send bytes to the server 
+         * @return The number of bytes sent, or -1 if the link is closed
+         */
+        public int send(byte[] data, int offset, int length) {
+            if (!connected) { return -1; }
+            toServer.send(data, offset, length);
+            return length;
+        }
+
+        /** @return True if the server opened the link */
+        public boolean isConnected() { return connected; }
+    }
+
+    private final Pipe toDevice = new Pipe("loopback-to-device");
+    private final Pipe toServer = new Pipe("loopback-to-server");
+    private final DeviceEnd deviceEnd = new DeviceEnd();
+    private volatile boolean connected = false;
+
+    /** @return The end of the link on the side of the arm */
+    public DeviceEnd getDeviceEnd() { return deviceEnd; }
+
+    @Override
+    public void setListener(Listener listener) { toServer.listener = listener; }
+
+    @Override
+    public synchronized boolean connect() {
+        toDevice.open();
+        toServer.open();
+        this.connected = true;
+        return true;
+    }
+
+    @PreDestroy
+    @Override
+    public synchronized void disconnect() {
+        this.connected = false;
+        toDevice.close();
+        toServer.close();
+    }
+
+    @Override
+    public boolean isConnected() { return connected; }
+
+    @Override
+    public int send(byte[] data, int offset, int length) {
+        if (!connected) { return -1; }
+        toDevice.send(data, offset, length);
+        return length;
+    }
+
+    @Override
+    public long getBytesPerSecond() { return 0; }
+
+    @Override
+    public String getDescription() { return "in-memory loopback"; }
+}
@@ -0,0 +1,177 @@
+package fr.wollfie.cottus.resources.serial.transport;
+
+import com.fazecast.jSerialComm.SerialPort;
+import com.fazecast.jSerialComm.SerialPortDataListenerWithExceptions;
+import com.fazecast.jSerialComm.SerialPortEvent;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.logging.Log;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/** 
+ * Link to the arduino through a serial port, over USB. The ports are listed again at each connection, and the
+ * port of the arduino is found by its name, USB ids or description, as its name may change when it is plugged again 
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "cottus.config.transport.type", stringValue = "serial", enableIfMissing = true)
+public class SerialPortTransport implements ArmTransport {
+
+    /** Bits on the wire per byte, with its start and stop bits */
+    private static final int BITS_PER_BYTE = 10;
+
+    @ConfigProperty(name = "cottus.config.transport.serial.port") Optional<String> portName;
+    @ConfigProperty(name = "cottus.config.transport.serial.vendor-id") Optional<String> vendorId;
+    @ConfigProperty(name = "cottus.config.transport.serial.product-id") Optional<String> productId;
+    @ConfigProperty(name = "cottus.config.transport.serial.descriptor") Optional<String> descriptor;
+    @ConfigProperty(name = "cottus.config.transport.serial.baud-rate") int baudRate;
+
+    private volatile SerialPort activePort;
+    private boolean portsListed = false;
+    private volatile Listener listener;
+    /** Only used by the thread of the event listener of the port */
+    private final byte[] readBuffer = new byte[1024];
+
+    @Override
+    public void setListener(Listener listener) { this.listener = listener; }
+
+    /** @return All the serial ports available for this device */
+    public List<SerialPort> getAllPorts() { return Arrays.asList(SerialPort.getCommPorts()); }
+
+    @Override
+    public synchronized boolean connect() {
+        List<SerialPort> ports = this.getAllPorts();
+        this.logPorts(ports);
+
+        Optional<SerialPort> port = ports.stream().filter(this::matches).findFirst();
+        if (port.isEmpty()) {
+            Log.warnf("No available serial port to connect to...");
+            return false;
+        }
+        return this.open(port.get());
+    }
+
+    /** @return True if the port has the configured name, USB ids and description, any port if none is configured */
+    private boolean matches(SerialPort port) {
+        if (portName.isPresent() && !port.getSystemPortName().equals(portName.get())) { return false; }
+        if (vendorId.isPresent() && port.getVendorID() != parseUsbId(vendorId.get())) { return false; }
+        if (productId.isPresent() && port.getProductID() != parseUsbId(productId.get())) { return false; }
+        return descriptor.isEmpty()
+                || port.getPortDescription().contains(descriptor.get())
+                || port.getDescriptivePortName().contains(descriptor.get());
+    }
+
+    private static int parseUsbId(String id) {
+        try { return Integer.parseInt(id, 16); }
+        catch (NumberFormatException e) { throw new IllegalArgumentException(String.format("Invalid USB id %s", id)); }
+    }
+
+    /** Log the available ports the first time, then only when debugging, as they are listed at each reconnection */
+    private void logPorts(List<SerialPort> ports) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\nUsing jSerialComm Library Version v").append(SerialPort.getVersion());
+        sb.append("\nAvailable Ports:\n");
+        for (int i = 0; i < ports.size(); ++i) {
+            sb.append("   [").append(i).append("] ")
+                    .append(ports.get(i).getSystemPortName())
+                    .append(": ").append(ports.get(i).getDescriptivePortName())
+                    .append(" - ").append(ports.get(i).getPortDescription())
+                    .append(String.format(" [%04X:%04X]", ports.get(i).getVendorID(), ports.get(i).getProductID()))
+                    .append("\n");
+        }
+        if (portsListed) { Log.debug(sb.toString()); }
+        else { Log.info(sb.toString()); }
+        this.portsListed = true;
+    }
+
+    private boolean open(SerialPort port) {
+        this.activePort = port;
+        
+        if (activePort.isOpen()) {
+            Log.errorf("Failed to connect to port %s because it is already opened by another device!",
+                    activePort.getPortDescription());
+            this.activePort = null;
+            return false;
+        } else if (!activePort.openPort()) {
+            Log.errorf("Failed to connect to port %s for unknown reasons...",
+                    activePort.getPortDescription());
+            this.activePort = null;
+            return false;
+        } else { Log.infof("%s port opened.", activePort.getPortDescription()); }
+
+        if (!activePort.setBaudRate(baudRate)){
+            Log.errorf("%d bauds is disallowed by this system !", baudRate);
+            this.disconnect();
+            return false;
+        }
+        
+        boolean success = activePort.addDataListener(new SerialPortDataListenerWithExceptions() {
+
+            @Override
+            public void catchException(Exception e) { Log.error(e); }
+
+            @Override
+            public void serialEvent(SerialPortEvent event) {
+                if (event.getEventType() == SerialPort.LISTENING_EVENT_DATA_AVAILABLE) {
+                    
+                    // Several messages, or the start of the next one, may be read at once
+                    int available;
+                    while ((available = port.bytesAvailable()) > 0) {
+                        int length = port.readBytes(readBuffer, Math.min(available, readBuffer.length));
+                        if (length <= 0) { break; }
+                        if (listener != null) { listener.onBytes(readBuffer, 0, length); }
+                    }
+                } else if (event.getEventType() == SerialPort.LISTENING_EVENT_PORT_DISCONNECTED) {
+                    if (listener != null) { listener.onDisconnected(); }
+                }
+            }
+
+            @Override
+            public int getListeningEvents() {
+                return SerialPort.LISTENING_EVENT_DATA_AVAILABLE | SerialPort.LISTENING_EVENT_PORT_DISCONNECTED;
+            }
+        });
+        
+        if (!success) {
+            Log.error("An error occurred during the registration of the port event listener...");
+            this.disconnect();
+        } else { Log.info("Successfully connected to the port and registered the event listener..."); }
+        return success;
+    }
+
+    @Override
+    public synchronized void disconnect() {
+        SerialPort port = this.activePort;
+        if (port == null) { return; }
+        // The port is forgotten even if it can't be closed, the next connection lists the ports again
+        this.activePort = null;
+        port.removeDataListener();
+        if (port.isOpen() && !port.closePort()) { Log.errorf("Failed to close %s", port.getSystemPortName()); }
+    }
+
+    @Override
+    public boolean isConnected() {
+        SerialPort port = this.activePort;
+        return port != null && port.isOpen();
+    }
+
+    /** Called from the writer, the trajectory streamer and the handshake, whose frames must not interleave */
+    @Override
+    public synchronized int send(byte[] data, int offset, int length) {
+        SerialPort port = this.activePort;
+        if (port == null) { return -1; }
+        return port.writeBytes(data, length, offset);
+    }
+
+    @Override
+    public long getBytesPerSecond() { return baudRate / BITS_PER_BYTE; }
+
+    @Override
+    public String getDescription() {
+        SerialPort port = this.activePort;
+        return port == null ? "serial port" : String.format("serial port %s at %d bauds", port.getSystemPortName(), baudRate);
+    }
+}
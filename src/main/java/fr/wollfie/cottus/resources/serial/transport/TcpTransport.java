@@ -0,0 +1,102 @@
+package fr.wollfie.cottus.resources.serial.transport;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.logging.Log;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/** 
+ * Link to the arm through a TCP connection, to an ESP32 over Wi-Fi or to a stand-in running locally. 
+ * The received bytes are read by a thread of their own 
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "cottus.config.transport.type", stringValue = "tcp")
+public class TcpTransport implements ArmTransport {
+
+    private static final int CONNECT_TIMEOUT_MS = 3000;
+
+    @ConfigProperty(name = "cottus.config.transport.tcp.host") String host;
+    @ConfigProperty(name = "cottus.config.transport.tcp.port") int port;
+
+    private volatile Socket socket;
+    private OutputStream output;
+    private volatile Listener listener;
+
+    @Override
+    public void setListener(Listener listener) { this.listener = listener; }
+
+    @Override
+    public synchronized boolean connect() {
+        if (this.isConnected()) { return true; }
+        try {
+            Socket socket = new Socket();
+            // The commands are small and sent as soon as they are ready, they must not wait to be coalesced
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            this.output = socket.getOutputStream();
+            this.socket = socket;
+        } catch (IOException e) {
+            Log.errorf("Failed to connect to %s:%d : %s", host, port, e.getMessage());
+            return false;
+        }
+
+        Thread reader = new Thread(() -> this.read(socket), "tcp-transport-reader");
+        reader.setDaemon(true);
+        reader.start();
+        Log.infof("Connected to %s:%d", host, port);
+        return true;
+    }
+
+    private void read(Socket socket) {
+        byte[] buffer = new byte[4096];
+        try (InputStream input = socket.getInputStream()) {
+            int length;
+            while ((length = input.read(buffer)) >= 0) {
+                if (listener != null && length > 0) { listener.onBytes(buffer, 0, length); }
+            }
+        } catch (IOException e) {
+            if (!socket.isClosed()) { Log.warnf("Lost the connection to %s:%d : %s", host, port, e.getMessage()); }
+        }
+        // The socket is only replaced by a new connection once this one is closed
+        boolean lost = this.socket == socket && !socket.isClosed();
+        this.close(socket);
+        if (lost && listener != null) { listener.onDisconnected(); }
+    }
+
+    @Override
+    public synchronized void disconnect() {
+        if (socket != null) { this.close(socket); }
+    }
+
+    private void close(Socket socket) {
+        try { socket.close(); }
+        catch (IOException e) { Log.warnf("Cannot close the connection to %s:%d : %s", host, port, e.getMessage()); }
+    }
+
+    @Override
+    public boolean isConnected() { return socket != null && socket.isConnected() && !socket.isClosed(); }
+
+    @Override
+    public synchronized int send(byte[] data, int offset, int length) {
+        if (!this.isConnected()) { return -1; }
+        try {
+            output.write(data, offset, length);
+            return length;
+        } catch (IOException e) {
+            Log.warnf("Cannot send to %s:%d : %s", host, port, e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public long getBytesPerSecond() { return 0; }
+
+    @Override
+    public String getDescription() { return String.format("TCP connection to %s:%d", host, port); }
+}
@@ -32,6 +32,12 @@ public interface ArmCommunicationService {
      * taking into account their reduction ratio and micro stepping)
      */
     double getMotorSpeed();
+
+    /**
+     * @return The number of radians per seconds of each motor, taking into account their reduction ratio
+     * and micro stepping. If the arduino only reported a speed common to all motors, it is used for each of them
+     */
+    List<Double> getMotorSpeeds();
     
     /** @return The angles in radians of each motor */
     List<Double> getAngles();
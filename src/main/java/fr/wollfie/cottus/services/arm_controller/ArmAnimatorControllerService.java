@@ -2,6 +2,8 @@ package fr.wollfie.cottus.services.arm_controller;
 
 import fr.wollfie.cottus.dto.animation.ArmAnimation;
 import fr.wollfie.cottus.dto.specification.ArmSpecification;
+import fr.wollfie.cottus.models.animation.AnimationPlaylist;
+import fr.wollfie.cottus.models.animation.PlaybackStatistics;
 
 /** Handles animation of the arm, i.e., recording and replay of chained {@link ArmSpecification } */
 public interface ArmAnimatorControllerService extends ArmControllerService {
@@ -15,4 +17,21 @@ public interface ArmAnimatorControllerService extends ArmControllerService {
      * @return True if the animation could be played, false if another animation was already playing
      */
     boolean playAnimation(ArmAnimation animation);
+
+    /**
+     * Plays the animations of a playlist back to back, without going back to manual control in between
+     * @param playlist The playlist to play
+     * @return True if the playlist could be played, false if another animation was already playing
+     */
+    boolean playPlaylist(AnimationPlaylist playlist);
+
+    /**
+     * Appends an animation to the playlist currently playing, or plays it right away if nothing is playing
+     * @param animation The animation to queue
+     * @return True if the animation was queued, false if the current playlist was already ending
+     */
+    boolean queueAnimation(ArmAnimation animation);
+
+    /** @return The counters of the current animation's playback, or of the last one if none is playing */
+    PlaybackStatistics getPlaybackStatistics();
 }
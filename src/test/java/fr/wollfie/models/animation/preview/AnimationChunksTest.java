@@ -0,0 +1,71 @@
+package fr.wollfie.models.animation.preview;
+
+import fr.wollfie.cottus.dto.CottusArm;
+import fr.wollfie.cottus.dto.animation.ArmAnimation;
+import fr.wollfie.cottus.exception.AngleOutOfBoundsException;
+import fr.wollfie.cottus.exception.NoSolutionException;
+import fr.wollfie.cottus.models.animation.pathing.ComposedAnimation;
+import fr.wollfie.cottus.models.animation.pathing.LineToAnimation;
+import fr.wollfie.cottus.models.animation.preview.AnimationChunks;
+import fr.wollfie.cottus.models.animation.preview.AnimationSampler;
+import fr.wollfie.cottus.models.arm.positioning.specification.AbsoluteEndEffectorSpecification;
+import fr.wollfie.cottus.models.arm.positioning.specification.AngleSpecification;
+import fr.wollfie.cottus.services.ArmStateService;
+import fr.wollfie.cottus.services.arm_controller.ArmManualControllerService;
+import fr.wollfie.cottus.utils.maths.Vector3D;
+import fr.wollfie.cottus.utils.maths.rotation.Rotation;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.util.List;
+
+import static java.lang.Math.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+@QuarkusTest
+public class AnimationChunksTest {
+
+    private static final double RATE_HZ = 20;
+
+    @Inject ArmManualControllerService manualControllerService;
+    @Inject ArmStateService manipulatorService;
+    @Inject AnimationSampler animationSampler;
+
+    /** @return Two relative lines, each anchored where the previous one ends */
+    private static ArmAnimation relativeLines() {
+        return new ComposedAnimation(List.of(
+                new LineToAnimation(true, Vector3D.of(0, 50, -50), 1.0),
+                new LineToAnimation(true, Vector3D.of(50, 0, 0), 1.0)
+        ));
+    }
+
+    @Test
+    void chunkedFramesMatchTheFramesSolvedInOrder() throws AngleOutOfBoundsException, NoSolutionException {
+        manipulatorService.moveGiven(new AngleSpecification( 0, -PI, 0, -PI, 0, -PI, 0 ));
+        manualControllerService.moveTo(new AbsoluteEndEffectorSpecification(
+                Vector3D.of(20, 0, 753.2-40), Rotation.from(Vector3D.of(0, 1.0, 0)), 0
+        ));
+
+        double[][] expected = animationSampler.bake(relativeLines(), RATE_HZ);
+
+        // A fresh animation, anchored by the priming pass only
+        ArmAnimation animation = relativeLines();
+        List<AnimationChunks.Chunk> chunks = AnimationChunks.prepare(
+                animation, manipulatorService.getArmState(), expected.length, 1 / RATE_HZ, 4
+        );
+        assertThat(chunks, hasSize(4));
+
+        for (AnimationChunks.Chunk chunk : chunks) {
+            CottusArm arm = chunk.arm();
+            for (int i = chunk.from(); i < chunk.to(); i++) {
+                List<Double> angles = animation.evaluateAt(i / RATE_HZ).getAnglesFor(arm);
+                arm.setAngles(angles);
+                for (int j = 0; j < angles.size(); j++) {
+                    assertThat(angles.get(j), closeTo(expected[i][j], 1e-3));
+                }
+            }
+        }
+    }
+}
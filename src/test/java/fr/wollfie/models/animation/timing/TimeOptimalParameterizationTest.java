@@ -0,0 +1,63 @@
+package fr.wollfie.models.animation.timing;
+
+import fr.wollfie.cottus.models.animation.timing.TimeOptimalParameterization;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+public class TimeOptimalParameterizationTest {
+
+    /** @return A single joint path going linearly from 0 to {@code distance} in {@code n} samples */
+    private static double[][] linearPath(double distance, int n) {
+        double[][] path = new double[n][1];
+        for (int i = 0; i < n; i++) { path[i][0] = distance * i / (n - 1); }
+        return path;
+    }
+
+    private static double[] uniformTimes(int n, double dt) {
+        double[] times = new double[n];
+        for (int i = 0; i < n; i++) { times[i] = i * dt; }
+        return times;
+    }
+
+    @Test void trapezoidalProfileHasExpectedDuration() {
+        // 1 rad at 1 rad/s and 2 rad/s^2 : 0.5s to accelerate, 0.5s to decelerate, 0.5s at full speed
+        double[] timestamps = TimeOptimalParameterization.computeTimestamps(
+                linearPath(1, 101), uniformTimes(101, 0.1), new double[] {1}, new double[] {2}
+        );
+        assertThat(timestamps[100], closeTo(1.5, 1e-6));
+    }
+
+    @Test void velocityLimitIsNeverExceeded() {
+        double[][] path = linearPath(2, 201);
+        double[] timestamps = TimeOptimalParameterization.computeTimestamps(
+                path, uniformTimes(201, 0.1), new double[] {0.5}, new double[] {1}
+        );
+        for (int i = 0; i < 200; i++) {
+            double velocity = (path[i + 1][0] - path[i][0]) / (timestamps[i + 1] - timestamps[i]);
+            assertThat(velocity, lessThanOrEqualTo(0.5 + 1e-9));
+        }
+    }
+
+    @Test void stationarySegmentsKeepTheirDuration() {
+        // Move, wait 1s, move back
+        int n = 31;
+        double[][] path = new double[n][1];
+        for (int i = 0; i < n; i++) { path[i][0] = i <= 10 ? i * 0.01 : (i <= 20 ? 0.1 : 0.1 - (i - 20) * 0.01); }
+        double[] timestamps = TimeOptimalParameterization.computeTimestamps(
+                path, uniformTimes(n, 0.1), new double[] {1}, new double[] {2}
+        );
+        assertThat(timestamps[20] - timestamps[10], closeTo(1.0, 1e-9));
+    }
+
+    @Test void slowestJointDrivesTheTiming() {
+        double[][] path = new double[11][2];
+        for (int i = 0; i < 11; i++) { path[i][0] = i * 0.1; path[i][1] = i * 0.01; }
+        double[] timestamps = TimeOptimalParameterization.computeTimestamps(
+                path, uniformTimes(11, 0.1), new double[] {1, 0.01}, new double[] {100, 100}
+        );
+        // Second joint moves 0.1 rad at 0.01 rad/s
+        assertThat(timestamps[10], greaterThanOrEqualTo(10.0));
+    }
+}
@@ -0,0 +1,78 @@
+package fr.wollfie.models.animation.track;
+
+import fr.wollfie.cottus.exception.InvalidTrackException;
+import fr.wollfie.cottus.models.animation.pathing.TrackAnimation;
+import fr.wollfie.cottus.models.animation.track.AnimationTrack;
+import fr.wollfie.cottus.models.animation.track.AnimationTrackWriter;
+import fr.wollfie.cottus.models.animation.track.AnimationTracks;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AnimationTrackTest {
+
+    /** @return {@code n} samples of {@code nbJoints} joints following slow sine waves */
+    private static double[][] sineSamples(int n, int nbJoints) {
+        double[][] samples = new double[n][nbJoints];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < nbJoints; j++) { samples[i][j] = Math.sin(i * 0.01 + j) * (j + 1) * 0.5; }
+        }
+        return samples;
+    }
+
+    @Test void samplesSurviveTheRoundTrip(@TempDir Path directory) throws IOException, InvalidTrackException {
+        double[][] samples = sineSamples(1000, 7);
+        Path path = directory.resolve("sine.ctrk");
+        AnimationTrackWriter.write(path, 30, samples);
+
+        AnimationTrack track = AnimationTrack.open(path);
+        assertThat(track.getNbSamples(), is(1000));
+        assertThat(track.getNbJoints(), is(7));
+        assertThat(track.getDurationSecs(), closeTo(999 / 30.0, 1e-4));
+
+        double[] angles = new double[7];
+        // In reverse order, seeking doesn't depend on the previous read
+        for (int i = samples.length - 1; i >= 0; i--) {
+            track.read(i, angles);
+            for (int j = 0; j < 7; j++) { assertThat(angles[j], closeTo(samples[i][j], AnimationTrackWriter.DEFAULT_QUANTUM_RAD)); }
+        }
+    }
+
+    @Test void interpolatesBetweenSamples(@TempDir Path directory) throws IOException, InvalidTrackException {
+        Path path = directory.resolve("line.ctrk");
+        AnimationTrackWriter.write(path, 10, new double[][] { {0}, {1} });
+
+        AnimationTrack track = AnimationTrack.open(path);
+        double[] angles = new double[1];
+        track.interpolate(0.025, angles);
+        assertThat(angles[0], closeTo(0.25, 1e-3));
+        track.interpolate(5, angles);
+        assertThat(angles[0], closeTo(1, 1e-3));
+    }
+
+    @Test void corruptedTrackIsRejected(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("corrupted.ctrk");
+        AnimationTrackWriter.write(path, 30, sineSamples(100, 3));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(file.length() - 10);
+            file.write(0x7F);
+        }
+        assertThrows(InvalidTrackException.class, () -> AnimationTrack.open(path));
+    }
+
+    @Test void trackNamesStayInTheDirectory() {
+        assertThat(AnimationTracks.isValidName("sine"), is(true));
+        assertThat(AnimationTracks.isValidName("recordings/sine"), is(true));
+        assertThat(AnimationTracks.isValidName("/etc/passwd"), is(false));
+        assertThat(AnimationTracks.isValidName("../sine"), is(false));
+        assertThat(AnimationTracks.isValidName("recordings/../../sine"), is(false));
+        assertThrows(IllegalArgumentException.class, () -> new TrackAnimation("/etc/passwd"));
+    }
+}
@@ -0,0 +1,140 @@
+package fr.wollfie.repositories.animation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.wollfie.cottus.models.animation.pathing.*;
+import fr.wollfie.cottus.models.animation.validation.AnimationValidation;
+import fr.wollfie.cottus.repositories.animation.AnimationCodec;
+import fr.wollfie.cottus.repositories.animation.AnimationRepositoryEntryImpl;
+import fr.wollfie.cottus.utils.maths.Vector3D;
+import io.quarkus.test.junit.QuarkusTest;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonString;
+import org.bson.BsonType;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+@QuarkusTest
+public class AnimationCodecTest {
+
+    @Inject AnimationCodec codec;
+    @Inject ObjectMapper objectMapper;
+
+    private static final AnimationValidation INVALID = new AnimationValidation(
+            false, true, 20, List.of(new AnimationValidation.Segment(0.5, 0.75))
+    );
+
+    private BsonDocument encode(AnimationRepositoryEntryImpl entry) {
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), entry, EncoderContext.builder().build());
+        return document;
+    }
+
+    private AnimationRepositoryEntryImpl decode(BsonDocument document) {
+        return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+
+    /** Encode the primitive, decode it, and check that the decoded entry is encoded the same way */
+    private <T extends AnimationPrimitive> T roundTrip(T primitive, Class<T> type) {
+        BsonDocument document = encode(new AnimationRepositoryEntryImpl("codec", primitive, INVALID));
+        assertThat(document.get("animation").getBsonType(), is(BsonType.DOCUMENT));
+
+        AnimationRepositoryEntryImpl decoded = decode(document);
+        assertThat(decoded.getName(), is("codec"));
+        assertThat(decoded.getValidation(), is(INVALID));
+        assertThat(decoded.getAnimation(), instanceOf(type));
+        assertThat(encode(decoded), is(document));
+        return type.cast(decoded.getAnimation());
+    }
+
+    @Test void bezierSurvivesTheRoundTrip() {
+        BezierToAnimation bezier = roundTrip(new BezierToAnimation(
+                true, Vector3D.of(10, 20, 30), 2, Vector3D.of(1, 2, 3), Vector3D.of(4, 5, 6)
+        ), BezierToAnimation.class);
+        assertThat(bezier.isRelative(), is(true));
+        assertThat(bezier.getAnchorPoints().length, is(2));
+        assertThat(bezier.getTimeSec(), closeTo(2, 1e-9));
+    }
+
+    @Test void composedSurvivesTheRoundTrip() {
+        ComposedAnimation composed = roundTrip(new ComposedAnimation(List.of(
+                new LineToAnimation(false, Vector3D.of(0, 0, 100), 1),
+                new WaitAnimation(0.5)
+        )), ComposedAnimation.class);
+        assertThat(composed.getAnimations(), contains(instanceOf(LineToAnimation.class), instanceOf(WaitAnimation.class)));
+        assertThat(composed.getDurationSecs(), closeTo(1.5, 1e-9));
+    }
+
+    @Test void jointsSurviveTheRoundTrip() {
+        JointSpaceAnimation joints = roundTrip(new JointSpaceAnimation(
+                new double[] { 0, 0.5, 1 }, new double[][] { { 0, 1 }, { 0.5, 1.5 }, { 1, 2 } }
+        ), JointSpaceAnimation.class);
+        assertThat(joints.getTimestamps()[2], closeTo(1, 1e-9));
+        assertThat(joints.getAngles()[1][1], closeTo(1.5, 1e-9));
+    }
+
+    @Test void lineSurvivesTheRoundTrip() {
+        LineToAnimation line = roundTrip(new LineToAnimation(true, Vector3D.of(0, 50, -50), 1.5), LineToAnimation.class);
+        assertThat(line.isRelative(), is(true));
+        assertThat(line.getPosition().y, closeTo(50, 1e-9));
+        assertThat(line.getTimeSec(), closeTo(1.5, 1e-9));
+    }
+
+    @Test void retimedSurvivesTheRoundTrip() {
+        RetimedAnimation retimed = roundTrip(new RetimedAnimation(
+                new WaitAnimation(1), new double[] { 0, 1 }, new double[] { 0, 2 }
+        ), RetimedAnimation.class);
+        assertThat(retimed.getAnimation(), instanceOf(WaitAnimation.class));
+        assertThat(retimed.getDurationSecs(), closeTo(2, 1e-9));
+    }
+
+    @Test void semicircleSurvivesTheRoundTrip() {
+        SemiCircleToAnimation semiCircle = roundTrip(new SemiCircleToAnimation(
+                false, Vector3D.of(100, 0, 0), 3, 90, Vector3D.of(0, 1, 0)
+        ), SemiCircleToAnimation.class);
+        assertThat(semiCircle.getAngleDeg(), closeTo(90, 1e-9));
+        assertThat(semiCircle.getCircleDirection().y, closeTo(1, 1e-9));
+    }
+
+    @Test void trackSurvivesTheRoundTrip() {
+        // The track itself isn't needed, only its name is stored
+        TrackAnimation track = roundTrip(new TrackAnimation("codec/track"), TrackAnimation.class);
+        assertThat(track.getName(), is("codec/track"));
+    }
+
+    @Test void waitSurvivesTheRoundTrip() {
+        WaitAnimation wait = roundTrip(new WaitAnimation(0.25), WaitAnimation.class);
+        assertThat(wait.getTimeSec(), closeTo(0.25, 1e-9));
+    }
+
+    @Test void legacyJsonDocumentIsDecoded() throws JsonProcessingException {
+        AnimationPrimitive animation = new ComposedAnimation(List.of(
+                new LineToAnimation(true, Vector3D.of(0, 0, 100), 2),
+                new WaitAnimation(1)
+        ));
+        BsonDocument legacy = new BsonDocument()
+                .append("name", new BsonString("legacy"))
+                .append("animation", new BsonString(objectMapper.writeValueAsString(animation)))
+                .append("validation", new BsonString(objectMapper.writeValueAsString(INVALID)));
+
+        AnimationRepositoryEntryImpl decoded = decode(legacy);
+        assertThat(decoded.getName(), is("legacy"));
+        assertThat(decoded.getValidation(), is(INVALID));
+        assertThat(decoded.getAnimation(), instanceOf(ComposedAnimation.class));
+        assertThat(decoded.getAnimation().getDurationSecs(), closeTo(3, 1e-9));
+
+        // Saved again, it is stored as a document
+        BsonDocument document = encode(decoded);
+        assertThat(document.get("animation").getBsonType(), is(BsonType.DOCUMENT));
+        assertThat(decode(document).getAnimation().getDurationSecs(), closeTo(3, 1e-9));
+    }
+}
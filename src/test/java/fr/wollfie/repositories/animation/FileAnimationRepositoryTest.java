@@ -0,0 +1,135 @@
+package fr.wollfie.repositories.animation;
+
+import fr.wollfie.cottus.exception.AnimationNotFoundException;
+import fr.wollfie.cottus.models.animation.pathing.WaitAnimation;
+import fr.wollfie.cottus.repositories.animation.AnimationCodec;
+import fr.wollfie.cottus.repositories.animation.FileAnimationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FileAnimationRepositoryTest {
+
+    @TempDir Path directory;
+    private FileAnimationRepository repository;
+
+    /** Open the log of the directory, replaying it */
+    private FileAnimationRepository open(long compactionMinBytes) {
+        if (repository != null) { repository.close(); }
+        repository = new FileAnimationRepository(new AnimationCodec(), directory.toString(), compactionMinBytes);
+        return repository;
+    }
+
+    private Path log() { return directory.resolve("animations.log"); }
+
+    private double durationOf(String name) throws AnimationNotFoundException {
+        return repository.getAnimationByName(name).getAnimation().getDurationSecs();
+    }
+
+    @AfterEach void close() {
+        if (repository != null) { repository.close(); }
+    }
+
+    @Test void replayKeepsTheLatestRecordOfEachName() throws AnimationNotFoundException {
+        open(Long.MAX_VALUE);
+        repository.save("a", new WaitAnimation(1), null);
+        repository.save("b", new WaitAnimation(2), null);
+        repository.save("a", new WaitAnimation(3), null);
+
+        open(Long.MAX_VALUE);
+        assertThat(repository.listAllAnimations(), hasSize(2));
+        assertThat(durationOf("a"), closeTo(3, 1e-9));
+        assertThat(durationOf("b"), closeTo(2, 1e-9));
+    }
+
+    @Test void tornTrailingRecordIsTruncated() throws IOException, AnimationNotFoundException {
+        open(Long.MAX_VALUE);
+        repository.save("a", new WaitAnimation(1), null);
+        long intact = Files.size(log());
+        repository.save("b", new WaitAnimation(2), null);
+        repository.close();
+
+        // A crash while the last record was written
+        try (RandomAccessFile file = new RandomAccessFile(log().toFile(), "rw")) { file.setLength(file.length() - 5); }
+
+        open(Long.MAX_VALUE);
+        assertThat(Files.size(log()), is(intact));
+        assertThat(durationOf("a"), closeTo(1, 1e-9));
+        assertThrows(AnimationNotFoundException.class, () -> repository.getAnimationByName("b"));
+
+        // The next record is appended after the last intact one
+        repository.save("c", new WaitAnimation(3), null);
+        open(Long.MAX_VALUE);
+        assertThat(repository.listAllAnimations(), hasSize(2));
+        assertThat(durationOf("c"), closeTo(3, 1e-9));
+    }
+
+    @Test void corruptedLastRecordIsRejected() throws IOException, AnimationNotFoundException {
+        open(Long.MAX_VALUE);
+        repository.save("a", new WaitAnimation(1), null);
+        long intact = Files.size(log());
+        repository.save("b", new WaitAnimation(2), null);
+        repository.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(log().toFile(), "rw")) {
+            file.seek(file.length() - 3);
+            int value = file.read();
+            file.seek(file.length() - 3);
+            file.write(value ^ 0xFF);
+        }
+
+        open(Long.MAX_VALUE);
+        assertThat(Files.size(log()), is(intact));
+        assertThat(durationOf("a"), closeTo(1, 1e-9));
+        assertThrows(AnimationNotFoundException.class, () -> repository.getAnimationByName("b"));
+    }
+
+    @Test void corruptedRecordBeforeTheLastFailsTheReplay() throws IOException {
+        open(Long.MAX_VALUE);
+        repository.save("a", new WaitAnimation(1), null);
+        repository.save("b", new WaitAnimation(2), null);
+        repository.close();
+        repository = null;
+        long size = Files.size(log());
+
+        // A byte of the payload of the first record
+        try (RandomAccessFile file = new RandomAccessFile(log().toFile(), "rw")) {
+            file.seek(12);
+            int value = file.read();
+            file.seek(12);
+            file.write(value ^ 0xFF);
+        }
+
+        // The valid record after the corrupted one is kept in the log
+        assertThrows(UncheckedIOException.class, () -> open(Long.MAX_VALUE));
+        assertThat(Files.size(log()), is(size));
+    }
+
+    @Test void compactionOnlyKeepsTheLatestRecords() throws IOException, AnimationNotFoundException {
+        open(0);
+        repository.save("a", new WaitAnimation(1), null);
+        long recordBytes = Files.size(log());
+        for (int i = 2; i <= 10; i++) { repository.save("a", new WaitAnimation(i), null); }
+        repository.save("b", new WaitAnimation(20), null);
+
+        // The log is compacted as soon as the replaced records take more room than the live ones
+        assertThat(Files.size(log()), lessThanOrEqualTo(3 * recordBytes));
+        assertThat(Files.exists(directory.resolve("animations.log.compact")), is(false));
+        assertThat(durationOf("a"), closeTo(10, 1e-9));
+
+        open(0);
+        assertThat(repository.listAllAnimations(), hasSize(2));
+        assertThat(durationOf("a"), closeTo(10, 1e-9));
+        assertThat(durationOf("b"), closeTo(20, 1e-9));
+    }
+}
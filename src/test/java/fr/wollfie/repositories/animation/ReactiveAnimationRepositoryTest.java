@@ -0,0 +1,102 @@
+package fr.wollfie.repositories.animation;
+
+import fr.wollfie.cottus.dto.animation.AnimationSummary;
+import fr.wollfie.cottus.exception.AnimationNotFoundException;
+import fr.wollfie.cottus.models.animation.pathing.WaitAnimation;
+import fr.wollfie.cottus.repositories.animation.ReactiveAnimationRepository;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.smallrye.mutiny.helpers.test.UniAssertSubscriber;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+@QuarkusTest
+public class ReactiveAnimationRepositoryTest {
+
+    @Inject ReactiveAnimationRepository repository;
+
+    @Test
+    void savedAnimationIsReadBack() {
+        repository.save("reactive-wait", new WaitAnimation(1.5), null).await().indefinitely();
+
+        double duration = repository.getAnimationByName("reactive-wait").await().indefinitely()
+                .getAnimation().getDurationSecs();
+        assertThat(duration, closeTo(1.5, 1e-9));
+    }
+
+    @Test
+    void missingAnimationFailsWithNotFound() {
+        repository.getAnimationByName("reactive-missing")
+                .subscribe().withSubscriber(UniAssertSubscriber.create())
+                .awaitFailure()
+                .assertFailedWith(AnimationNotFoundException.class);
+    }
+
+    @Test
+    void summariesArePagedByTheirCursor() {
+        List<String> saved = List.of("reactive-page-1", "reactive-page-2", "reactive-page-3");
+        for (String name : saved) { repository.save(name, new WaitAnimation(1), null).await().indefinitely(); }
+
+        List<String> names = new ArrayList<>();
+        String cursor = null;
+        List<AnimationSummary> page;
+        do {
+            page = repository.listSummaries(cursor, 1).collect().asList().await().indefinitely();
+            assertThat(page.size(), lessThanOrEqualTo(1));
+            for (AnimationSummary summary : page) {
+                names.add(summary.name());
+                cursor = summary.cursor();
+            }
+        } while (!page.isEmpty());
+
+        assertThat(names, hasItems(saved.toArray(String[]::new)));
+    }
+
+    @Test
+    void savingAgainReplacesTheEntry() {
+        repository.save("reactive-replaced", new WaitAnimation(1), null).await().indefinitely();
+        String id = summaryOf("reactive-replaced").id();
+        repository.save("reactive-replaced", new WaitAnimation(2), null).await().indefinitely();
+
+        List<AnimationSummary> summaries = repository.listSummaries(null, 500).collect().asList().await().indefinitely()
+                .stream().filter(summary -> summary.name().equals("reactive-replaced")).toList();
+        assertThat(summaries, hasSize(1));
+        assertThat(summaries.get(0).id(), allOf(notNullValue(), is(id)));
+        assertThat(summaries.get(0).durationSecs(), closeTo(2, 1e-9));
+    }
+
+    private AnimationSummary summaryOf(String name) {
+        return repository.listSummaries(null, 500).collect().asList().await().indefinitely()
+                .stream().filter(summary -> summary.name().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void missingAnimationsAreBadRequests() {
+        given().queryParam("name", "reactive-missing").contentType(ContentType.JSON)
+                .when().post("/api/arm-animation/play")
+                .then().statusCode(400);
+        given().queryParam("name", "reactive-missing")
+                .when().post("/api/arm-animation/queue")
+                .then().statusCode(400);
+        given().contentType(ContentType.JSON).body("[\"reactive-missing\"]")
+                .when().post("/api/arm-animation/playlist")
+                .then().statusCode(400);
+    }
+
+    @Test
+    void loopingPlaylistWithoutDurationIsBadRequest() {
+        repository.save("reactive-instant", new WaitAnimation(0), null).await().indefinitely();
+
+        given().queryParam("loop", true)
+                .contentType(ContentType.JSON).body("[\"reactive-instant\"]")
+                .when().post("/api/arm-animation/playlist")
+                .then().statusCode(400);
+    }
+}
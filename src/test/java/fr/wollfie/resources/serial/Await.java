@@ -0,0 +1,21 @@
+package fr.wollfie.resources.serial;
+
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+/** Waits in the tests for what other threads do */
+public final class Await {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private Await() { }
+
+    /** Wait until the condition holds, failing the test if it still doesn't after the timeout */
+    public static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) { Thread.sleep(2); }
+        assertThat(condition.getAsBoolean(), is(true));
+    }
+}
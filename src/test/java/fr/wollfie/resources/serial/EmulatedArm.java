@@ -0,0 +1,90 @@
+package fr.wollfie.resources.serial;
+
+import fr.wollfie.cottus.resources.serial.SerialFrameListener;
+import fr.wollfie.cottus.resources.serial.SerialProtocol;
+import fr.wollfie.cottus.resources.serial.SerialReceiver;
+import fr.wollfie.cottus.resources.serial.binary.BinaryFrameEncoder;
+import fr.wollfie.cottus.resources.serial.emulator.FirmwareEmulator;
+import fr.wollfie.cottus.resources.serial.msg.ProtocolMessage;
+import fr.wollfie.cottus.resources.serial.transport.ArmTransport;
+import fr.wollfie.cottus.resources.serial.transport.LoopbackTransport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import static fr.wollfie.resources.serial.Await.await;
+
+/**
+ * A {@link FirmwareEmulator} at the device end of a {@link LoopbackTransport}, whose messages are decoded by a
+ * {@link SerialReceiver} as the server would. The receiver switches to the binary protocol when the emulator
+ * accepts it
+ */
+public class EmulatedArm {
+
+    private final LoopbackTransport transport = new LoopbackTransport();
+    private final FirmwareEmulator emulator;
+    private final SerialReceiver receiver;
+    private final BinaryFrameEncoder encoder = new BinaryFrameEncoder();
+
+    private volatile double[] lastAngles;
+    private volatile boolean speedReported;
+    private volatile IntConsumer segmentAckListener = segmentId -> { };
+
+    /** Start the emulator and connect to it */
+    public EmulatedArm(FirmwareEmulator.Settings settings) {
+        this.emulator = new FirmwareEmulator(transport.getDeviceEnd(), settings);
+        this.emulator.start();
+
+        this.receiver = new SerialReceiver(new SerialFrameListener() {
+            @Override public void onAngles(double[] anglesRad, int count, int sequence) { lastAngles = Arrays.copyOf(anglesRad, count); }
+            @Override public void onMotorSpeeds(double[] radPerSec, int count, int sequence) { speedReported = true; }
+            @Override public void onMotorSpeed(double radPerSec) { speedReported = true; }
+            @Override public void onLog(String message) { }
+            @Override public void onProtocol(int version) { receiver.setProtocol(SerialProtocol.BINARY); }
+            @Override public void onSegmentAck(int segmentId) { segmentAckListener.accept(segmentId); }
+        });
+        this.transport.setListener(new ArmTransport.Listener() {
+            @Override public void onBytes(byte[] data, int offset, int length) { receiver.feed(data, offset, length); }
+            @Override public void onDisconnected() { }
+        });
+        this.transport.connect();
+    }
+
+    public FirmwareEmulator getEmulator() { return emulator; }
+    public SerialReceiver getReceiver() { return receiver; }
+
+    /** @return The last angles reported by the emulator, or null if none yet */
+    public double[] getLastAngles() { return lastAngles; }
+
+    /** @return True once the emulator reported the speed of its motors */
+    public boolean isSpeedReported() { return speedReported; }
+
+    /** Receive the acknowledgements of the segments of trajectory streams */
+    public void setSegmentAckListener(IntConsumer listener) { this.segmentAckListener = listener; }
+
+    /** Send an encoded binary frame to the emulator */
+    public int send(ByteBuffer frame) { return transport.send(frame.array(), 0, frame.limit()); }
+
+    /** Encode a frame with the encoder of this end of the link and send it to the emulator */
+    public synchronized int sendFrame(Function<BinaryFrameEncoder, ByteBuffer> encoding) { return this.send(encoding.apply(encoder)); }
+
+    /** Send a text message to the emulator, with its line ending */
+    public int send(String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        return transport.send(bytes, 0, bytes.length);
+    }
+
+    /** Offer the binary protocol, and wait until the emulator accepts it */
+    public void switchToBinary() throws InterruptedException {
+        this.send(new ProtocolMessage(ProtocolMessage.BINARY_VERSION).getMessage());
+        await(() -> receiver.getProtocol() == SerialProtocol.BINARY);
+    }
+
+    public void close() {
+        this.emulator.stop();
+        this.transport.disconnect();
+    }
+}
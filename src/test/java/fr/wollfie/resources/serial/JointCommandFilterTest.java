@@ -0,0 +1,58 @@
+package fr.wollfie.resources.serial;
+
+import fr.wollfie.cottus.resources.serial.JointCommandFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+public class JointCommandFilterTest {
+
+    private static final long MS = 1_000_000;
+
+    /** Filter the command and send the joints chosen */
+    private static int send(JointCommandFilter filter, List<Double> anglesRad, long nowNs) {
+        int jointMask = filter.filter(anglesRad, nowNs);
+        if (jointMask != 0) { filter.commit(anglesRad, jointMask, nowNs); }
+        return jointMask;
+    }
+
+    @Test void onlyTheJointsMovedBeyondTheDeadbandAreSent() {
+        JointCommandFilter filter = new JointCommandFilter(0.01, 1000);
+        assertThat(send(filter, List.of(0.0, 0.0, 0.0), 0), is(JointCommandFilter.KEYFRAME));
+        assertThat(send(filter, List.of(0.005, 0.0, 0.0), 10 * MS), is(0));
+        assertThat(send(filter, List.of(0.005, 0.5, 0.0), 20 * MS), is(0b010));
+    }
+
+    @Test void slowDriftsAreSentOnceTheyAddUp() {
+        JointCommandFilter filter = new JointCommandFilter(0.01, 1000);
+        send(filter, List.of(0.0, 0.0), 0);
+        assertThat(send(filter, List.of(0.006, 0.0), 10 * MS), is(0));
+        assertThat(send(filter, List.of(0.012, 0.0), 20 * MS), is(0b01));
+    }
+
+    @Test void aKeyframeIsSentPeriodicallyAndOnRequest() {
+        JointCommandFilter filter = new JointCommandFilter(0.01, 1000);
+        send(filter, List.of(0.0, 0.0), 0);
+        assertThat(send(filter, List.of(0.0, 0.0), 500 * MS), is(0));
+        assertThat(send(filter, List.of(0.0, 0.0), 1000 * MS), is(JointCommandFilter.KEYFRAME));
+
+        filter.requestKeyframe();
+        assertThat(send(filter, List.of(0.0, 0.0), 1010 * MS), is(JointCommandFilter.KEYFRAME));
+        assertThat(filter.getStatistics(), is(new JointCommandFilter.Statistics(3, 0, 1)));
+    }
+
+    @Test void aCommandThatFailedToBeSentIsSentAgain() {
+        JointCommandFilter filter = new JointCommandFilter(0.01, 1000);
+        filter.requestKeyframe();
+        assertThat(filter.filter(List.of(0.0, 0.0), 0), is(JointCommandFilter.KEYFRAME));
+        // Not committed, the requested keyframe is still due
+        assertThat(send(filter, List.of(0.0, 0.0), 10 * MS), is(JointCommandFilter.KEYFRAME));
+
+        assertThat(filter.filter(List.of(0.5, 0.0), 20 * MS), is(0b01));
+        assertThat(send(filter, List.of(0.5, 0.0), 30 * MS), is(0b01));
+        assertThat(filter.getStatistics(), is(new JointCommandFilter.Statistics(1, 1, 0)));
+    }
+}
@@ -0,0 +1,60 @@
+package fr.wollfie.resources.serial;
+
+import fr.wollfie.cottus.resources.serial.LinkSupervisor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fr.wollfie.resources.serial.Await.await;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+public class LinkSupervisorTest {
+
+    private LinkSupervisor supervisor;
+    /** The number of attempts of the fake link that fail before one succeeds */
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final AtomicInteger disconnections = new AtomicInteger();
+
+    private void start(int failures) {
+        failuresLeft.set(failures);
+        supervisor = new LinkSupervisor("test-supervisor", 10, 40,
+                () -> failuresLeft.getAndDecrement() <= 0, disconnections::incrementAndGet);
+        supervisor.start();
+    }
+
+    @AfterEach void stop() { supervisor.stop(); }
+
+    @Test void theFailedAttemptsAreRetriedWithABackoff() throws InterruptedException {
+        long start = System.nanoTime();
+        start(3);
+        await(supervisor::isConnected);
+
+        // 10, 20 then 40 ms between the four attempts
+        assertThat((System.nanoTime() - start) / 1e6, greaterThan(70.0));
+        assertThat(supervisor.getStatistics().attempts(), is(4L));
+        assertThat(supervisor.getStatistics().reconnections(), is(0L));
+    }
+
+    @Test void aLostLinkIsReopenedAndTheCommandsDroppedMeanwhile() throws InterruptedException {
+        start(0);
+        await(supervisor::isConnected);
+
+        failuresLeft.set(1);
+        supervisor.onLinkLost();
+        supervisor.onLinkLost();
+        assertThat(supervisor.isConnected(), is(false));
+        supervisor.onCommandDropped();
+        await(supervisor::isConnected);
+
+        LinkSupervisor.Statistics statistics = supervisor.getStatistics();
+        assertThat(statistics.disconnections(), is(1L));
+        assertThat(statistics.reconnections(), is(1L));
+        assertThat(statistics.attempts(), is(3L));
+        assertThat(statistics.commandsDropped(), is(1L));
+        assertThat(statistics.lastOutageMs(), lessThan(1000.0));
+        // The link is closed before each attempt
+        assertThat(disconnections.get(), is(3));
+    }
+}
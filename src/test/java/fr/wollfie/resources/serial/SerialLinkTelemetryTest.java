@@ -0,0 +1,56 @@
+package fr.wollfie.resources.serial;
+
+import fr.wollfie.cottus.resources.serial.SerialLinkTelemetry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+public class SerialLinkTelemetryTest {
+
+    private static final long START_NS = TimeUnit.SECONDS.toNanos(100);
+
+    private static long at(long ms) { return START_NS + TimeUnit.MILLISECONDS.toNanos(ms); }
+
+    @Test void theRatesCountTheCompleteSeconds() {
+        SerialLinkTelemetry telemetry = new SerialLinkTelemetry(0.01);
+        for (int i = 0; i < 30; i++) { telemetry.onSent(10, at(i * 33)); }
+        for (int i = 0; i < 10; i++) { telemetry.onSent(10, at(1000 + i * 100)); }
+
+        SerialLinkTelemetry.Rate sent = telemetry.snapshot(0, 0, 0, at(2500)).bytesSent();
+        assertThat(sent.total(), is(400L));
+        assertThat(sent.lastSecond(), is(100L));
+        assertThat(sent.meanPerSecond(), closeTo(200, 1e-9));
+        assertThat(sent.maxPerSecond(), is(300L));
+    }
+
+    @Test void theLatencyIsMeasuredToTheFeedbackReachingTheCommand() {
+        SerialLinkTelemetry telemetry = new SerialLinkTelemetry(0.01);
+        telemetry.onCommandSent(1, List.of(0.5, 0.0), at(0));
+        telemetry.onFeedback(new double[]{ 0.2, 0.0 }, 2, at(10));
+        telemetry.onFeedback(new double[]{ 0.495, 0.0 }, 2, at(40));
+        // Already reached
+        telemetry.onFeedback(new double[]{ 0.5, 0.0 }, 2, at(60));
+
+        SerialLinkTelemetry.Latency latency = telemetry.snapshot(0, 0, 0, at(100)).latency();
+        assertThat(latency.count(), is(1L));
+        assertThat(latency.meanMs(), closeTo(40, 1e-9));
+        assertThat(latency.p50Ms(), is(40.0));
+    }
+
+    @Test void theCommandsPassedByANewerOneReachedAreUnreached() {
+        SerialLinkTelemetry telemetry = new SerialLinkTelemetry(0.01);
+        telemetry.onCommandSent(1, List.of(0.1), at(0));
+        telemetry.onCommandSent(2, List.of(0.2), at(30));
+        telemetry.onCommandSent(3, List.of(0.3), at(60));
+        telemetry.onFeedback(new double[]{ 0.2 }, 1, at(80));
+
+        SerialLinkTelemetry.Snapshot snapshot = telemetry.snapshot(0, 0, 0, at(100));
+        assertThat(snapshot.lastReachedSequence(), is(2));
+        assertThat(snapshot.commandsUnreached(), is(1L));
+        assertThat(snapshot.latency().maxMs(), closeTo(50, 1e-9));
+    }
+}
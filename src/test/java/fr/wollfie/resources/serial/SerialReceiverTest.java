@@ -0,0 +1,77 @@
+package fr.wollfie.resources.serial;
+
+import fr.wollfie.cottus.resources.serial.SerialFrameListener;
+import fr.wollfie.cottus.resources.serial.SerialProtocol;
+import fr.wollfie.cottus.resources.serial.SerialReceiver;
+import fr.wollfie.cottus.resources.serial.binary.BinaryFrameEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+public class SerialReceiverTest {
+
+    /** Records the received messages as text */
+    private static class Recorder implements SerialFrameListener {
+        final List<String> messages = new ArrayList<>();
+        SerialReceiver receiver;
+        @Override public void onAngles(double[] anglesRad, int count, int sequence) {
+            messages.add("angles " + Arrays.toString(Arrays.stream(anglesRad, 0, count).map(Math::toDegrees).mapToLong(Math::round).toArray()));
+        }
+        @Override public void onMotorSpeeds(double[] radPerSec, int count, int sequence) { messages.add("speeds " + count); }
+        @Override public void onMotorSpeed(double radPerSec) { messages.add("speed " + Math.round(Math.toDegrees(radPerSec))); }
+        @Override public void onLog(String message) { messages.add("log " + message); }
+        @Override public void onProtocol(int version) {
+            messages.add("protocol " + version);
+            receiver.setProtocol(SerialProtocol.BINARY);
+        }
+    }
+
+    private static Recorder feed(String... reads) {
+        Recorder recorder = new Recorder();
+        SerialReceiver receiver = new SerialReceiver(recorder);
+        recorder.receiver = receiver;
+        for (String read : reads) {
+            byte[] bytes = read.getBytes(StandardCharsets.UTF_8);
+            receiver.feed(bytes, 0, bytes.length);
+        }
+        return recorder;
+    }
+
+    @Test void everyMessageOfAReadIsDecoded() {
+        Recorder recorder = feed("AN10.0D-20.25D\nSP90\nhello\n");
+        assertThat(recorder.messages, contains("angles [10, -20]", "speed 90", "log hello"));
+    }
+
+    @Test void messagesSplitBetweenReadsAreDecodedOnceComplete() {
+        Recorder recorder = feed("AN1.5E1D2", "0D\nSP1", "0D20D\n");
+        assertThat(recorder.messages, contains("angles [15, 20]", "speeds 2"));
+    }
+
+    @Test void illFormattedMessagesAreSkipped() {
+        Recorder recorder = feed("AN1.0Dabc\nAN30D\n");
+        assertThat(recorder.messages, contains("angles [30]"));
+    }
+
+    @Test void bytesAfterTheProtocolAnswerAreDecodedAsFrames() {
+        ByteBuffer frame = new BinaryFrameEncoder().encodeAngles(List.of(Math.toRadians(45)));
+        byte[] answer = "BP1\n".getBytes(StandardCharsets.UTF_8);
+        byte[] read = new byte[answer.length + frame.limit()];
+        System.arraycopy(answer, 0, read, 0, answer.length);
+        System.arraycopy(frame.array(), 0, read, answer.length, frame.limit());
+
+        Recorder recorder = new Recorder();
+        SerialReceiver receiver = new SerialReceiver(recorder);
+        recorder.receiver = receiver;
+        receiver.feed(read, 0, read.length);
+
+        assertThat(recorder.messages, contains("protocol 1", "angles [45]"));
+        assertThat(receiver.getFramingErrors(), is(0L));
+    }
+}
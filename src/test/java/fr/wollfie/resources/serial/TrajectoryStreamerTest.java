@@ -0,0 +1,60 @@
+package fr.wollfie.resources.serial;
+
+import fr.wollfie.cottus.resources.serial.TrajectoryStreamer;
+import fr.wollfie.cottus.resources.serial.emulator.FirmwareEmulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static fr.wollfie.resources.serial.Await.await;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+public class TrajectoryStreamerTest {
+
+    private EmulatedArm arm;
+    private TrajectoryStreamer streamer;
+
+    /** Connect a streamer to an emulator speaking the binary protocol */
+    private void connect(double corruptionProbability) throws InterruptedException {
+        arm = new EmulatedArm(new FirmwareEmulator.Settings(2, 4.0, 100, 0, corruptionProbability, true, 42));
+        streamer = new TrajectoryStreamer(new TrajectoryStreamer.Settings(3, 5, 50, 500), arm::sendFrame, () -> { });
+        arm.setSegmentAckListener(streamer::onAck);
+        arm.switchToBinary();
+    }
+
+    @AfterEach void disconnect() {
+        streamer.stop();
+        arm.close();
+    }
+
+    /** @return A ramp of the first joint to 1 radian in 1 second */
+    private static double[][] ramp() {
+        double[][] frames = new double[51][];
+        for (int i = 0; i < frames.length; i++) { frames[i] = new double[]{ i / 50.0, -0.5 }; }
+        return frames;
+    }
+
+    @Test void theArmFollowsTheStreamedTrajectory() throws InterruptedException {
+        connect(0);
+        assertThat(streamer.start(ramp(), 50), is(true));
+        assertThat(streamer.start(ramp(), 50), is(false));
+
+        await(() -> !streamer.isStreaming());
+        TrajectoryStreamer.Statistics statistics = streamer.getStatistics();
+        assertThat(statistics.segments(), is(11));
+        assertThat(statistics.acknowledged(), is(11));
+        assertThat(statistics.retransmissions(), is(0L));
+        await(() -> Math.abs(arm.getEmulator().getPositions()[0] - 1.0) < 1e-3);
+        assertThat(arm.getEmulator().getPositions()[1], closeTo(-0.5, 1e-3));
+    }
+
+    @Test void theLostAcknowledgementsAreRecoveredByRetransmission() throws InterruptedException {
+        connect(0.2);
+        assertThat(streamer.start(ramp(), 50), is(true));
+
+        await(() -> !streamer.isStreaming());
+        assertThat(streamer.getStatistics().acknowledged(), is(11));
+        assertThat(streamer.getStatistics().retransmissions(), greaterThan(0L));
+        await(() -> Math.abs(arm.getEmulator().getPositions()[0] - 1.0) < 1e-3);
+    }
+}
@@ -0,0 +1,110 @@
+package fr.wollfie.resources.serial.binary;
+
+import fr.wollfie.cottus.resources.serial.SerialFrameListener;
+import fr.wollfie.cottus.resources.serial.SerialProtocol;
+import fr.wollfie.cottus.resources.serial.SerialReceiver;
+import fr.wollfie.cottus.resources.serial.binary.BinaryFrame;
+import fr.wollfie.cottus.resources.serial.binary.BinaryFrameEncoder;
+import fr.wollfie.cottus.resources.serial.binary.Crc16;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+public class BinaryFrameTest {
+
+    /** Collects the decoded angles */
+    private static class AnglesCollector implements SerialFrameListener {
+        final List<double[]> angles = new ArrayList<>();
+        @Override public void onAngles(double[] anglesRad, int count, int sequence) { angles.add(Arrays.copyOf(anglesRad, count)); }
+        @Override public void onMotorSpeeds(double[] radPerSec, int count, int sequence) { }
+        @Override public void onMotorSpeed(double radPerSec) { }
+        @Override public void onLog(String message) { }
+        @Override public void onProtocol(int version) { }
+        @Override public void onChangedAngles(int jointMask, double[] anglesRad, int count, int sequence) {
+            angles.add(Arrays.copyOf(anglesRad, count));
+        }
+    }
+
+    /** @return A receiver decoding the bytes as frames, as it does once the binary protocol is negotiated */
+    private static SerialReceiver binaryReceiver(SerialFrameListener listener) {
+        SerialReceiver receiver = new SerialReceiver(listener);
+        receiver.setProtocol(SerialProtocol.BINARY);
+        return receiver;
+    }
+
+    private static byte[] toBytes(ByteBuffer frame) {
+        return Arrays.copyOfRange(frame.array(), frame.position(), frame.limit());
+    }
+
+    @Test void anglesSurviveTheRoundTrip() {
+        List<Double> angles = List.of(0.0, 1.2345, -3.1, 0.5, -0.0001, 2.0, 3.0);
+        AnglesCollector collector = new AnglesCollector();
+        byte[] frame = toBytes(new BinaryFrameEncoder().encodeAngles(angles));
+        binaryReceiver(collector).feed(frame, 0, frame.length);
+
+        // 2 bytes per angle, instead of up to 25 as text
+        assertThat(frame.length, is(BinaryFrame.HEADER_BYTES + 2 * angles.size() + BinaryFrame.CRC_BYTES));
+
+        assertThat(collector.angles, hasSize(1));
+        for (int i = 0; i < angles.size(); i++) {
+            assertThat(collector.angles.get(0)[i], closeTo(angles.get(i), BinaryFrame.ANGLE_QUANTUM_RAD / 2));
+        }
+    }
+
+    @Test void anglesOutOfTheInt16RangeAreSentAsFloats() {
+        ByteBuffer frame = new BinaryFrameEncoder().encodeAngles(List.of(0.0, 6.0));
+        assertThat(frame.get(1), is(BinaryFrame.TYPE_ANGLES_F32));
+    }
+
+    @Test void framesSplitBetweenReadsAreDecodedOnceComplete() {
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder();
+        byte[] first = toBytes(encoder.encodeAngles(List.of(0.1, 0.2)));
+        byte[] second = toBytes(encoder.encodeAngles(List.of(0.3, 0.4)));
+        byte[] stream = new byte[first.length + second.length];
+        System.arraycopy(first, 0, stream, 0, first.length);
+        System.arraycopy(second, 0, stream, first.length, second.length);
+
+        AnglesCollector collector = new AnglesCollector();
+        SerialReceiver receiver = binaryReceiver(collector);
+        receiver.feed(stream, 0, 5);
+        assertThat(collector.angles, empty());
+        receiver.feed(stream, 5, stream.length - 5);
+        assertThat(collector.angles, hasSize(2));
+    }
+
+    @Test void corruptedFramesAreSkipped() {
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder();
+        byte[] corrupted = toBytes(encoder.encodeAngles(List.of(0.1, 0.2)));
+        corrupted[5] ^= 0x10;
+        byte[] valid = toBytes(encoder.encodeAngles(List.of(0.3, 0.4)));
+
+        AnglesCollector collector = new AnglesCollector();
+        SerialReceiver receiver = binaryReceiver(collector);
+        receiver.feed(corrupted, 0, corrupted.length);
+        receiver.feed(valid, 0, valid.length);
+
+        assertThat(collector.angles, hasSize(1));
+        assertThat(collector.angles.get(0)[0], closeTo(0.3, BinaryFrame.ANGLE_QUANTUM_RAD));
+        assertThat(receiver.getFramingErrors(), greaterThan(0L));
+    }
+
+    @Test void changedAnglesWithoutTheirMaskAreSkipped() {
+        ByteBuffer frame = ByteBuffer.allocate(BinaryFrame.HEADER_BYTES + BinaryFrame.CRC_BYTES);
+        frame.put(BinaryFrame.SYNC).put(BinaryFrame.TYPE_ANGLES_DELTA_I16).put((byte) 0).put((byte) 0);
+        int crc = Crc16.compute(frame, 1, frame.position());
+        byte[] malformed = toBytes(frame.put((byte) crc).put((byte) (crc >> 8)).flip());
+
+        AnglesCollector collector = new AnglesCollector();
+        SerialReceiver receiver = binaryReceiver(collector);
+        receiver.feed(malformed, 0, malformed.length);
+
+        assertThat(collector.angles, empty());
+        assertThat(receiver.getFramingErrors(), is(1L));
+    }
+}
@@ -0,0 +1,62 @@
+package fr.wollfie.resources.serial.emulator;
+
+import fr.wollfie.cottus.resources.serial.SerialProtocol;
+import fr.wollfie.cottus.resources.serial.binary.BinaryFrameEncoder;
+import fr.wollfie.cottus.resources.serial.emulator.FirmwareEmulator;
+import fr.wollfie.cottus.resources.serial.msg.ProtocolMessage;
+import fr.wollfie.resources.serial.EmulatedArm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static fr.wollfie.resources.serial.Await.await;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+public class FirmwareEmulatorTest {
+
+    private EmulatedArm arm;
+
+    @BeforeEach void connect() { arm = new EmulatedArm(FirmwareEmulator.Settings.ideal(3, 2.0)); }
+
+    @AfterEach void disconnect() { arm.close(); }
+
+    @Test void theSteppersReachTheCommandedAnglesOverBinaryFrames() throws InterruptedException {
+        arm.switchToBinary();
+        await(arm::isSpeedReported);
+
+        arm.send(new BinaryFrameEncoder().encodeAngles(List.of(0.2, -0.1, 0.05)));
+        await(() -> arm.getLastAngles() != null && Math.abs(arm.getLastAngles()[0] - 0.2) < 1e-3);
+
+        assertThat(arm.getLastAngles()[1], closeTo(-0.1, 1e-3));
+        assertThat(arm.getEmulator().getStatistics().commandsReceived(), is(1L));
+        assertThat(arm.getReceiver().getProtocol(), is(SerialProtocol.BINARY));
+        assertThat(arm.getReceiver().getFramingErrors(), is(0L));
+    }
+
+    @Test void commandSentDuringTheHandshakeIsDecodedAsText() throws InterruptedException {
+        // The server keeps sending text until it receives the answer to its offer
+        arm.send(new ProtocolMessage(ProtocolMessage.BINARY_VERSION).getMessage() + "AN10D0D0D\n");
+        await(() -> arm.getReceiver().getProtocol() == SerialProtocol.BINARY);
+        await(() -> arm.getEmulator().getStatistics().commandsReceived() == 1);
+
+        arm.send(new BinaryFrameEncoder().encodeAngles(List.of(0.2, -0.1, 0.05)));
+        await(() -> arm.getLastAngles() != null && Math.abs(arm.getLastAngles()[0] - 0.2) < 1e-3);
+
+        assertThat(arm.getEmulator().getStatistics().commandsReceived(), is(2L));
+        assertThat(arm.getEmulator().getStatistics().framingErrors(), is(0L));
+        assertThat(arm.getReceiver().getFramingErrors(), is(0L));
+    }
+
+    @Test void theSteppersMoveAtTheirSpeed() throws InterruptedException {
+        arm.send("AN90D0D0D\n");
+        await(() -> arm.getLastAngles() != null && arm.getLastAngles()[0] > 0.5);
+
+        // 90 degrees at 2 rad/s take 0.79 seconds
+        Thread.sleep(100);
+        assertThat(arm.getEmulator().getPositions()[0], lessThan(Math.PI / 2));
+        await(() -> Math.abs(arm.getEmulator().getPositions()[0] - Math.PI / 2) < 1e-3);
+    }
+}